@@ -0,0 +1,147 @@
+package com.example.android.pets;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.test.runner.lifecycle.ActivityLifecycleMonitorRegistry;
+import android.support.test.runner.lifecycle.Stage;
+import android.widget.EditText;
+
+import com.example.android.pets.data.PetEntry;
+import com.example.android.pets.data.PetsDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Edits a pet across a recreation of the editor, as after a rotation, and checks the edits are
+ * kept and saved.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EditorActivityTest {
+
+    private static final String NAME = "Editor test pet";
+    private static final String EDITED_NAME = "Editor test pet, renamed";
+    private static final String BREED = "Boxer";
+
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final long POLL_MILLIS = 50;
+
+    @Rule
+    public final ActivityTestRule<EditorActivity> mActivityRule =
+            new ActivityTestRule<>(EditorActivity.class, false, false);
+
+    private Instrumentation mInstrumentation;
+    private PetsDatabase mDb;
+    private int mPetId;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mDb = PetsDatabase.getInstance(InstrumentationRegistry.getTargetContext());
+        Integer breedId = mDb.getBreedDictionary().getOrCreateId(BREED);
+        mPetId = (int) mDb.petDao().insertPet(
+                new PetEntry(0, NAME, breedId, PetEntry.GENDER_MALE, 12));
+    }
+
+    @After
+    public void tearDown() {
+        mDb.petDao().deletePet(mPetId);
+    }
+
+    @Test
+    public void editsSurviveRecreation_andAreSaved() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        EditorActivity activity = mActivityRule.launchActivity(
+                new Intent(context, EditorActivity.class)
+                        .putExtra(EditorActivity.EXTRA_PET_ID, mPetId));
+        waitForName(activity, NAME);
+
+        setName(activity, EDITED_NAME);
+        EditorActivity recreated = recreate(activity);
+        // The pet delivered again to the new activity doesn't replace the edits.
+        assertEquals(EDITED_NAME, getName(recreated));
+
+        mInstrumentation.invokeMenuActionSync(recreated, R.id.action_save, 0);
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        PetEntry saved = mDb.petDao().getPetById(mPetId).toPetEntry();
+        while (!EDITED_NAME.equals(saved.getName()) && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(POLL_MILLIS);
+            saved = mDb.petDao().getPetById(mPetId).toPetEntry();
+        }
+        assertEquals(EDITED_NAME, saved.getName());
+        assertEquals(BREED, saved.getBreed());
+        assertEquals(PetEntry.GENDER_MALE, saved.getGender());
+        assertEquals(12, saved.getWeight());
+    }
+
+    private void setName(final Activity activity, final String name) {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ((EditText) activity.findViewById(R.id.edit_pet_name)).setText(name);
+            }
+        });
+    }
+
+    private String getName(final Activity activity) {
+        final String[] name = new String[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                name[0] = ((EditText) activity.findViewById(R.id.edit_pet_name)).getText()
+                        .toString();
+            }
+        });
+        return name[0];
+    }
+
+    private void waitForName(Activity activity, String name) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while (!name.equals(getName(activity)) && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(POLL_MILLIS);
+        }
+        assertEquals(name, getName(activity));
+    }
+
+    /**
+     * Recreates the activity as a configuration change does.
+     *
+     * @return the new, resumed activity
+     */
+    private EditorActivity recreate(final Activity activity) {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.recreate();
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+
+        final EditorActivity[] recreated = new EditorActivity[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (Activity resumed : ActivityLifecycleMonitorRegistry.getInstance()
+                        .getActivitiesInStage(Stage.RESUMED)) {
+                    if (resumed instanceof EditorActivity && resumed != activity) {
+                        recreated[0] = (EditorActivity) resumed;
+                    }
+                }
+            }
+        });
+        assertNotNull("The editor wasn't recreated", recreated[0]);
+        return recreated[0];
+    }
+}
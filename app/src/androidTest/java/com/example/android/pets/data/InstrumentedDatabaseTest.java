@@ -0,0 +1,167 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks what {@link InstrumentedDatabase} records for queries, and measures what recording
+ * costs compared to the same queries on the database it wraps.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InstrumentedDatabaseTest {
+
+    private static final int PET_COUNT = 1000;
+
+    /** Time a cursor is kept open after being read, longer than any query should take */
+    private static final long HOLD_MILLIS = 500;
+
+    /** Largest slowdown of point lookups allowed by recording them, as a fraction */
+    private static final double MAX_OVERHEAD = 0.15;
+
+    private static final String LOOKUP_QUERY = "SELECT id, name FROM pet WHERE id = ?";
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_metrics_test");
+
+    private SupportSQLiteOpenHelper mPlainHelper;
+    private SupportSQLiteDatabase mPlainDb;
+    private QueryMetrics mMetrics;
+    private SupportSQLiteDatabase mInstrumentedDb;
+
+    @Before
+    public void setUp() {
+        List<PetEntry> pets = new ArrayList<>(PET_COUNT);
+        for (int i = 0; i < PET_COUNT; i++) {
+            pets.add(new PetEntry("Pet " + i, "Breed " + (i % 20), i % 3, 1 + i % 60));
+        }
+        new PetBatchWriter(mDatabaseRule.getDatabase()).insertPets(pets);
+        int version = mDatabaseRule.getDatabase().getOpenHelper().getReadableDatabase()
+                .getVersion();
+
+        // A second, uninstrumented connection to the same file, wrapped with private metrics.
+        mPlainHelper = new FrameworkSQLiteOpenHelperFactory().create(
+                SupportSQLiteOpenHelper.Configuration.builder(mDatabaseRule.getContext())
+                        .name(mDatabaseRule.getName())
+                        .callback(new SupportSQLiteOpenHelper.Callback(version) {
+                            @Override
+                            public void onCreate(SupportSQLiteDatabase db) {
+                            }
+
+                            @Override
+                            public void onUpgrade(SupportSQLiteDatabase db, int oldVersion,
+                                                  int newVersion) {
+                            }
+                        })
+                        .build());
+        mPlainDb = mPlainHelper.getWritableDatabase();
+        mMetrics = new QueryMetrics();
+        mInstrumentedDb = new InstrumentedDatabase(mPlainDb, mMetrics);
+    }
+
+    @After
+    public void tearDown() {
+        mPlainHelper.close();
+    }
+
+    /**
+     * A cursor kept open after being read, as {@link PetCursorLiveData} keeps them, records
+     * the time its query took to run, not the time it stayed open.
+     */
+    @Test
+    public void longLivedCursor_recordsExecutionNotLifetime() {
+        String sql = "SELECT id, name FROM pet ORDER BY id";
+        Cursor cursor = mInstrumentedDb.query(sql);
+        try {
+            assertEquals(PET_COUNT, cursor.getCount());
+            SystemClock.sleep(HOLD_MILLIS);
+            while (cursor.moveToNext()) {
+                cursor.getString(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        QueryMetrics.StatementStats stats = statsOf(sql);
+        assertEquals(1, stats.getCount());
+        assertEquals(PET_COUNT, stats.getRows());
+        assertTrue("Recorded " + stats.getMaxNanos() + " ns",
+                stats.getMaxNanos() < TimeUnit.MILLISECONDS.toNanos(HOLD_MILLIS));
+    }
+
+    @Test
+    public void unreadCursor_recordsNoRows() {
+        String sql = "SELECT id FROM pet WHERE id > 0";
+        mInstrumentedDb.query(sql).close();
+
+        QueryMetrics.StatementStats stats = statsOf(sql);
+        assertEquals(1, stats.getCount());
+        assertEquals(0, stats.getRows());
+    }
+
+    /**
+     * Runs the same point lookups with and without recording, and reports the overhead per
+     * query.
+     */
+    @Test
+    @LargeTest
+    public void recording_addsLittleOverheadToPointLookups() {
+        double plainMillis = Measurements.medianMillis(3, 11, new Runnable() {
+            @Override
+            public void run() {
+                lookUpEveryPet(mPlainDb);
+            }
+        });
+        double instrumentedMillis = Measurements.medianMillis(3, 11, new Runnable() {
+            @Override
+            public void run() {
+                lookUpEveryPet(mInstrumentedDb);
+            }
+        });
+
+        double overheadMicros = (instrumentedMillis - plainMillis) * 1000 / PET_COUNT;
+        Measurements.log(PET_COUNT + " point lookups: " + plainMillis + " ms, recorded "
+                + instrumentedMillis + " ms, " + overheadMicros + " us per query");
+        assertEquals(PET_COUNT * 14, statsOf(LOOKUP_QUERY).getCount());
+        assertTrue("Recording took lookups from " + plainMillis + " ms to " + instrumentedMillis
+                + " ms", instrumentedMillis <= plainMillis * (1 + MAX_OVERHEAD));
+    }
+
+    private static void lookUpEveryPet(SupportSQLiteDatabase db) {
+        for (int id = 1; id <= PET_COUNT; id++) {
+            Cursor cursor = db.query(LOOKUP_QUERY, new Object[]{id});
+            try {
+                cursor.moveToFirst();
+                cursor.getString(1);
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private QueryMetrics.StatementStats statsOf(String sql) {
+        for (QueryMetrics.StatementStats stats : mMetrics.getStats()) {
+            if (stats.getSql().equals(sql)) {
+                return stats;
+            }
+        }
+        throw new AssertionError("Not recorded: " + sql);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.android.pets.data;
+
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Commits a burst of changes inside one window of an {@link InvalidationThrottle} and checks the
+ * observer's query runs once and sees the last change.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InvalidationThrottleTest {
+
+    /** Long enough for the whole burst to commit inside the first window */
+    private static final long WINDOW_MILLIS = 1000;
+
+    private static final int BURST_SIZE = 20;
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_throttle_test");
+
+    private final AtomicInteger mQueries = new AtomicInteger();
+    private final AtomicReference<String> mLatestName = new AtomicReference<>();
+    private volatile CountDownLatch mQueried = new CountDownLatch(1);
+
+    private PetsDatabase mDb;
+    private InvalidationThrottle mThrottle;
+    private int mPetId;
+
+    @Before
+    public void setUp() {
+        mDb = mDatabaseRule.getDatabase();
+        mPetId = (int) mDb.petDao().insertPet(
+                new PetEntry(0, "Pet", (Integer) null, PetEntry.GENDER_MALE, 10));
+
+        mThrottle = new InvalidationThrottle(mDb, WINDOW_MILLIS, new Runnable() {
+            @Override
+            public void run() {
+                // Stands for the re-query of an observed list or page.
+                mLatestName.set(mDb.petDao().getPetById(mPetId).toPetEntry().getName());
+                mQueries.incrementAndGet();
+                mQueried.countDown();
+            }
+        }, PetEntry.TABLE_NAME);
+        mThrottle.start();
+
+        // The insert may still reach the observer; let its callback run before counting.
+        SystemClock.sleep(2 * WINDOW_MILLIS);
+        mQueries.set(0);
+        mLatestName.set(null);
+        mQueried = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        mThrottle.stop();
+    }
+
+    @Test
+    public void burstInsideOneWindow_requeriesOnceWithLatestValue() throws InterruptedException {
+        String lastName = null;
+        for (int i = 1; i <= BURST_SIZE; i++) {
+            lastName = "Pet " + i;
+            // Every update commits its own transaction, and invalidates the pet table.
+            mDb.petDao().updatePet(mPetId, lastName, null, PetEntry.GENDER_MALE, 10);
+        }
+
+        assertTrue("The throttled query didn't run",
+                mQueried.await(5 * WINDOW_MILLIS, TimeUnit.MILLISECONDS));
+        // Nothing is left for a second window to pick up.
+        SystemClock.sleep(2 * WINDOW_MILLIS);
+
+        assertEquals(1, mQueries.get());
+        assertEquals(lastName, mLatestName.get());
+    }
+}
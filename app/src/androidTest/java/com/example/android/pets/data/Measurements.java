@@ -0,0 +1,76 @@
+package com.example.android.pets.data;
+
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Timing, allocation and heap measurements shared by the performance tests.
+ */
+final class Measurements {
+
+    private static final String LOG_TAG = Measurements.class.getSimpleName();
+
+    private Measurements() {
+    }
+
+    /**
+     * Runs the body a number of warm-up iterations, then times the measured ones.
+     *
+     * @return the median time of the measured iterations, in milliseconds
+     */
+    static double medianMillis(int warmupIterations, int iterations, Runnable body) {
+        double[] millis = new double[iterations];
+        for (int i = 0; i < warmupIterations + iterations; i++) {
+            long start = System.nanoTime();
+            body.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= warmupIterations) {
+                millis[i - warmupIterations] = elapsed / 1e6;
+            }
+        }
+        Arrays.sort(millis);
+        return millis[iterations / 2];
+    }
+
+    /**
+     * @return the bytes allocated by the process while the body ran, or -1 if the runtime
+     * doesn't report them
+     */
+    static long allocatedBytes(Runnable body) {
+        long before = getAllocatedBytes();
+        body.run();
+        long after = getAllocatedBytes();
+        return before < 0 || after < 0 ? -1 : after - before;
+    }
+
+    /**
+     * @return the bytes of the Java heap in use once garbage has been collected
+     */
+    static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static void log(String message) {
+        Log.i(LOG_TAG, message);
+    }
+
+    private static long getAllocatedBytes() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+        String bytes = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        try {
+            return bytes != null ? Long.parseLong(bytes) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
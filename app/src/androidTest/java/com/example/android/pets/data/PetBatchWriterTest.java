@@ -0,0 +1,117 @@
+package com.example.android.pets.data;
+
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class PetBatchWriterTest {
+
+    private static final int ROWS = 2000;
+
+    /** Chunk size small enough for the inputs below to span several chunks */
+    private static final int CHUNK_SIZE = 300;
+
+    /** Minimum speedup of batched inserts over one transaction per row */
+    private static final double MIN_SPEEDUP = 5;
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_batch_test");
+
+    @Test
+    public void insertUpdateDelete_returnPerRowResultsAcrossChunks() {
+        PetsDatabase db = mDatabaseRule.getDatabase();
+        PetBatchWriter writer = new PetBatchWriter(db, CHUNK_SIZE);
+
+        long[] ids = writer.insertPets(newPets(0, ROWS));
+        assertEquals(ROWS, ids.length);
+        for (int i = 0; i < ROWS; i++) {
+            assertTrue(ids[i] > 0);
+            assertEquals("Pet " + i, db.petDao().getPetById((int) ids[i]).toPetEntry().getName());
+        }
+
+        List<PetEntry> updates = newPets(ROWS, ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            updates.get(i).setId((int) ids[i]);
+        }
+        // A pet that doesn't exist is reported with a count of 0.
+        PetEntry missing = new PetEntry("Missing", null, PetEntry.GENDER_MALE, 1);
+        missing.setId(Integer.MAX_VALUE);
+        updates.add(missing);
+        int[] updated = writer.updatePets(updates);
+        assertEquals(ROWS + 1, updated.length);
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(1, updated[i]);
+        }
+        assertEquals(0, updated[ROWS]);
+
+        List<Integer> deletes = new ArrayList<>();
+        for (long id : ids) {
+            deletes.add((int) id);
+        }
+        deletes.add(Integer.MAX_VALUE);
+        int[] deleted = writer.deletePets(deletes);
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(1, deleted[i]);
+        }
+        assertEquals(0, deleted[ROWS]);
+        assertEquals(0, db.petDao().loadPetSummariesAfter(0, 1).size());
+    }
+
+    /**
+     * Compares the rows per second of batched inserts with inserting every pet in its own
+     * transaction, as saving pets one at a time from background tasks did.
+     */
+    @Test
+    @LargeTest
+    public void batchedInserts_areFasterThanOneTransactionPerRow() {
+        final PetsDatabase db = mDatabaseRule.getDatabase();
+        final PetBatchWriter writer = new PetBatchWriter(db);
+        // Resolves the breeds up front, so both paths only insert pets.
+        writer.insertPets(newPets(0, 200));
+        db.petDao().deleteAllPets();
+
+        final List<PetEntry> perRowPets = newPets(0, ROWS);
+        db.getBreedDictionary().resolve(perRowPets);
+        double perRowMillis = Measurements.medianMillis(0, 1, new Runnable() {
+            @Override
+            public void run() {
+                for (PetEntry pet : perRowPets) {
+                    db.petDao().insertPet(pet);
+                }
+            }
+        });
+
+        final List<PetEntry> batchPets = newPets(ROWS, ROWS);
+        double batchMillis = Measurements.medianMillis(0, 1, new Runnable() {
+            @Override
+            public void run() {
+                writer.insertPets(batchPets);
+            }
+        });
+
+        double perRowRate = ROWS / (perRowMillis / 1000);
+        double batchRate = ROWS / (batchMillis / 1000);
+        Measurements.log("One transaction per row: " + (int) perRowRate + " rows/s, "
+                + "batched: " + (int) batchRate + " rows/s");
+        assertTrue("Batched inserts ran at " + (int) batchRate + " rows/s, one transaction per "
+                + "row at " + (int) perRowRate + " rows/s", batchRate >= perRowRate * MIN_SPEEDUP);
+    }
+
+    private static List<PetEntry> newPets(int first, int count) {
+        List<PetEntry> pets = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            pets.add(new PetEntry("Pet " + i, "Breed " + (i % 200), i % 3, 1 + i % 60));
+        }
+        return pets;
+    }
+}
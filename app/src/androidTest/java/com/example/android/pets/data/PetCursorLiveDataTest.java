@@ -0,0 +1,147 @@
+package com.example.android.pets.data;
+
+import android.arch.lifecycle.Observer;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.os.Build;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks where {@link PetCursorLiveData} fills the windows of its cursors, and how it handles
+ * queries that fail.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetCursorLiveDataTest {
+
+    /** Pets with names long enough for all of them not to fit the default cursor window */
+    private static final int PET_COUNT = 30000;
+    private static final int NAME_LENGTH = 100;
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_cursor_test");
+
+    private PetCursorLiveData mLiveData;
+
+    /** Every value delivered to the observer; nulls are stored as {@link #NO_CURSOR} */
+    private final BlockingQueue<Object> mValues = new LinkedBlockingQueue<>();
+    private static final Object NO_CURSOR = new Object();
+
+    private final Observer<Cursor> mObserver = new Observer<Cursor>() {
+        @Override
+        public void onChanged(@Nullable Cursor cursor) {
+            mValues.add(cursor != null ? cursor : NO_CURSOR);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        if (mLiveData != null) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    mLiveData.removeObserver(mObserver);
+                    mLiveData.close();
+                }
+            });
+        }
+    }
+
+    /**
+     * On Android 9 and later, every row is in the window of the delivered cursor, so scrolling
+     * the list never refills it on the main thread.
+     */
+    @Test
+    @LargeTest
+    public void largeResult_isWindowedOffTheMainThread() throws Exception {
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < NAME_LENGTH; i++) {
+            padding.append('x');
+        }
+        List<PetEntry> pets = new ArrayList<>(PET_COUNT);
+        for (int i = 0; i < PET_COUNT; i++) {
+            pets.add(new PetEntry(padding + " " + i, "Breed " + (i % 20), i % 3, 1 + i % 60));
+        }
+        new PetBatchWriter(mDatabaseRule.getDatabase()).insertPets(pets);
+
+        Cursor cursor = observe(new PetFilter());
+        assertNotNull(cursor);
+        assertEquals(PET_COUNT, cursor.getCount());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            AbstractWindowedCursor windowed = unwrap(cursor);
+            assertEquals(0, windowed.getWindow().getStartPosition());
+            assertEquals(PET_COUNT, windowed.getWindow().getNumRows());
+        }
+    }
+
+    @Test
+    public void failedQuery_deliversNoCursorAndRecovers() throws Exception {
+        List<PetEntry> pets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            pets.add(new PetEntry("Pet " + i, null, PetEntry.GENDER_UNKNOWN, 1));
+        }
+        new PetBatchWriter(mDatabaseRule.getDatabase()).insertPets(pets);
+
+        // An unterminated quote is a syntax error of the full-text MATCH expression.
+        PetFilter broken = new PetFilter();
+        broken.setMatchExpression("\"pet");
+        assertNull(observe(broken));
+
+        final PetFilter valid = new PetFilter();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLiveData.setFilter(valid);
+            }
+        });
+        Object value = mValues.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(value instanceof Cursor);
+        assertEquals(10, ((Cursor) value).getCount());
+    }
+
+    /**
+     * Observes the pets matching the filter, and waits for the first value.
+     *
+     * @return the first cursor, or null if none was delivered
+     */
+    private Cursor observe(final PetFilter filter) throws InterruptedException {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLiveData = new PetCursorLiveData(mDatabaseRule.getDatabase(), filter, 0);
+                mLiveData.observeForever(mObserver);
+            }
+        });
+        Object value = mValues.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("No value delivered", value);
+        return value instanceof Cursor ? (Cursor) value : null;
+    }
+
+    private static AbstractWindowedCursor unwrap(Cursor cursor) {
+        while (cursor instanceof CursorWrapper) {
+            cursor = ((CursorWrapper) cursor).getWrappedCursor();
+        }
+        return (AbstractWindowedCursor) cursor;
+    }
+}
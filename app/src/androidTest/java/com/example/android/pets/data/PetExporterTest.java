@@ -0,0 +1,89 @@
+package com.example.android.pets.data;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class PetExporterTest {
+
+    /** More pets than fit in one window, so an export reports progress more than once */
+    private static final int PET_COUNT = PetExporter.WINDOW_SIZE + 10;
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_export_test");
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mDatabaseRule.getContext().getCacheDir(), "export_test.csv");
+        List<PetEntry> pets = new ArrayList<>(PET_COUNT);
+        for (int i = 0; i < PET_COUNT; i++) {
+            pets.add(new PetEntry("Pet " + i, i % 2 == 0 ? null : "Beagle", i % 3, 1 + i % 60));
+        }
+        new PetBatchWriter(mDatabaseRule.getDatabase()).insertPets(pets);
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    @Test
+    public void csv_hasTheDocumentedColumns() throws IOException {
+        int rows = new PetExporter(mDatabaseRule.getDatabase())
+                .export(mFile, PetExporter.Format.CSV, false, new PetExporter.Listener() {
+                    @Override
+                    public void onProgress(int rowsWritten, int totalRows) {
+                    }
+                });
+        assertEquals(PET_COUNT, rows);
+
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(mFile), "UTF-8"));
+        try {
+            assertEquals("id,name,breed,gender,weight", reader.readLine());
+            assertEquals("1,Pet 0,,0,1", reader.readLine());
+            assertEquals("2,Pet 1,Beagle,1,2", reader.readLine());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void failedExport_deletesPartialFile() throws IOException {
+        final RuntimeException failure = new IllegalStateException("Export failed");
+        try {
+            new PetExporter(mDatabaseRule.getDatabase())
+                    .export(mFile, PetExporter.Format.JSON, true, new PetExporter.Listener() {
+                        @Override
+                        public void onProgress(int rowsWritten, int totalRows) {
+                            // Fails after the first window has been written.
+                            throw failure;
+                        }
+                    });
+            fail("The export didn't fail");
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+        assertFalse(mFile.exists());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteProgram;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the catalog queries built by {@link PetFilter} read the
+ * pet table through its indices: sort orders are returned in index order without sorting, and
+ * filters look pets up in an index, or walk the primary key when that yields the order.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetFilterQueryPlanTest {
+
+    private static final int[] SORT_ORDERS = {PetFilter.SORT_DEFAULT, PetFilter.SORT_NAME,
+            PetFilter.SORT_BREED, PetFilter.SORT_WEIGHT};
+
+    /** Plan step sorting rows in a temporary B-tree, e.g. "USE TEMP B-TREE FOR ORDER BY" */
+    private static final String TEMP_B_TREE = "TEMP B-TREE";
+
+    /** Plan step reading every row of a table without an index, e.g. "SCAN TABLE pet" */
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (TABLE )?(pet|breed)\\b");
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_query_plan_test");
+
+    private SupportSQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDb = mDatabaseRule.getDatabase().getOpenHelper().getWritableDatabase();
+    }
+
+    @Test
+    public void sortOrders_areReadInIndexOrder() {
+        for (int sortOrder : SORT_ORDERS) {
+            PetFilter filter = new PetFilter();
+            filter.setSortOrder(sortOrder);
+            assertNotSorted(filter.buildQuery());
+            assertNotSorted(filter.buildPageQuery(100, 50));
+            assertNotSorted(filter.buildShardQuery(0, 50));
+        }
+    }
+
+    @Test
+    public void filters_useAnIndex() {
+        for (PetFilter filter : buildFilters()) {
+            assertUsesIndex(filter.buildQuery());
+            assertUsesIndex(filter.buildCountQuery());
+        }
+    }
+
+    @Test
+    public void filtersSortedByBreed_useAnIndexAndAreNotSorted() {
+        for (PetFilter filter : buildFilters()) {
+            filter.setSortOrder(PetFilter.SORT_BREED);
+            assertUsesIndex(filter.buildQuery());
+            assertNotSorted(filter.buildQuery());
+        }
+    }
+
+    /**
+     * @return one filter per condition, with the default sort order
+     */
+    private static List<PetFilter> buildFilters() {
+        List<PetFilter> filters = new ArrayList<>();
+
+        PetFilter search = new PetFilter();
+        search.setMatchExpression(PetSearch.toMatchExpression("rex"));
+        filters.add(search);
+
+        PetFilter gender = new PetFilter();
+        gender.setGender(PetEntry.GENDER_FEMALE);
+        filters.add(gender);
+
+        PetFilter breed = new PetFilter();
+        breed.setBreed("Labrador");
+        filters.add(breed);
+
+        PetFilter minWeight = new PetFilter();
+        minWeight.setMinWeight(10);
+        filters.add(minWeight);
+
+        PetFilter maxWeight = new PetFilter();
+        maxWeight.setMaxWeight(10);
+        filters.add(maxWeight);
+
+        PetFilter weightRange = new PetFilter();
+        weightRange.setMinWeight(5);
+        weightRange.setMaxWeight(10);
+        filters.add(weightRange);
+
+        return filters;
+    }
+
+    private void assertNotSorted(SupportSQLiteQuery query) {
+        List<String> plan = explain(query);
+        for (String step : plan) {
+            assertFalse(query.getSql() + " sorts rows: " + plan, step.contains(TEMP_B_TREE));
+        }
+    }
+
+    /**
+     * Asserts that the query reads no table without an index, except for walking the primary
+     * key of the pet table in the order the query returns pets in.
+     */
+    private void assertUsesIndex(SupportSQLiteQuery query) {
+        List<String> plan = explain(query);
+        boolean sorted = false;
+        boolean fullScan = false;
+        for (String step : plan) {
+            sorted |= step.contains(TEMP_B_TREE);
+            fullScan |= FULL_SCAN.matcher(step).find() && !step.contains(" USING ");
+        }
+        if (fullScan && sorted) {
+            fail(query.getSql() + " scans a table without an index: " + plan);
+        }
+    }
+
+    private List<String> explain(final SupportSQLiteQuery query) {
+        Cursor cursor = mDb.query(new SupportSQLiteQuery() {
+            @Override
+            public String getSql() {
+                return "EXPLAIN QUERY PLAN " + query.getSql();
+            }
+
+            @Override
+            public void bindTo(SupportSQLiteProgram statement) {
+                query.bindTo(statement);
+            }
+
+            @Override
+            public int getArgCount() {
+                return query.getArgCount();
+            }
+        });
+        try {
+            List<String> plan = new ArrayList<>();
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detailColumn));
+            }
+            return plan;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.android.pets.data;
+
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class PetImporterTest {
+
+    /** Number of records of the large rosters */
+    private static final int LARGE_ROSTER_RECORDS = 1000000;
+
+    /** Every 100th record of the large rosters has an invalid gender */
+    private static final int INVALID_RECORD_INTERVAL = 100;
+
+    /** Maximum growth of the used heap while importing a large roster */
+    private static final long MAX_HEAP_GROWTH_BYTES = 16 * 1024 * 1024;
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_import_test",
+            TuningProfile.THROUGHPUT);
+
+    private File mRoster;
+
+    @Before
+    public void setUp() {
+        mRoster = new File(mDatabaseRule.getContext().getCacheDir(), "roster_test");
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        mRoster.delete();
+    }
+
+    @Test
+    @LargeTest
+    public void importsMillionRowCsvWithConstantMemory() throws IOException {
+        Writer writer = openRoster();
+        try {
+            writer.write("name,breed,gender,weight\n");
+            for (int i = 0; i < LARGE_ROSTER_RECORDS; i++) {
+                writer.write("\"Pet " + i + "\",Breed " + (i % 200) + "," + gender(i) + ","
+                        + (i % 60) + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        assertImportsLargeRoster(new CsvPetRecordReader(readRoster()));
+    }
+
+    @Test
+    @LargeTest
+    public void importsMillionRowJsonWithConstantMemory() throws IOException {
+        Writer writer = openRoster();
+        try {
+            writer.write("[");
+            for (int i = 0; i < LARGE_ROSTER_RECORDS; i++) {
+                writer.write((i == 0 ? "" : ",") + "{\"name\":\"Pet " + i + "\",\"breed\":\"Breed "
+                        + (i % 200) + "\",\"gender\":\"" + gender(i) + "\",\"weight\":"
+                        + (i % 60) + "}\n");
+            }
+            writer.write("]");
+        } finally {
+            writer.close();
+        }
+        assertImportsLargeRoster(new JsonPetRecordReader(readRoster()));
+    }
+
+    @Test
+    public void topLevelObject_isIOException() {
+        assertMalformed("{\"name\": \"Toto\"}");
+    }
+
+    @Test
+    public void arrayOfNonObjects_isIOException() {
+        assertMalformed("[\"Toto\", 7]");
+    }
+
+    @Test
+    public void truncatedArray_isIOException() {
+        assertMalformed("[{\"name\": \"Toto\"}, {\"name\": ");
+    }
+
+    @Test
+    public void jsonRecords_areRead() throws IOException {
+        JsonPetRecordReader reader = new JsonPetRecordReader(new StringReader(
+                "[{\"Name\": \"Toto\", \"weight\": 7, \"tags\": [1, 2]}, {\"name\": null}]"));
+        Map<String, String> first = reader.readRecord();
+        assertEquals("Toto", first.get("name"));
+        assertEquals("7", first.get("weight"));
+        assertFalse(first.containsKey("tags"));
+        assertTrue(reader.readRecord().isEmpty());
+        assertNull(reader.readRecord());
+        reader.close();
+    }
+
+    private void assertMalformed(String json) {
+        JsonPetRecordReader reader = new JsonPetRecordReader(new StringReader(json));
+        try {
+            while (reader.readRecord() != null) {
+                // Keep reading until the malformed part.
+            }
+            fail("Malformed roster was read: " + json);
+        } catch (IOException expected) {
+            // The import task reports the failure instead of crashing.
+        }
+    }
+
+    /**
+     * Imports the large roster, checking the used heap stays bounded while it is read.
+     */
+    private void assertImportsLargeRoster(PetRecordReader reader) throws IOException {
+        final long baseline = usedHeapAfterGc();
+        final long[] maxUsed = {baseline};
+        final List<Integer> invalidRecords = new ArrayList<>();
+        PetImporter.Listener listener = new PetImporter.Listener() {
+            private int mBatches;
+
+            @Override
+            public void onProgress(int recordsRead, int petsImported) {
+                // Collecting after every batch would dominate the run time.
+                if (++mBatches % 100 == 0) {
+                    maxUsed[0] = Math.max(maxUsed[0], usedHeapAfterGc());
+                }
+            }
+
+            @Override
+            public void onInvalidRecord(int recordNumber, String reason) {
+                invalidRecords.add(recordNumber);
+            }
+        };
+
+        PetImporter.Result result =
+                new PetImporter(mDatabaseRule.getDatabase()).importPets(reader, listener);
+
+        int expectedInvalid = LARGE_ROSTER_RECORDS / INVALID_RECORD_INTERVAL;
+        assertEquals(LARGE_ROSTER_RECORDS, result.recordsRead);
+        assertEquals(expectedInvalid, result.invalidRecords);
+        assertEquals(LARGE_ROSTER_RECORDS - expectedInvalid, result.petsImported);
+        assertEquals(expectedInvalid, invalidRecords.size());
+        assertEquals(Integer.valueOf(1), invalidRecords.get(0));
+        assertTrue("Heap grew by " + (maxUsed[0] - baseline) + " bytes",
+                maxUsed[0] - baseline < MAX_HEAP_GROWTH_BYTES);
+    }
+
+    /**
+     * @return the gender of the i-th record, which is invalid for every 100th one
+     */
+    private static String gender(int i) {
+        return i % INVALID_RECORD_INTERVAL == 0 ? "x" : (i % 2 == 0 ? "female" : "m");
+    }
+
+    private Writer openRoster() throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mRoster), "UTF-8"));
+    }
+
+    private BufferedReader readRoster() throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(mRoster), "UTF-8"));
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.runFinalization();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
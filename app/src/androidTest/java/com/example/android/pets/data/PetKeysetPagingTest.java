@@ -0,0 +1,133 @@
+package com.example.android.pets.data;
+
+import android.arch.paging.DataSource;
+import android.arch.paging.PagedList;
+import android.support.annotation.NonNull;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that opening the catalog with {@link PetKeysetDataSource} costs the same time and
+ * memory whether the pet table holds a thousand or a million pets: the first page is an index
+ * range scan, and only the pages scrolled through are held in memory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetKeysetPagingTest {
+
+    private static final int[] SIZES = {1000, 100000, 1000000};
+
+    private static final int PAGE_SIZE = 50;
+    private static final int INITIAL_LOAD_SIZE = PAGE_SIZE * 2;
+
+    /** Position scrolled to, loading the pages up to it */
+    private static final int SCROLL_POSITION = 500;
+
+    /** Allowed growth of the first page latency from the smallest to the largest table */
+    private static final double MAX_LATENCY_FACTOR = 2;
+    private static final double LATENCY_SLACK_MILLIS = 5;
+
+    /** Allowed growth of the memory held by the list, covering the noise of heap sampling */
+    private static final long MEMORY_SLACK_BYTES = 512 * 1024;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule =
+            new PetsDatabaseRule("pets_paging_test", TuningProfile.THROUGHPUT);
+
+    @Test
+    @LargeTest
+    public void firstPageLatencyAndMemory_stayFlat() {
+        final PetsDatabase db = mDatabaseRule.getDatabase();
+        PetBatchWriter writer = new PetBatchWriter(db);
+        double[] latencyMillis = new double[SIZES.length];
+        long[] heldBytes = new long[SIZES.length];
+
+        int petCount = 0;
+        for (int i = 0; i < SIZES.length; i++) {
+            petCount = insertPets(writer, petCount, SIZES[i]);
+
+            latencyMillis[i] = Measurements.medianMillis(5, 21, new Runnable() {
+                @Override
+                public void run() {
+                    PagedList<PetSummary> pets = buildList(db);
+                    assertEquals(INITIAL_LOAD_SIZE, pets.size());
+                    pets.getDataSource().invalidate();
+                }
+            });
+
+            long heapBefore = Measurements.usedHeapBytes();
+            PagedList<PetSummary> pets = buildList(db);
+            for (int position = 0; position < SCROLL_POSITION; position++) {
+                pets.loadAround(Math.min(position, pets.size() - 1));
+            }
+            assertTrue(pets.size() >= SCROLL_POSITION);
+            // Stops observing the tables; the list keeps the pages it loaded.
+            pets.getDataSource().invalidate();
+            heldBytes[i] = Measurements.usedHeapBytes() - heapBefore;
+            // Keeps the list reachable until the heap has been sampled.
+            assertTrue(pets.get(0) != null);
+
+            Measurements.log(SIZES[i] + " pets: first page " + latencyMillis[i] + " ms, "
+                    + heldBytes[i] + " bytes held after scrolling");
+        }
+
+        int last = SIZES.length - 1;
+        assertTrue("First page latency grew from " + latencyMillis[0] + " to "
+                        + latencyMillis[last] + " ms",
+                latencyMillis[last] <= latencyMillis[0] * MAX_LATENCY_FACTOR
+                        + LATENCY_SLACK_MILLIS);
+        assertTrue("Memory held grew from " + heldBytes[0] + " to " + heldBytes[last] + " bytes",
+                heldBytes[last] <= heldBytes[0] + MEMORY_SLACK_BYTES);
+    }
+
+    private static PagedList<PetSummary> buildList(PetsDatabase db) {
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setInitialLoadSizeHint(INITIAL_LOAD_SIZE)
+                .setEnablePlaceholders(false)
+                .build();
+        DataSource<Integer, PetSummary> dataSource =
+                new PetKeysetDataSource.Factory(db, 0).create();
+        return new PagedList.Builder<>(dataSource, config)
+                .setFetchExecutor(DIRECT_EXECUTOR)
+                .setNotifyExecutor(DIRECT_EXECUTOR)
+                .build();
+    }
+
+    /**
+     * Inserts pets until the table holds the given number of pets.
+     *
+     * @return the new number of pets
+     */
+    private static int insertPets(PetBatchWriter writer, int from, int to) {
+        List<PetEntry> chunk = new ArrayList<>(PetBatchWriter.MAX_CHUNK_SIZE);
+        for (int i = from; i < to; i++) {
+            chunk.add(new PetEntry("Pet " + i, "Breed " + (i % 200), i % 3, 1 + i % 60));
+            if (chunk.size() == PetBatchWriter.MAX_CHUNK_SIZE) {
+                writer.insertPets(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writer.insertPets(chunk);
+        }
+        return to;
+    }
+}
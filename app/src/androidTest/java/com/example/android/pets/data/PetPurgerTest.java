@@ -0,0 +1,71 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class PetPurgerTest {
+
+    /** Value of PRAGMA auto_vacuum for incremental vacuum */
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final int PET_COUNT = 20000;
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_purger_test");
+
+    @Test
+    public void enableIncrementalVacuum_switchesDatabase() {
+        PetsDatabase database = mDatabaseRule.getDatabase();
+        PetPurger.enableIncrementalVacuum(database);
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        assertEquals(AUTO_VACUUM_INCREMENTAL, queryLong(db, "PRAGMA auto_vacuum"));
+    }
+
+    /**
+     * The purge gives the space of the deleted pets back to the file system in bounded steps,
+     * leaving no free pages behind.
+     */
+    @Test
+    public void purge_deletesEveryPetAndReclaimsSpace() {
+        PetsDatabase database = mDatabaseRule.getDatabase();
+        PetPurger.enableIncrementalVacuum(database);
+        List<PetEntry> pets = new ArrayList<>();
+        for (int i = 0; i < PET_COUNT; i++) {
+            pets.add(new PetEntry("Pet " + i, null, PetEntry.GENDER_FEMALE, i));
+        }
+        database.petDao().insertPets(pets);
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        long pagesBefore = queryLong(db, "PRAGMA page_count");
+
+        PetPurger.Result result = new PetPurger(database).purge(null);
+
+        assertEquals(PET_COUNT, result.petsDeleted);
+        assertFalse(result.cancelled);
+        assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM pet"));
+        assertEquals(0, queryLong(db, "PRAGMA freelist_count"));
+        assertTrue(queryLong(db, "PRAGMA page_count") < pagesBefore);
+        assertTrue(result.bytesReclaimed > 0);
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
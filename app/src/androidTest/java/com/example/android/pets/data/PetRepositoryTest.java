@@ -0,0 +1,121 @@
+package com.example.android.pets.data;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class PetRepositoryTest {
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_repository_test");
+
+    private PetsDatabase mDb;
+    private PetRepository mRepository;
+    private int mPetId;
+
+    @Before
+    public void setUp() {
+        mDb = mDatabaseRule.getDatabase();
+        mRepository = new PetRepository(mDb);
+        mPetId = (int) mDb.petDao().insertPet(
+                new PetEntry("Rex", null, PetEntry.GENDER_MALE, 10));
+    }
+
+    /**
+     * Two editors that loaded the same version save within one batch window: the first save
+     * wins and the second one is reported as a conflict instead of overwriting it.
+     */
+    @Test
+    public void updatesExpectingTheSameVersion_secondIsConflict() throws Exception {
+        PetEntry loaded = mDb.petDao().getPetById(mPetId).toPetEntry();
+        PetEntry first = loaded.copy();
+        first.setName("Rex the First");
+        PetEntry second = loaded.copy();
+        second.setName("Rex the Second");
+
+        ResultCallback firstResult = new ResultCallback();
+        ResultCallback secondResult = new ResultCallback();
+        mRepository.updatePet(first, firstResult);
+        mRepository.updatePet(second, secondResult);
+
+        assertEquals(1, firstResult.await());
+        assertEquals(PetRepository.CONFLICT, secondResult.await());
+        PetEntry stored = mDb.petDao().getPetById(mPetId).toPetEntry();
+        assertEquals("Rex the First", stored.getName());
+        assertEquals(loaded.getVersion() + 1, stored.getVersion());
+        // The callers' entries keep the version they were written with.
+        assertEquals(loaded.getVersion(), first.getVersion());
+        assertEquals(loaded.getVersion(), second.getVersion());
+    }
+
+    @Test
+    public void changesExpectingTheSameVersion_secondIsConflict() throws Exception {
+        PetEntry loaded = mDb.petDao().getPetById(mPetId).toPetEntry();
+        PetChanges first = new PetChanges(mPetId);
+        first.setExpectedVersion(loaded.getVersion());
+        first.setWeight(11);
+        PetChanges second = new PetChanges(mPetId);
+        second.setExpectedVersion(loaded.getVersion());
+        second.setWeight(12);
+
+        ResultCallback firstResult = new ResultCallback();
+        ResultCallback secondResult = new ResultCallback();
+        mRepository.updatePetFields(first, firstResult);
+        mRepository.updatePetFields(second, secondResult);
+
+        assertEquals(1, firstResult.await());
+        assertEquals(PetRepository.CONFLICT, secondResult.await());
+        assertEquals(11, mDb.petDao().getPetById(mPetId).toPetEntry().getWeight());
+    }
+
+    @Test
+    public void unconditionalChanges_areMerged() throws Exception {
+        PetChanges first = new PetChanges(mPetId);
+        first.setWeight(11);
+        PetChanges second = new PetChanges(mPetId);
+        second.setName("Max");
+
+        ResultCallback firstResult = new ResultCallback();
+        ResultCallback secondResult = new ResultCallback();
+        mRepository.updatePetFields(first, firstResult);
+        mRepository.updatePetFields(second, secondResult);
+
+        assertEquals(1, firstResult.await());
+        assertEquals(1, secondResult.await());
+        PetEntry stored = mDb.petDao().getPetById(mPetId).toPetEntry();
+        assertEquals("Max", stored.getName());
+        assertEquals(11, stored.getWeight());
+        // Both changes were written by one update.
+        assertEquals(1, stored.getVersion());
+    }
+
+    /**
+     * Waits for the result delivered on the main thread.
+     */
+    private static class ResultCallback implements PetRepository.Callback<Integer> {
+
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private volatile Integer mResult;
+
+        @Override
+        public void onComplete(Integer result) {
+            mResult = result;
+            mLatch.countDown();
+        }
+
+        int await() throws InterruptedException {
+            assertTrue("No result", mLatch.await(5, TimeUnit.SECONDS));
+            return mResult;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.database.Cursor;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares searching 100k pets through the FTS index with the LIKE '%x%' scan it replaced.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetSearchTest {
+
+    private static final int PET_COUNT = 100000;
+
+    /** Every this many pets, one is named after the searched word */
+    private static final int MATCH_INTERVAL = 1000;
+
+    private static final String SEARCH_TEXT = "whisk";
+
+    /** Matches the same pets as the FTS search, by scanning every name and breed */
+    private static final String LIKE_QUERY = "SELECT pet.id, pet.name, breed.name AS breed, "
+            + "pet.photo_path FROM pet LEFT JOIN breed ON breed.id = pet.breed_id "
+            + "WHERE pet.name LIKE ? OR breed.name LIKE ? ORDER BY pet.id";
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_search_test");
+
+    private SupportSQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        List<PetEntry> pets = new ArrayList<>(PetBatchWriter.MAX_CHUNK_SIZE);
+        PetBatchWriter writer = new PetBatchWriter(mDatabaseRule.getDatabase());
+        for (int i = 0; i < PET_COUNT; i++) {
+            String name = i % MATCH_INTERVAL == 0 ? "Whiskers " + i : "Pet " + i;
+            pets.add(new PetEntry(name, "Breed " + (i % 200), i % 3, 1 + i % 60));
+            if (pets.size() == PetBatchWriter.MAX_CHUNK_SIZE) {
+                writer.insertPets(pets);
+                pets.clear();
+            }
+        }
+        writer.insertPets(pets);
+        mDb = mDatabaseRule.getDatabase().getOpenHelper().getReadableDatabase();
+    }
+
+    @Test
+    public void toMatchExpression_matchesEveryWordAsPrefix() {
+        assertEquals("lab* ret*", PetSearch.toMatchExpression("  Lab, ret "));
+        assertNull(PetSearch.toMatchExpression(" ,; "));
+    }
+
+    @Test
+    @LargeTest
+    public void ftsSearch_findsTheSamePetsFasterThanLike() {
+        PetFilter filter = new PetFilter();
+        filter.setMatchExpression(PetSearch.toMatchExpression(SEARCH_TEXT));
+        final SupportSQLiteQuery ftsQuery = filter.buildQuery();
+        final SupportSQLiteQuery likeQuery = new SimpleSQLiteQuery(LIKE_QUERY,
+                new Object[]{"%" + SEARCH_TEXT + "%", "%" + SEARCH_TEXT + "%"});
+
+        List<Integer> ftsIds = readIds(ftsQuery);
+        assertEquals(PET_COUNT / MATCH_INTERVAL, ftsIds.size());
+        assertEquals(readIds(likeQuery), ftsIds);
+
+        double ftsMillis = Measurements.medianMillis(3, 11, new Runnable() {
+            @Override
+            public void run() {
+                readIds(ftsQuery);
+            }
+        });
+        double likeMillis = Measurements.medianMillis(3, 11, new Runnable() {
+            @Override
+            public void run() {
+                readIds(likeQuery);
+            }
+        });
+        Measurements.log("Searching " + PET_COUNT + " pets: FTS " + ftsMillis + " ms, LIKE "
+                + likeMillis + " ms");
+        assertTrue("FTS took " + ftsMillis + " ms, LIKE " + likeMillis + " ms",
+                ftsMillis < likeMillis);
+    }
+
+    /**
+     * @return the ids of the pets returned by the query, sorted
+     */
+    private List<Integer> readIds(SupportSQLiteQuery query) {
+        Cursor cursor = mDb.query(query);
+        try {
+            List<Integer> ids = new ArrayList<>(cursor.getCount());
+            int idColumn = cursor.getColumnIndexOrThrow("id");
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(idColumn));
+            }
+            // Search results are ranked, so they're compared in id order.
+            Collections.sort(ids);
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.android.pets.data;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the summary tables the triggers of {@link PetStats} keep up to date always match
+ * the statistics computed from every pet, through random inserts, updates and deletes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetStatsTest {
+
+    private static final int STEPS = 200;
+
+    /** Few breeds and weights, so groups are often emptied and weight extremes often removed */
+    private static final int BREEDS = 5;
+    private static final int MAX_WEIGHT = 10;
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_stats_test");
+
+    private final Random mRandom = new Random(17);
+
+    private PetsDatabase mDb;
+    private PetBatchWriter mWriter;
+    private final List<Integer> mIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mDb = mDatabaseRule.getDatabase();
+        mWriter = new PetBatchWriter(mDb);
+    }
+
+    @Test
+    public void incrementalStats_matchRecomputeAfterEveryChange() {
+        for (int step = 0; step < STEPS; step++) {
+            int operation = mIds.isEmpty() ? 0 : mRandom.nextInt(5);
+            switch (operation) {
+                case 0:
+                    insertPets(1 + mRandom.nextInt(20));
+                    break;
+                case 1:
+                    updatePets(false);
+                    break;
+                case 2:
+                    updatePets(true);
+                    break;
+                case 3:
+                    deletePets();
+                    break;
+                default:
+                    if (mRandom.nextInt(10) == 0) {
+                        mDb.petDao().deleteAllPets();
+                        mIds.clear();
+                    } else {
+                        insertPets(1);
+                    }
+                    break;
+            }
+            assertStatsMatchRecompute("step " + step + ", operation " + operation);
+        }
+    }
+
+    @Test
+    public void purge_leavesEmptyStats() {
+        insertPets(3000);
+        new PetPurger(mDb).purge(null);
+        assertStatsMatchRecompute("purge");
+        assertTrue(mDb.petStatsDao().getGenderStats().isEmpty());
+        assertTrue(mDb.petStatsDao().getBreedStats().isEmpty());
+    }
+
+    private void assertStatsMatchRecompute(String message) {
+        PetStatsDao dao = mDb.petStatsDao();
+        assertEquals(message, dao.computeGenderStats(), dao.getGenderStats());
+        assertEquals(message, dao.computeBreedStats(), dao.getBreedStats());
+        assertTrue(message, PetStats.matchesRecompute(mDb));
+    }
+
+    private void insertPets(int count) {
+        List<PetEntry> pets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pets.add(newPet(0));
+        }
+        for (long id : mWriter.insertPets(pets)) {
+            mIds.add((int) id);
+        }
+    }
+
+    /**
+     * Updates a few random pets, either only their weight, or their gender and breed as well.
+     */
+    private void updatePets(boolean onlyWeight) {
+        int count = 1 + mRandom.nextInt(Math.min(5, mIds.size()));
+        List<PetEntry> pets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = mIds.get(mRandom.nextInt(mIds.size()));
+            PetEntry pet;
+            if (onlyWeight) {
+                pet = mDb.petDao().getPetById(id).toPetEntry();
+                pet.setWeight(mRandom.nextInt(MAX_WEIGHT + 1));
+            } else {
+                pet = newPet(id);
+            }
+            pets.add(pet);
+        }
+        mWriter.updatePets(pets);
+    }
+
+    private void deletePets() {
+        int count = 1 + mRandom.nextInt(Math.min(5, mIds.size()));
+        List<Integer> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(mIds.remove(mRandom.nextInt(mIds.size())));
+        }
+        mWriter.deletePets(ids);
+    }
+
+    /**
+     * @return a random pet with the given id, without a breed one time in five
+     */
+    private PetEntry newPet(int id) {
+        String breed = mRandom.nextInt(5) == 0 ? null : "Breed " + mRandom.nextInt(BREEDS);
+        PetEntry pet = new PetEntry("Pet", breed, mRandom.nextInt(3),
+                mRandom.nextInt(MAX_WEIGHT + 1));
+        pet.setId(id);
+        return pet;
+    }
+}
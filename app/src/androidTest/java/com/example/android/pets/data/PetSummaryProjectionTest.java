@@ -0,0 +1,128 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares reading the catalog rows as full pet entries, with every column of the pet table,
+ * with reading the {@link PetSummary} projection the catalog uses: the time to read the rows
+ * out of the cursor into objects, and the bytes allocated doing so.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetSummaryProjectionTest {
+
+    private static final int PET_COUNT = 20000;
+
+    /** Reads every column of the pet table, as loadAllPets() did for the catalog */
+    private static final String FULL_ENTITY_QUERY = "SELECT pet.*, breed.name AS breed "
+            + "FROM pet LEFT JOIN breed ON breed.id = pet.breed_id ORDER BY pet.id";
+
+    /** Allowed extra time of the projection, covering the noise of timing a query */
+    private static final double TIME_TOLERANCE = 1.1;
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_projection_test");
+
+    private SupportSQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        List<PetEntry> pets = new ArrayList<>(PET_COUNT);
+        for (int i = 0; i < PET_COUNT; i++) {
+            PetEntry pet = new PetEntry("Pet " + i, "Breed " + (i % 200), i % 3, 1 + i % 60);
+            pet.setPhotoPath(i % 2 == 0 ? "photo-" + i + ".jpg" : null);
+            pets.add(pet);
+        }
+        new PetBatchWriter(mDatabaseRule.getDatabase()).insertPets(pets);
+        mDb = mDatabaseRule.getDatabase().getOpenHelper().getReadableDatabase();
+    }
+
+    @Test
+    @LargeTest
+    public void projection_readsFasterAndAllocatesLess() {
+        Runnable readEntries = new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(PET_COUNT, readEntries().size());
+            }
+        };
+        Runnable readSummaries = new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(PET_COUNT, readSummaries().size());
+            }
+        };
+
+        double entryMillis = Measurements.medianMillis(3, 11, readEntries);
+        double summaryMillis = Measurements.medianMillis(3, 11, readSummaries);
+        long entryBytes = Measurements.allocatedBytes(readEntries);
+        long summaryBytes = Measurements.allocatedBytes(readSummaries);
+        Measurements.log("Full entries: " + entryMillis + " ms, " + entryBytes + " bytes; "
+                + "summaries: " + summaryMillis + " ms, " + summaryBytes + " bytes");
+
+        assertTrue("Summaries took " + summaryMillis + " ms, full entries " + entryMillis + " ms",
+                summaryMillis <= entryMillis * TIME_TOLERANCE);
+        if (entryBytes >= 0) {
+            assertTrue("Summaries allocated " + summaryBytes + " bytes, full entries "
+                    + entryBytes + " bytes", summaryBytes < entryBytes);
+        }
+    }
+
+    private List<PetEntry> readEntries() {
+        Cursor cursor = mDb.query(FULL_ENTITY_QUERY);
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow("id");
+            int nameColumn = cursor.getColumnIndexOrThrow("name");
+            int breedIdColumn = cursor.getColumnIndexOrThrow("breed_id");
+            int breedColumn = cursor.getColumnIndexOrThrow("breed");
+            int genderColumn = cursor.getColumnIndexOrThrow("gender");
+            int weightColumn = cursor.getColumnIndexOrThrow("weight");
+            int versionColumn = cursor.getColumnIndexOrThrow("version");
+            int photoColumn = cursor.getColumnIndexOrThrow("photo_path");
+            List<PetEntry> pets = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                PetEntry pet = new PetEntry(cursor.getInt(idColumn), cursor.getString(nameColumn),
+                        cursor.isNull(breedIdColumn) ? null : cursor.getInt(breedIdColumn),
+                        cursor.getInt(genderColumn), cursor.getInt(weightColumn));
+                pet.setBreed(cursor.getString(breedColumn));
+                pet.setVersion(cursor.getInt(versionColumn));
+                pet.setPhotoPath(cursor.getString(photoColumn));
+                pets.add(pet);
+            }
+            return pets;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private List<PetSummary> readSummaries() {
+        Cursor cursor = mDb.query(new PetFilter().buildQuery());
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow("id");
+            int nameColumn = cursor.getColumnIndexOrThrow("name");
+            int breedColumn = cursor.getColumnIndexOrThrow("breed");
+            int photoColumn = cursor.getColumnIndexOrThrow("photo_path");
+            List<PetSummary> pets = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                pets.add(new PetSummary(cursor.getInt(idColumn), cursor.getString(nameColumn),
+                        cursor.getString(breedColumn), cursor.getString(photoColumn)));
+            }
+            return pets;
+        } finally {
+            cursor.close();
+        }
+    }
+}
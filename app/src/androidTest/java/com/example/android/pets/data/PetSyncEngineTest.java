@@ -0,0 +1,186 @@
+package com.example.android.pets.data;
+
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Syncs two databases end to end through a {@link LocalSyncServer}. Uploads and downloads are
+ * interrupted half way to check that the next sync resumes where the interrupted one stopped,
+ * and no client gets its own changes back.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetSyncEngineTest {
+
+    /** More pets than fit in two batches, so a sync takes three of each */
+    private static final int PET_COUNT = 2 * PetSyncEngine.BATCH_SIZE + 10;
+
+    @Rule
+    public final PetsDatabaseRule mFirstRule = new PetsDatabaseRule("pets_sync_first");
+
+    @Rule
+    public final PetsDatabaseRule mSecondRule = new PetsDatabaseRule("pets_sync_second");
+
+    private LocalSyncServer mServer;
+
+    @Before
+    public void setUp() {
+        mServer = new LocalSyncServer();
+    }
+
+    /**
+     * The server stores the second batch but its acknowledgement is lost. The next sync sends
+     * the second batch again, which the server doesn't store twice, and then the third.
+     */
+    @Test
+    public void interruptedUpload_resumesWithUnacknowledgedBatch() throws IOException {
+        insertPets(mFirstRule.getDatabase(), PET_COUNT);
+        InterruptedTransport transport = new InterruptedTransport(mServer);
+        transport.lostAckUpload = 2;
+        assertSyncFails(new PetSyncEngine(mFirstRule.getDatabase(), "first", transport));
+        assertEquals(2 * PetSyncEngine.BATCH_SIZE, mServer.getPetCount());
+
+        PetSyncEngine.Result result =
+                new PetSyncEngine(mFirstRule.getDatabase(), "first", mServer).sync();
+        assertEquals(PET_COUNT - PetSyncEngine.BATCH_SIZE, result.uploaded);
+        assertEquals(0, result.downloaded);
+        assertEquals(PET_COUNT, mServer.getPetCount());
+
+        result = new PetSyncEngine(mSecondRule.getDatabase(), "second", mServer).sync();
+        assertEquals(PET_COUNT, result.downloaded);
+        assertEquals(PET_COUNT, countPets(mSecondRule.getDatabase()));
+    }
+
+    /**
+     * The connection drops before the second batch is downloaded. The next sync starts with
+     * the second batch, and the first one isn't applied again.
+     */
+    @Test
+    public void interruptedDownload_resumesWithNextBatch() throws IOException {
+        insertPets(mFirstRule.getDatabase(), PET_COUNT);
+        new PetSyncEngine(mFirstRule.getDatabase(), "first", mServer).sync();
+
+        InterruptedTransport transport = new InterruptedTransport(mServer);
+        transport.failedDownload = 2;
+        assertSyncFails(new PetSyncEngine(mSecondRule.getDatabase(), "second", transport));
+        assertEquals(PetSyncEngine.BATCH_SIZE, countPets(mSecondRule.getDatabase()));
+
+        PetSyncEngine.Result result =
+                new PetSyncEngine(mSecondRule.getDatabase(), "second", mServer).sync();
+        assertEquals(0, result.uploaded);
+        assertEquals(PET_COUNT - PetSyncEngine.BATCH_SIZE, result.downloaded);
+        assertEquals(PET_COUNT, countPets(mSecondRule.getDatabase()));
+        PetEntry last = mSecondRule.getDatabase().petDao().getPetById(PET_COUNT).toPetEntry();
+        assertEquals("Pet " + (PET_COUNT - 1), last.getName());
+    }
+
+    /**
+     * Neither the changes a client uploaded nor the changes it downloaded come back to it.
+     */
+    @Test
+    public void changes_areNotEchoed() throws IOException {
+        PetsDatabase first = mFirstRule.getDatabase();
+        PetsDatabase second = mSecondRule.getDatabase();
+        insertPets(first, 10);
+        assertResult(10, 0, new PetSyncEngine(first, "first", mServer).sync());
+        assertResult(0, 0, new PetSyncEngine(first, "first", mServer).sync());
+
+        // Downloaded pets aren't recorded as local changes of the second client.
+        assertResult(0, 10, new PetSyncEngine(second, "second", mServer).sync());
+        assertResult(0, 0, new PetSyncEngine(second, "second", mServer).sync());
+
+        second.petDao().updatePet(1, "Renamed", null, PetEntry.GENDER_FEMALE, 7);
+        second.petDao().deletePet(2);
+        assertResult(2, 0, new PetSyncEngine(second, "second", mServer).sync());
+
+        assertResult(0, 2, new PetSyncEngine(first, "first", mServer).sync());
+        assertEquals("Renamed", first.petDao().getPetById(1).toPetEntry().getName());
+        assertFalse(first.petDao().petExists(2));
+        assertResult(0, 0, new PetSyncEngine(first, "first", mServer).sync());
+        assertResult(0, 0, new PetSyncEngine(second, "second", mServer).sync());
+        assertEquals(9, mServer.getPetCount());
+    }
+
+    private static void insertPets(PetsDatabase db, int count) {
+        List<PetEntry> pets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pets.add(new PetEntry("Pet " + i, "Breed " + (i % 20), i % 3, 1 + i % 60));
+        }
+        new PetBatchWriter(db).insertPets(pets);
+    }
+
+    private static int countPets(PetsDatabase db) {
+        Cursor cursor = db.query("SELECT COUNT(*) FROM pet", null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void assertSyncFails(PetSyncEngine engine) {
+        try {
+            engine.sync();
+            fail("The sync wasn't interrupted");
+        } catch (IOException expected) {
+            // The next sync resumes.
+        }
+    }
+
+    private static void assertResult(int uploaded, int downloaded, PetSyncEngine.Result result) {
+        assertEquals("Uploaded", uploaded, result.uploaded);
+        assertEquals("Downloaded", downloaded, result.downloaded);
+    }
+
+    /**
+     * Passes requests to the server until the configured one, then fails like a dropped
+     * connection.
+     */
+    private static class InterruptedTransport implements SyncTransport {
+
+        private final SyncTransport mServer;
+
+        /** Number of the upload whose acknowledgement is lost, counting from 1, or 0 */
+        int lostAckUpload;
+
+        /** Number of the download that fails before reaching the server, or 0 */
+        int failedDownload;
+
+        private int mUploads;
+        private int mDownloads;
+
+        InterruptedTransport(SyncTransport server) {
+            mServer = server;
+        }
+
+        @Override
+        public byte[] upload(byte[] body) throws IOException {
+            byte[] ack = mServer.upload(body);
+            if (++mUploads == lostAckUpload) {
+                throw new IOException("Acknowledgement lost");
+            }
+            return ack;
+        }
+
+        @Override
+        public byte[] download(String clientId, long afterSeq, int limit) throws IOException {
+            if (++mDownloads == failedDownload) {
+                throw new IOException("Connection dropped");
+            }
+            return mServer.download(clientId, afterSeq, limit);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers the database registry of {@link PetsDatabase#getInstance} from many threads.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PetsDatabaseRegistryTest {
+
+    private static final String[] NAMES =
+            {"pets_registry_test_0", "pets_registry_test_1", "pets_registry_test_2"};
+
+    private static final int THREADS = 32;
+    private static final int CALLS_PER_THREAD = 2000;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        cleanUp();
+    }
+
+    @After
+    public void tearDown() {
+        cleanUp();
+    }
+
+    private void cleanUp() {
+        for (String name : NAMES) {
+            PetsDatabase.close(name);
+            mContext.deleteDatabase(name);
+        }
+    }
+
+    @Test
+    public void getInstance_fromManyThreads_returnsOneInstancePerName() throws Exception {
+        final Map<String, Set<PetsDatabase>> instances = new ConcurrentHashMap<>();
+        for (String name : NAMES) {
+            instances.put(name, Collections.newSetFromMap(
+                    Collections.synchronizedMap(new IdentityHashMap<PetsDatabase, Boolean>())));
+        }
+
+        runConcurrently(new ThreadBody() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    String name = NAMES[(thread + i) % NAMES.length];
+                    instances.get(name).add(PetsDatabase.getInstance(mContext, name));
+                }
+            }
+        });
+
+        for (String name : NAMES) {
+            assertEquals(name, 1, instances.get(name).size());
+            assertSame(instances.get(name).iterator().next(),
+                    PetsDatabase.getInstance(mContext, name));
+        }
+        assertTrue(PetsDatabase.getOpenDatabaseNames().containsAll(Arrays.asList(NAMES)));
+    }
+
+    /**
+     * Databases closed while other threads keep asking for them are opened again; no call
+     * fails and the registry ends up with one open instance per name.
+     */
+    @Test
+    public void getInstance_whileClosing_neverFails() throws Exception {
+        runConcurrently(new ThreadBody() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < CALLS_PER_THREAD / 10; i++) {
+                    String name = NAMES[(thread + i) % NAMES.length];
+                    if (thread == 0) {
+                        PetsDatabase.close(name);
+                    } else {
+                        assertNotNull(PetsDatabase.getInstance(mContext, name));
+                    }
+                }
+            }
+        });
+
+        for (String name : NAMES) {
+            PetsDatabase db = PetsDatabase.getInstance(mContext, name);
+            assertSame(db, PetsDatabase.getInstance(mContext, name));
+            db.petDao().petExists(1);
+        }
+    }
+
+    @Test
+    public void closeAndEvictIdle_openNewInstances() {
+        PetsDatabase first = PetsDatabase.getInstance(mContext, NAMES[0]);
+        assertTrue(PetsDatabase.close(NAMES[0]));
+        assertFalse(PetsDatabase.close(NAMES[0]));
+        assertFalse(PetsDatabase.getOpenDatabaseNames().contains(NAMES[0]));
+        assertNotSame(first, PetsDatabase.getInstance(mContext, NAMES[0]));
+
+        PetsDatabase.getInstance(mContext, NAMES[1]);
+        assertEquals(0, PetsDatabase.evictIdle(TimeUnit.HOURS.toMillis(1)));
+        assertTrue(PetsDatabase.evictIdle(0) >= 2);
+        for (String name : NAMES) {
+            assertFalse(PetsDatabase.getOpenDatabaseNames().contains(name));
+        }
+    }
+
+    private interface ThreadBody {
+        void run(int thread);
+    }
+
+    /**
+     * Runs the body on {@link #THREADS} threads released at the same time, and rethrows the
+     * first failure of any of them.
+     */
+    private static void runConcurrently(final ThreadBody body) throws Exception {
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        body.run(thread);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        assertTrue("Threads didn't finish", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Throwable error = failure.get();
+        if (error instanceof Exception) {
+            throw (Exception) error;
+        } else if (error != null) {
+            throw new AssertionError(error);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+
+import org.junit.rules.ExternalResource;
+
+/**
+ * Creates a fresh database file before each test and deletes it afterwards.
+ */
+public class PetsDatabaseRule extends ExternalResource {
+
+    private final String mName;
+    private final TuningProfile mProfile;
+    private Context mContext;
+    private PetsDatabase mDatabase;
+
+    public PetsDatabaseRule(String name) {
+        this(name, TuningProfile.DURABLE);
+    }
+
+    public PetsDatabaseRule(String name, TuningProfile profile) {
+        mName = name;
+        mProfile = profile;
+    }
+
+    @Override
+    protected void before() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(mName);
+        mDatabase = PetsDatabase.create(mContext, mName, mProfile);
+    }
+
+    @Override
+    protected void after() {
+        mDatabase.close();
+        mContext.deleteDatabase(mName);
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public PetsDatabase getDatabase() {
+        return mDatabase;
+    }
+}
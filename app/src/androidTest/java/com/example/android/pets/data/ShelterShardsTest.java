@@ -0,0 +1,111 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pages through the pets of several shelter databases and adds up their statistics.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShelterShardsTest {
+
+    private static final int[] SHELTER_IDS = {9001, 9002, 9003};
+    private static final int[] PET_COUNTS = {40, 0, 25};
+    private static final int PAGE_SIZE = 7;
+
+    private Context mContext;
+    private ShelterShards mShards;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        cleanUp();
+        mShards = new ShelterShards(mContext);
+        for (int i = 0; i < SHELTER_IDS.length; i++) {
+            List<PetEntry> pets = new ArrayList<>();
+            for (int p = 0; p < PET_COUNTS[i]; p++) {
+                // Few names and breeds, so many pets tie within and across shelters.
+                String breed = p % 4 == 0 ? null : "Breed " + (p % 3);
+                pets.add(new PetEntry("Pet " + (p % 5), breed, p % 3, 1 + p % 10));
+            }
+            new PetBatchWriter(mShards.getShard(SHELTER_IDS[i])).insertPets(pets);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        cleanUp();
+    }
+
+    private void cleanUp() {
+        for (int shelterId : SHELTER_IDS) {
+            PetsDatabase.close(ShelterShards.getDatabaseName(shelterId));
+            mContext.deleteDatabase(ShelterShards.getDatabaseName(shelterId));
+        }
+    }
+
+    @Test
+    public void pages_returnEveryPetOnceInOrder() throws Exception {
+        int total = 0;
+        for (int count : PET_COUNTS) {
+            total += count;
+        }
+        int[] sortOrders = {PetFilter.SORT_DEFAULT, PetFilter.SORT_NAME, PetFilter.SORT_BREED,
+                PetFilter.SORT_WEIGHT};
+        for (int sortOrder : sortOrders) {
+            PetFilter filter = new PetFilter();
+            filter.setSortOrder(sortOrder);
+            List<ShelterPet> expected = mShards.queryAllPets(filter, total + 1);
+            assertEquals(total, expected.size());
+
+            List<ShelterPet> paged = new ArrayList<>();
+            ShelterShards.Page page = null;
+            do {
+                page = mShards.queryAllPets(filter, page, PAGE_SIZE);
+                assertTrue(page.getPets().size() <= PAGE_SIZE);
+                paged.addAll(page.getPets());
+            } while (page.hasMore());
+
+            assertEquals("Sort order " + sortOrder, keys(expected), keys(paged));
+        }
+    }
+
+    @Test
+    public void stats_addUpEveryShelter() throws Exception {
+        int total = 0;
+        for (PetGenderStats stats : mShards.getAllGenderStats()) {
+            total += stats.getPetCount();
+        }
+        assertEquals(PET_COUNTS[0] + PET_COUNTS[2], total);
+
+        int breedTotal = 0;
+        for (NamedBreedStats stats : mShards.getAllBreedStats()) {
+            breedTotal += stats.getStats().getPetCount();
+        }
+        assertEquals(total, breedTotal);
+        // Breeds of different shelters are combined, so each name appears once.
+        assertEquals(4, mShards.getAllBreedStats().size());
+        assertFalse(mShards.getAllGenderStats().isEmpty());
+    }
+
+    private static List<String> keys(List<ShelterPet> pets) {
+        List<String> keys = new ArrayList<>(pets.size());
+        for (ShelterPet pet : pets) {
+            keys.add(pet.getShelterId() + "/" + pet.getPet().getId());
+        }
+        return keys;
+    }
+}
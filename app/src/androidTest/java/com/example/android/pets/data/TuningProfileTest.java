@@ -0,0 +1,66 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the settings of a {@link TuningProfile} reach the connection running the writes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TuningProfileTest {
+
+    private static final TuningProfile PROFILE = TuningProfile.THROUGHPUT;
+
+    /** Values returned by PRAGMA synchronous, by index */
+    private static final List<String> SYNCHRONOUS_VALUES = Arrays.asList(
+            TuningProfile.SYNCHRONOUS_OFF, TuningProfile.SYNCHRONOUS_NORMAL,
+            TuningProfile.SYNCHRONOUS_FULL);
+
+    @Rule
+    public final PetsDatabaseRule mDatabaseRule = new PetsDatabaseRule("pets_tuning_test", PROFILE);
+
+    @Test
+    public void writeConnection_usesProfile() {
+        SupportSQLiteDatabase db = mDatabaseRule.getDatabase().getOpenHelper()
+                .getWritableDatabase();
+        // Writes run in transactions, which hold the primary connection.
+        db.beginTransaction();
+        try {
+            assertEquals(SYNCHRONOUS_VALUES.indexOf(PROFILE.getSynchronous()),
+                    queryLong(db, "PRAGMA synchronous"));
+            assertEquals("wal", queryString(db, "PRAGMA journal_mode"));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String queryString(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            cursor.moveToFirst();
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.pets;
+
+import android.app.IntentService;
+import android.content.Intent;
+import android.util.Log;
+
+import com.example.android.pets.data.TuningProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs the {@link DataLayerBenchmark} on a device, in the background. Only part of debug builds,
+ * and not exported, so other apps can't start it; start it from a root shell with
+ *
+ * <pre>
+ * adb root
+ * adb shell am startservice -n com.example.android.pets/.BenchmarkService \
+ *     --eia sizes 1000,100000 --ei warmup 2 --ei iterations 5
+ * </pre>
+ *
+ * The results are written as JSON to benchmark-results.json in the app's external files
+ * directory. If a benchmark-baseline.json file (a copy of an earlier results file) is found next
+ * to it, every case is compared to its baseline and regressions are reported in the log and in
+ * the results. DataLayerBenchmarkTest runs the same cases on the JVM, for CI.
+ */
+public class BenchmarkService extends IntentService {
+
+    private static final String LOG_TAG = BenchmarkService.class.getSimpleName();
+
+    /** Extras of the start intent */
+    public static final String EXTRA_SIZES = "sizes";
+    public static final String EXTRA_WARMUP_ITERATIONS = "warmup";
+    public static final String EXTRA_ITERATIONS = "iterations";
+
+    private static final String RESULTS_FILE_NAME = "benchmark-results.json";
+    private static final String BASELINE_FILE_NAME = "benchmark-baseline.json";
+
+    public BenchmarkService() {
+        super("BenchmarkService");
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null) {
+            return;
+        }
+        int[] sizes = intent.getIntArrayExtra(EXTRA_SIZES);
+        if (sizes == null) {
+            sizes = DataLayerBenchmark.DEFAULT_SIZES;
+        }
+        int warmupIterations = intent.getIntExtra(EXTRA_WARMUP_ITERATIONS, 1);
+        int iterations = intent.getIntExtra(EXTRA_ITERATIONS, 3);
+
+        DataLayerBenchmark benchmark = new DataLayerBenchmark(this, warmupIterations, iterations);
+        List<DataLayerBenchmark.Result> results = benchmark.run(sizes,
+                new TuningProfile[]{TuningProfile.DURABLE, TuningProfile.THROUGHPUT});
+
+        File directory = getExternalFilesDir(null);
+        if (directory == null) {
+            directory = getFilesDir();
+        }
+        try {
+            DataLayerBenchmark.compareToBaseline(results,
+                    DataLayerBenchmark.readBaseline(new File(directory, BASELINE_FILE_NAME)));
+            File resultsFile = new File(directory, RESULTS_FILE_NAME);
+            DataLayerBenchmark.writeResults(resultsFile, results, warmupIterations);
+            Log.i(LOG_TAG, "Benchmark results written to " + resultsFile);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing benchmark results", e);
+        }
+    }
+}
@@ -0,0 +1,605 @@
+package com.example.android.pets;
+
+import android.arch.paging.DataSource;
+import android.arch.paging.PagedList;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Debug;
+import android.support.annotation.NonNull;
+import android.util.JsonReader;
+import android.util.JsonWriter;
+import android.util.Log;
+import android.widget.FrameLayout;
+
+import com.example.android.pets.data.LocalSyncServer;
+import com.example.android.pets.data.PetBatchWriter;
+import com.example.android.pets.data.PetDao;
+import com.example.android.pets.data.PetEntry;
+import com.example.android.pets.data.PetFilter;
+import com.example.android.pets.data.PetKeysetDataSource;
+import com.example.android.pets.data.PetStats;
+import com.example.android.pets.data.PetStatsDao;
+import com.example.android.pets.data.PetSummary;
+import com.example.android.pets.data.PetSyncEngine;
+import com.example.android.pets.data.PetsDatabase;
+import com.example.android.pets.data.TuningProfile;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures the hot paths of the data layer: inserting, updating, deleting, loading all pets,
+ * loading a pet by id and binding catalog rows with either catalog adapter, plus reads running
+ * next to bulk writes and a delta sync through an in-process server. Besides the time, the bytes
+ * allocated by each iteration are recorded where the runtime reports them.
+ *
+ * Every combination of table size and {@link TuningProfile} runs against its own, freshly
+ * created database file, so one run can't warm up or fragment the database of the next one.
+ * Each case is repeated a number of warm-up iterations before the measured iterations.
+ */
+class DataLayerBenchmark {
+
+    private static final String LOG_TAG = DataLayerBenchmark.class.getSimpleName();
+
+    /** Table sizes measured by default */
+    static final int[] DEFAULT_SIZES = {1000, 100000, 1000000};
+
+    /** A median slower than the baseline by more than this factor is a regression */
+    static final double REGRESSION_THRESHOLD = 1.2;
+
+    /** Number of rows touched by the update, delete, load by id and bind cases */
+    private static final int SAMPLE_ROWS = 1000;
+
+    /** Number of rows inserted by the writer running next to the concurrent read case */
+    private static final int CONCURRENT_WRITE_ROWS = 10000;
+
+    /** Largest table synced by the sync case, whose stand-in server keeps every pet in memory */
+    private static final int MAX_SYNC_ROWS = 100000;
+
+    private static final String DATABASE_NAME = "pets_benchmark";
+    private static final String REPLICA_DATABASE_NAME = "pets_benchmark_replica";
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Timings of one case, in milliseconds per iteration.
+     */
+    static class Result {
+        final String caseName;
+        final String profile;
+        final int tableSize;
+        final int rows;
+        final double[] millis;
+        /** Bytes allocated by each iteration, or null if the runtime doesn't report them */
+        final long[] allocatedBytes;
+        Double baselineMillis;
+        /** Size of the database files once the case ran, if measured */
+        Long databaseBytes;
+
+        Result(String caseName, String profile, int tableSize, int rows, double[] millis,
+               long[] allocatedBytes) {
+            this.caseName = caseName;
+            this.profile = profile;
+            this.tableSize = tableSize;
+            this.rows = rows;
+            this.millis = millis;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /** Key identifying the case in the baseline file */
+        String key() {
+            return caseName + "/" + profile + "/" + tableSize;
+        }
+
+        double median() {
+            double[] sorted = millis.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+
+        long medianAllocatedBytes() {
+            long[] sorted = allocatedBytes.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+
+        boolean isRegression() {
+            return baselineMillis != null && median() > baselineMillis * REGRESSION_THRESHOLD;
+        }
+    }
+
+    private final Context mContext;
+    private final int mWarmupIterations;
+    private final int mIterations;
+    private final Random mRandom = new Random(42);
+
+    DataLayerBenchmark(Context context, int warmupIterations, int iterations) {
+        mContext = context.getApplicationContext();
+        mWarmupIterations = warmupIterations;
+        mIterations = iterations;
+    }
+
+    /**
+     * Runs every case for each table size and tuning profile.
+     */
+    List<Result> run(int[] sizes, TuningProfile[] profiles) {
+        List<Result> results = new ArrayList<>();
+        for (TuningProfile profile : profiles) {
+            for (int size : sizes) {
+                mContext.deleteDatabase(DATABASE_NAME);
+                PetsDatabase db = PetsDatabase.create(mContext, DATABASE_NAME, profile);
+                try {
+                    runCases(db, profile, size, results);
+                } finally {
+                    db.close();
+                    mContext.deleteDatabase(DATABASE_NAME);
+                }
+            }
+        }
+        return results;
+    }
+
+    private void runCases(final PetsDatabase db, TuningProfile profile, final int size,
+                          List<Result> results) {
+        final PetDao dao = db.petDao();
+        final PetBatchWriter writer = new PetBatchWriter(db);
+        final int sample = Math.min(SAMPLE_ROWS, size);
+
+        // Insert: fills the table, which the following cases then work on.
+        results.add(measure("insert", profile, size, size, new Runnable() {
+            @Override
+            public void run() {
+                dao.deleteAllPets();
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                insertPets(writer, size);
+            }
+        }));
+        results.get(results.size() - 1).databaseBytes = getDatabaseBytes();
+        final int firstId = dao.loadPetSummariesAfter(0, 1).get(0).getId();
+
+        results.add(measure("loadById", profile, size, sample, null, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < sample; i++) {
+                    dao.getPetById(firstId + mRandom.nextInt(size));
+                }
+            }
+        }));
+
+        results.add(measure("loadAll", profile, size, size, null, new Runnable() {
+            @Override
+            public void run() {
+                int lastId = 0;
+                List<PetSummary> page;
+                while (!(page = dao.loadPetSummariesAfter(lastId, 500)).isEmpty()) {
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            }
+        }));
+
+        results.add(measure("bind", profile, size, sample, null, new Runnable() {
+            @Override
+            public void run() {
+                bindRows(db, sample);
+            }
+        }));
+
+        // Same rows bound from a cursor, without materialising a PetSummary per row.
+        results.add(measure("bindCursor", profile, size, sample, null, new Runnable() {
+            @Override
+            public void run() {
+                bindCursorRows(db, sample);
+            }
+        }));
+
+        results.add(measure("update", profile, size, sample, null, new Runnable() {
+            @Override
+            public void run() {
+                List<PetEntry> pets = new ArrayList<>(sample);
+                for (int i = 0; i < sample; i++) {
+                    PetEntry pet = newPet(i);
+                    pet.setId(firstId + mRandom.nextInt(size));
+                    pets.add(pet);
+                }
+                writer.updatePets(pets);
+            }
+        }));
+
+        results.add(measure("readDuringWrites", profile, size, sample, null, new Runnable() {
+            @Override
+            public void run() {
+                readDuringWrites(db, firstId, size, sample);
+            }
+        }));
+
+        // Delete: every iteration removes its own block of ids, so none deletes missing rows.
+        final int deleteRows = Math.max(1, Math.min(sample, size / (mWarmupIterations + mIterations)));
+        final int[] nextId = {firstId};
+        results.add(measure("delete", profile, size, deleteRows, null, new Runnable() {
+            @Override
+            public void run() {
+                List<Integer> ids = new ArrayList<>(deleteRows);
+                for (int i = 0; i < deleteRows; i++) {
+                    ids.add(nextId[0]++);
+                }
+                writer.deletePets(ids);
+            }
+        }));
+
+        // Group by breed: computes the breed statistics from every pet.
+        results.add(measure("groupByBreed", profile, size, size, null, new Runnable() {
+            @Override
+            public void run() {
+                db.petStatsDao().computeBreedStats();
+            }
+        }));
+
+        // Stats: reads the summary tables the triggers kept up to date through every case above.
+        final PetStatsDao statsDao = db.petStatsDao();
+        results.add(measure("stats", profile, size, 1, null, new Runnable() {
+            @Override
+            public void run() {
+                statsDao.getGenderStats();
+                statsDao.getBreedStats();
+            }
+        }));
+        if (!PetStats.matchesRecompute(db)) {
+            throw new IllegalStateException("Summary tables don't match the pet table");
+        }
+
+        if (size <= MAX_SYNC_ROWS) {
+            results.add(measureSync(db, profile, size));
+        }
+    }
+
+    /**
+     * Sync: uploads every pet to a {@link LocalSyncServer}, then downloads them into an empty
+     * replica database, and checks the replica ends up with the same pets.
+     */
+    private Result measureSync(final PetsDatabase db, final TuningProfile profile, int size) {
+        final LocalSyncServer[] server = new LocalSyncServer[1];
+        final PetsDatabase[] replica = new PetsDatabase[1];
+        try {
+            Result result = measure("sync", profile, size, size, new Runnable() {
+                @Override
+                public void run() {
+                    server[0] = new LocalSyncServer();
+                    if (replica[0] != null) {
+                        replica[0].close();
+                    }
+                    mContext.deleteDatabase(REPLICA_DATABASE_NAME);
+                    replica[0] = PetsDatabase.create(mContext, REPLICA_DATABASE_NAME, profile);
+                    new PetSyncEngine(db, "source", server[0]).requeueAll();
+                }
+            }, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        new PetSyncEngine(db, "source", server[0]).sync();
+                        new PetSyncEngine(replica[0], "replica", server[0]).sync();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Sync failed", e);
+                    }
+                }
+            });
+            if (!db.petStatsDao().getGenderStats()
+                    .equals(replica[0].petStatsDao().getGenderStats())) {
+                throw new IllegalStateException("Replica doesn't match the synced database");
+            }
+            Log.i(LOG_TAG, "Sync transferred " + server[0].getBytesTransferred() + " bytes");
+            return result;
+        } finally {
+            if (replica[0] != null) {
+                replica[0].close();
+            }
+            mContext.deleteDatabase(REPLICA_DATABASE_NAME);
+        }
+    }
+
+    /**
+     * Runs the warm-up iterations, then times the measured ones and counts the bytes they
+     * allocate. The setup runs untimed before every iteration.
+     */
+    private Result measure(String caseName, TuningProfile profile, int tableSize, int rows,
+                           Runnable setUp, Runnable body) {
+        double[] millis = new double[mIterations];
+        long[] allocatedBytes = getAllocatedBytes() < 0 ? null : new long[mIterations];
+        for (int i = 0; i < mWarmupIterations + mIterations; i++) {
+            if (setUp != null) {
+                setUp.run();
+            }
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            body.run();
+            long elapsed = System.nanoTime() - start;
+            long allocated = getAllocatedBytes() - allocatedBefore;
+            if (i >= mWarmupIterations) {
+                millis[i - mWarmupIterations] = elapsed / 1e6;
+                if (allocatedBytes != null) {
+                    allocatedBytes[i - mWarmupIterations] = allocated;
+                }
+            }
+        }
+        Result result = new Result(caseName, profile.getName(), tableSize, rows, millis,
+                allocatedBytes);
+        Log.i(LOG_TAG, result.key() + ": " + result.median() + " ms"
+                + (allocatedBytes != null ? ", " + result.medianAllocatedBytes() + " bytes" : ""));
+        return result;
+    }
+
+    /**
+     * @return the bytes allocated by the process so far, or -1 if the runtime doesn't report
+     * them. Includes other threads, such as the writer of readDuringWrites.
+     */
+    private static long getAllocatedBytes() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+        String bytes = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        try {
+            return bytes != null ? Long.parseLong(bytes) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the size of the database file and its write-ahead log, in bytes
+     */
+    private long getDatabaseBytes() {
+        File database = mContext.getDatabasePath(DATABASE_NAME);
+        return database.length() + new File(database.getPath() + "-wal").length();
+    }
+
+    private void insertPets(PetBatchWriter writer, int count) {
+        List<PetEntry> chunk = new ArrayList<>(PetBatchWriter.MAX_CHUNK_SIZE);
+        for (int i = 0; i < count; i++) {
+            chunk.add(newPet(i));
+            if (chunk.size() == PetBatchWriter.MAX_CHUNK_SIZE) {
+                writer.insertPets(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writer.insertPets(chunk);
+        }
+    }
+
+    private PetEntry newPet(int i) {
+        return new PetEntry("Pet " + i, "Breed " + (i % 200),
+                i % 3, 1 + mRandom.nextInt(60));
+    }
+
+    /**
+     * Binds the first rows of the catalog the way the catalog does, with the keyset data source,
+     * a PagedList and a recycled view holder.
+     */
+    private void bindRows(PetsDatabase db, int rows) {
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(50)
+                .setEnablePlaceholders(false)
+                .build();
+        DataSource<Integer, PetSummary> dataSource = new PetKeysetDataSource.Factory(db).create();
+        PagedList<PetSummary> pets = new PagedList.Builder<>(dataSource, config)
+                .setFetchExecutor(DIRECT_EXECUTOR)
+                .setNotifyExecutor(DIRECT_EXECUTOR)
+                .build();
+
+        PetAdapter adapter = new PetAdapter(mContext, null);
+        adapter.submitList(pets);
+        PetAdapter.PetViewHolder holder =
+                adapter.onCreateViewHolder(new FrameLayout(mContext), 0);
+        for (int position = 0; position < rows && position < adapter.getItemCount(); position++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+        dataSource.invalidate();
+    }
+
+    /**
+     * Binds the first rows of the catalog from a cursor over the catalog query, as the catalog
+     * does with {@link PetCursorAdapter}.
+     */
+    private void bindCursorRows(PetsDatabase db, int rows) {
+        Cursor cursor = db.query(new PetFilter().buildQuery());
+        try {
+            PetCursorAdapter adapter = new PetCursorAdapter(mContext, null);
+            adapter.swapCursor(cursor);
+            PetCursorAdapter.PetViewHolder holder =
+                    adapter.onCreateViewHolder(new FrameLayout(mContext), 0);
+            int count = Math.min(rows, adapter.getItemCount());
+            for (int position = 0; position < count; position++) {
+                adapter.onBindViewHolder(holder, position);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Loads pets by id while another thread keeps inserting pets in batches.
+     */
+    private void readDuringWrites(PetsDatabase db, final int firstId, final int size, int reads) {
+        final PetBatchWriter writer = new PetBatchWriter(db);
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int written = 0;
+                while (!done.get() && written < CONCURRENT_WRITE_ROWS) {
+                    List<PetEntry> chunk = new ArrayList<>(100);
+                    for (int i = 0; i < 100; i++) {
+                        chunk.add(newPet(size + written + i));
+                    }
+                    writer.insertPets(chunk);
+                    written += chunk.size();
+                }
+            }
+        });
+        writerThread.start();
+        PetDao dao = db.petDao();
+        for (int i = 0; i < reads; i++) {
+            dao.getPetById(firstId + mRandom.nextInt(size));
+        }
+        done.set(true);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the median timings of a previous run, keyed by {@link Result#key()}.
+     *
+     * @return the baseline, or an empty map if the file doesn't exist
+     */
+    static Map<String, Double> readBaseline(File file) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        if (!file.exists()) {
+            return baseline;
+        }
+        JsonReader reader = new JsonReader(new FileReader(file));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("results")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String key = null;
+                    Double median = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if (name.equals("key")) {
+                            key = reader.nextString();
+                        } else if (name.equals("medianMillis")) {
+                            median = reader.nextDouble();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    if (key != null && median != null) {
+                        baseline.put(key, median);
+                    }
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        return baseline;
+    }
+
+    /**
+     * Sets the baseline of every result that has one in the given baseline.
+     *
+     * @return the results slower than their baseline by more than the regression threshold
+     */
+    static List<Result> compareToBaseline(List<Result> results, Map<String, Double> baseline) {
+        List<Result> regressions = new ArrayList<>();
+        for (Result result : results) {
+            result.baselineMillis = baseline.get(result.key());
+            if (result.isRegression()) {
+                Log.w(LOG_TAG, "Regression in " + result.key() + ": " + result.median()
+                        + " ms, baseline " + result.baselineMillis + " ms");
+                regressions.add(result);
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Writes a baseline in the format read by {@link #readBaseline}, with the cases sorted by key.
+     */
+    static void writeBaseline(File file, Map<String, Double> baseline, String description)
+            throws IOException {
+        JsonWriter writer = new JsonWriter(new FileWriter(file));
+        try {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("description").value(description);
+            writer.name("results").beginArray();
+            for (Map.Entry<String, Double> entry : new TreeMap<>(baseline).entrySet()) {
+                writer.beginObject();
+                writer.name("key").value(entry.getKey());
+                writer.name("medianMillis").value(entry.getValue());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the results as JSON. The file can be used as the baseline of later runs.
+     */
+    static void writeResults(File file, List<Result> results, int warmupIterations)
+            throws IOException {
+        JsonWriter writer = new JsonWriter(new FileWriter(file));
+        try {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("device").value(android.os.Build.MODEL);
+            writer.name("sdk").value(android.os.Build.VERSION.SDK_INT);
+            writer.name("warmupIterations").value(warmupIterations);
+            writer.name("results").beginArray();
+            for (Result result : results) {
+                writer.beginObject();
+                writer.name("key").value(result.key());
+                writer.name("case").value(result.caseName);
+                writer.name("profile").value(result.profile);
+                writer.name("tableSize").value(result.tableSize);
+                writer.name("rows").value(result.rows);
+                writer.name("medianMillis").value(result.median());
+                writer.name("rowsPerSecond").value(result.rows * 1000.0 / result.median());
+                writer.name("iterationsMillis").beginArray();
+                for (double millis : result.millis) {
+                    writer.value(millis);
+                }
+                writer.endArray();
+                if (result.allocatedBytes != null) {
+                    writer.name("medianAllocatedBytes").value(result.medianAllocatedBytes());
+                }
+                if (result.databaseBytes != null) {
+                    writer.name("databaseBytes").value(result.databaseBytes);
+                }
+                if (result.baselineMillis != null) {
+                    writer.name("baselineMillis").value(result.baselineMillis);
+                    writer.name("regression").value(result.isRegression());
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.android.pets.data;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-process stand-in for the sync server, used to run {@link PetSyncEngine} end to end in
+ * debug builds. It keeps the latest change of every pet in memory, numbered with its own
+ * sequence, and remembers the last sequence number acknowledged to each client, so a batch
+ * uploaded again after a lost acknowledgement isn't stored twice.
+ */
+public class LocalSyncServer implements SyncTransport {
+
+    /** A stored change with the client it came from */
+    private static class StoredChange {
+        final SyncCodec.Change change;
+        final String clientId;
+
+        StoredChange(SyncCodec.Change change, String clientId) {
+            this.change = change;
+            this.clientId = clientId;
+        }
+    }
+
+    /** Latest change of every pet, by server sequence number */
+    private final TreeMap<Long, StoredChange> mChanges = new TreeMap<>();
+
+    /** Server sequence number of the latest change of every pet, by pet id */
+    private final Map<Integer, Long> mSeqByPetId = new HashMap<>();
+
+    /** Last local sequence number acknowledged to every client */
+    private final Map<String, Long> mAckedByClient = new HashMap<>();
+
+    private long mLastSeq;
+    private long mBytesReceived;
+    private long mBytesSent;
+
+    @Override
+    public synchronized byte[] upload(byte[] body) throws IOException {
+        mBytesReceived += body.length;
+        SyncCodec.Batch batch = SyncCodec.decode(body);
+        if (batch.clientId == null) {
+            throw new IOException("Upload without client id");
+        }
+        Long acked = mAckedByClient.get(batch.clientId);
+        long lastAcked = acked == null ? 0 : acked;
+        for (SyncCodec.Change change : batch.changes) {
+            if (change.seq <= lastAcked) {
+                continue;
+            }
+            Long previous = mSeqByPetId.get(change.petId);
+            if (previous != null) {
+                mChanges.remove(previous);
+            }
+            long seq = ++mLastSeq;
+            mSeqByPetId.put(change.petId, seq);
+            mChanges.put(seq, new StoredChange(change, batch.clientId));
+        }
+        lastAcked = Math.max(lastAcked, batch.seq);
+        mAckedByClient.put(batch.clientId, lastAcked);
+
+        SyncCodec.Batch ack = new SyncCodec.Batch();
+        ack.seq = lastAcked;
+        return send(ack);
+    }
+
+    @Override
+    public synchronized byte[] download(String clientId, long afterSeq, int limit)
+            throws IOException {
+        SyncCodec.Batch batch = new SyncCodec.Batch();
+        batch.seq = afterSeq;
+        for (Map.Entry<Long, StoredChange> entry : mChanges.tailMap(afterSeq, false).entrySet()) {
+            if (batch.changes.size() == limit) {
+                batch.more = true;
+                break;
+            }
+            // The client's own changes are skipped, but still move its position forward.
+            batch.seq = entry.getKey();
+            StoredChange stored = entry.getValue();
+            if (!stored.clientId.equals(clientId)) {
+                SyncCodec.Change change = copy(stored.change);
+                change.seq = entry.getKey();
+                batch.changes.add(change);
+            }
+        }
+        return send(batch);
+    }
+
+    /**
+     * @return the number of pets the server holds, not counting deleted ones
+     */
+    public synchronized int getPetCount() {
+        int count = 0;
+        for (StoredChange stored : mChanges.values()) {
+            if (!stored.change.deleted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the compressed bytes received and sent so far
+     */
+    public synchronized long getBytesTransferred() {
+        return mBytesReceived + mBytesSent;
+    }
+
+    private byte[] send(SyncCodec.Batch batch) throws IOException {
+        byte[] body = SyncCodec.encode(batch);
+        mBytesSent += body.length;
+        return body;
+    }
+
+    private static SyncCodec.Change copy(SyncCodec.Change change) {
+        SyncCodec.Change copy = new SyncCodec.Change();
+        copy.petId = change.petId;
+        copy.deleted = change.deleted;
+        copy.name = change.name;
+        copy.breed = change.breed;
+        copy.gender = change.gender;
+        copy.weight = change.weight;
+        return copy;
+    }
+}
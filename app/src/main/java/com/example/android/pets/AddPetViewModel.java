@@ -4,17 +4,32 @@ import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.ViewModel;
 
 import com.example.android.pets.data.PetEntry;
-import com.example.android.pets.data.PetsDatabase;
+import com.example.android.pets.data.PetRepository;
 
 public class AddPetViewModel extends ViewModel {
 
     private LiveData<PetEntry> pet;
 
-    public AddPetViewModel(PetsDatabase database, int petId) {
-        pet = database.petDao().loadPetById(petId);
+    /** The pet as last shown in the editor, kept across configuration changes */
+    private PetEntry loadedPet;
+
+    public AddPetViewModel(PetRepository repository, int petId) {
+        pet = repository.loadPetById(petId);
     }
 
     public LiveData<PetEntry> getPet(){
         return pet;
     }
+
+    /**
+     * @return the pet the editor's fields were last filled with, which its edits are compared
+     * to, or null if it wasn't loaded yet
+     */
+    public PetEntry getLoadedPet() {
+        return loadedPet;
+    }
+
+    public void setLoadedPet(PetEntry loadedPet) {
+        this.loadedPet = loadedPet;
+    }
 }
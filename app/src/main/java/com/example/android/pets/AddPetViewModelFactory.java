@@ -4,16 +4,16 @@ import android.arch.lifecycle.ViewModel;
 import android.arch.lifecycle.ViewModelProvider;
 import android.support.annotation.NonNull;
 
-import com.example.android.pets.data.PetsDatabase;
+import com.example.android.pets.data.PetRepository;
 
 public class AddPetViewModelFactory extends
         ViewModelProvider.NewInstanceFactory {
 
-    private final PetsDatabase database;
+    private final PetRepository repository;
     private final int petId;
 
-    public AddPetViewModelFactory(PetsDatabase db, int id) {
-        database = db;
+    public AddPetViewModelFactory(PetRepository repo, int id) {
+        repository = repo;
         petId = id;
     }
 
@@ -21,6 +21,6 @@ public class AddPetViewModelFactory extends
     @Override
     public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
         //noinspection unchecked
-        return (T) new AddPetViewModel(database, petId);
+        return (T) new AddPetViewModel(repository, petId);
     }
 }
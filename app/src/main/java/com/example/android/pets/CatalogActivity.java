@@ -15,39 +15,98 @@
  */
 package com.example.android.pets;
 
+import android.app.AlertDialog;
+import android.app.ProgressDialog;
 import android.arch.lifecycle.Observer;
 import android.arch.lifecycle.ViewModelProviders;
+import android.arch.paging.PagedList;
 import android.content.Context;
+import android.content.ContentResolver;
+import android.content.DialogInterface;
 import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.util.Log;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.widget.Toast;
 
+import com.example.android.pets.data.CsvPetRecordReader;
+import com.example.android.pets.data.JsonPetRecordReader;
+import com.example.android.pets.data.PetCursorLiveData;
 import com.example.android.pets.data.PetEntry;
+import com.example.android.pets.data.PetExporter;
+import com.example.android.pets.data.PetFilter;
+import com.example.android.pets.data.PetImporter;
+import com.example.android.pets.data.PetPurger;
+import com.example.android.pets.data.PetRecordReader;
+import com.example.android.pets.data.PetRepository;
+import com.example.android.pets.data.PetSummary;
+import com.example.android.pets.data.QueryMetrics;
 import com.example.android.pets.data.PetsDatabase;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Displays list of pets that were entered and stored in the app.
  */
-public class CatalogActivity extends AppCompatActivity {
+public class CatalogActivity extends AppCompatActivity implements PetAdapter.ItemClickListener {
 
-    /** Adapter for the ListView */
+    private static final String LOG_TAG = CatalogActivity.class.getSimpleName();
+
+    /** Request code for picking a roster file to import */
+    private static final int REQUEST_IMPORT_PETS = 1;
+
+    /** Preferences of the catalog screen */
+    private static final String PREFERENCES_NAME = "catalog";
+
+    /**
+     * Preference choosing whether the list binds its rows straight from a cursor with
+     * {@link PetCursorAdapter}, instead of from paged {@link PetSummary} objects with
+     * {@link PetAdapter}. Off by default, see {@link PetCursorLiveData} for its limits.
+     */
+    private static final String PREF_USE_CURSOR_ADAPTER = "use_cursor_adapter";
+
+    /** Whether this activity shows the list with {@link PetCursorAdapter} */
+    private boolean mUseCursorAdapter;
+
+    /** Adapter for the RecyclerView */
     PetAdapter mAdapter;
 
+    /** Adapter for the RecyclerView if {@link #mUseCursorAdapter} is set */
+    PetCursorAdapter mCursorAdapter;
+
     PetsDatabase mDb;
 
-    ListView petListView;
+    CatalogViewModel mViewModel;
+
+    RecyclerView petRecyclerView;
+
+    /** Dialog showing the progress of a running "delete all", if any */
+    private ProgressDialog mPurgeDialog;
+
+    /** Dialog showing the progress of a running export, if any */
+    private ProgressDialog mExportDialog;
+
+    /** Shown instead of the list when there are no pets */
+    View mEmptyView;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,58 +123,186 @@ public class CatalogActivity extends AppCompatActivity {
             }
         });
 
-        // Find the ListView which will be populated with the pet data
-        petListView = (ListView) findViewById(R.id.list);
+        // Find the RecyclerView which will be populated with the pet data
+        petRecyclerView = (RecyclerView) findViewById(R.id.list);
+        petRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        petRecyclerView.addItemDecoration(
+                new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
 
-        // Find and set empty view on the ListView, so that it only shows when the list has 0 items.
-        View emptyView = findViewById(R.id.empty_view);
-        petListView.setEmptyView(emptyView);
+        // Find the empty view, so that it only shows when the list has 0 items.
+        mEmptyView = findViewById(R.id.empty_view);
 
         // Setup an Adapter to create a list item for each row of pet data.
-        // There is no pet data yet, so pass in a empty array list.
-        mAdapter = new PetAdapter(this, new ArrayList<PetEntry>());
-        petListView.setAdapter(mAdapter);
-
-        // Setup the item click listener
-        petListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
-                // Create new intent to go to {@link EditorActivity}
-                Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
-                PetEntry petSelected = (PetEntry) adapterView.getItemAtPosition(position);
-                intent.putExtra(EditorActivity.EXTRA_PET_ID, petSelected.getId());
-                // Launch the {@link EditorActivity} to display the data for the current pet.
-                startActivity(intent);
-            }
-        });
+        // The adapter is created once and receives every new list or cursor.
+        mUseCursorAdapter = getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE)
+                .getBoolean(PREF_USE_CURSOR_ADAPTER, false);
+        if (mUseCursorAdapter) {
+            mCursorAdapter = new PetCursorAdapter(this, this);
+            petRecyclerView.setAdapter(mCursorAdapter);
+        } else {
+            mAdapter = new PetAdapter(this, this);
+            petRecyclerView.setAdapter(mAdapter);
+        }
 
         mDb = PetsDatabase.getInstance(getApplicationContext());
         setupViewModel();
     }
 
     private void setupViewModel() {
-        CatalogViewModel viewModel = ViewModelProviders.of(this).get(CatalogViewModel.class);
-        viewModel.getPets().observe(this, new Observer<List<PetEntry>>() {
+        mViewModel = ViewModelProviders.of(this).get(CatalogViewModel.class);
+        if (mUseCursorAdapter) {
+            mViewModel.getPetCursor().observe(this, new Observer<Cursor>() {
+                @Override
+                public void onChanged(@Nullable Cursor cursor) {
+                    mCursorAdapter.swapCursor(cursor);
+                    showEmptyView(cursor == null || cursor.getCount() == 0);
+                }
+            });
+            return;
+        }
+        mViewModel.getPets().observe(this, new Observer<PagedList<PetSummary>>() {
             @Override
-            public void onChanged(@Nullable List<PetEntry> petEntries) {
-                mAdapter =  new PetAdapter(getApplicationContext(), petEntries);
-                petListView.setAdapter(mAdapter);
+            public void onChanged(@Nullable PagedList<PetSummary> petEntries) {
+                mAdapter.submitList(petEntries);
+                showEmptyView(petEntries == null || petEntries.isEmpty());
             }
         });
     }
 
+    private void showEmptyView(boolean isEmpty) {
+        mEmptyView.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
+        if (isEmpty) {
+            mEmptyView.post(new Runnable() {
+                @Override
+                public void run() {
+                    StartupTrace.mark(StartupTrace.Phase.FIRST_CONTENT);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onItemClickListener(int petId) {
+        // Create new intent to go to {@link EditorActivity}
+        Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
+        intent.putExtra(EditorActivity.EXTRA_PET_ID, petId);
+        // Launch the {@link EditorActivity} to display the data for the current pet.
+        startActivity(intent);
+    }
+
     /**
      * Helper method to insert hardcoded pet data into the database. For debugging purposes only.
      */
     private void insertPet() {
-        new InsertPetTask(getApplicationContext()).execute();
+        PetEntry dummyEntry = new PetEntry("Toto", "Terrier", PetEntry.GENDER_MALE, 7);
+        PetRepository.getInstance(getApplicationContext()).insertPet(dummyEntry, null);
     }
 
     /**
-     * Helper method to delete all pets in the database.
+     * Helper method to delete all pets in the database, showing the progress in a dialog
+     * that allows to cancel the deletion.
      */
     private void deleteAllPets() {
-        new DeleteAllTask(getApplicationContext()).execute();
+        final PurgePetsTask task = new PurgePetsTask(getApplicationContext());
+        mPurgeDialog = new ProgressDialog(this);
+        mPurgeDialog.setTitle(R.string.purge_dialog_title);
+        mPurgeDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        mPurgeDialog.setCancelable(false);
+        mPurgeDialog.setButton(DialogInterface.BUTTON_NEGATIVE, getString(R.string.cancel),
+                new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        task.cancelPurge();
+                    }
+                });
+        mPurgeDialog.show();
+        task.setProgressDialog(mPurgeDialog);
+        task.execute();
+    }
+
+    @Override
+    protected void onDestroy() {
+        // The deletion and the export go on without their dialogs, and report their result in
+        // a toast.
+        if (mPurgeDialog != null) {
+            mPurgeDialog.dismiss();
+            mPurgeDialog = null;
+        }
+        if (mExportDialog != null) {
+            mExportDialog.dismiss();
+            mExportDialog = null;
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Ask the user for a CSV or JSON roster file to import.
+     */
+    private void pickRosterToImport() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.setType("*/*");
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        startActivityForResult(intent, REQUEST_IMPORT_PETS);
+    }
+
+    /**
+     * Ask the user for the export format and export all pets to a gzipped file
+     * in the app's external files directory, showing the progress in a dialog
+     * that allows to cancel the export.
+     */
+    private void showExportDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(R.string.export_dialog_title);
+        builder.setItems(R.array.array_export_formats, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                PetExporter.Format format = which == 1
+                        ? PetExporter.Format.JSON : PetExporter.Format.CSV;
+                exportPets(format);
+            }
+        });
+        builder.create().show();
+    }
+
+    private void exportPets(PetExporter.Format format) {
+        final ExportPetsTask task = new ExportPetsTask(getApplicationContext(), format);
+        mExportDialog = new ProgressDialog(this);
+        mExportDialog.setTitle(R.string.export_progress_title);
+        mExportDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        mExportDialog.setCancelable(false);
+        mExportDialog.setButton(DialogInterface.BUTTON_NEGATIVE, getString(R.string.cancel),
+                new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        task.cancelExport();
+                    }
+                });
+        mExportDialog.show();
+        task.setProgressDialog(mExportDialog);
+        task.execute();
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == REQUEST_IMPORT_PETS) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                new ImportPetsTask(getApplicationContext()).execute(data.getData());
+            }
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
+    }
+
+    /**
+     * Adds the database statistics to the activity dump, so they can be read with
+     * adb shell dumpsys activity com.example.android.pets/.CatalogActivity
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println(prefix + "Startup: " + StartupTrace.getReport());
+        writer.println(prefix + PetRepository.getInstance(getApplicationContext()).getCache());
+        QueryMetrics.getInstance().dump(writer);
     }
 
     @Override
@@ -123,6 +310,57 @@ public class CatalogActivity extends AppCompatActivity {
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        // Search as the user types; the view model debounces the keystrokes.
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                mViewModel.setSearchText(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mViewModel.setSearchText(newText);
+                return true;
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        super.onPrepareOptionsMenu(menu);
+        menu.findItem(R.id.action_cursor_adapter).setChecked(mUseCursorAdapter);
+        // Check the menu options matching the current filter and sort order.
+        PetFilter filter = mViewModel.getFilter();
+        switch (filter.getGender()) {
+            case PetEntry.GENDER_MALE:
+                menu.findItem(R.id.action_filter_male).setChecked(true);
+                break;
+            case PetEntry.GENDER_FEMALE:
+                menu.findItem(R.id.action_filter_female).setChecked(true);
+                break;
+            default:
+                menu.findItem(R.id.action_filter_all).setChecked(true);
+                break;
+        }
+        switch (filter.getSortOrder()) {
+            case PetFilter.SORT_NAME:
+                menu.findItem(R.id.action_sort_name).setChecked(true);
+                break;
+            case PetFilter.SORT_BREED:
+                menu.findItem(R.id.action_sort_breed).setChecked(true);
+                break;
+            case PetFilter.SORT_WEIGHT:
+                menu.findItem(R.id.action_sort_weight).setChecked(true);
+                break;
+            default:
+                menu.findItem(R.id.action_sort_default).setChecked(true);
+                break;
+        }
         return true;
     }
 
@@ -130,6 +368,18 @@ public class CatalogActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         // User clicked on a menu option in the app bar overflow menu
         switch (item.getItemId()) {
+            // Respond to a click on the "Cursor-backed list" menu option
+            case R.id.action_cursor_adapter:
+                getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE).edit()
+                        .putBoolean(PREF_USE_CURSOR_ADAPTER, !mUseCursorAdapter)
+                        .apply();
+                // The adapter is chosen when the activity is created.
+                recreate();
+                return true;
+            // Respond to a click on the "Statistics" menu option
+            case R.id.action_stats:
+                startActivity(new Intent(CatalogActivity.this, StatsActivity.class));
+                return true;
             // Respond to a click on the "Insert dummy data" menu option
             case R.id.action_insert_dummy_data:
                 insertPet();
@@ -138,41 +388,282 @@ public class CatalogActivity extends AppCompatActivity {
             case R.id.action_delete_all_entries:
                 deleteAllPets();
                 return true;
+            // Respond to a click on the "Import pets" menu option
+            case R.id.action_import_pets:
+                pickRosterToImport();
+                return true;
+            // Respond to a click on the "Export pets" menu option
+            case R.id.action_export_pets:
+                showExportDialog();
+                return true;
+            // Respond to a click on one of the gender filter options
+            case R.id.action_filter_all:
+                mViewModel.setGenderFilter(PetFilter.ANY_GENDER);
+                return true;
+            case R.id.action_filter_male:
+                mViewModel.setGenderFilter(PetEntry.GENDER_MALE);
+                return true;
+            case R.id.action_filter_female:
+                mViewModel.setGenderFilter(PetEntry.GENDER_FEMALE);
+                return true;
+            // Respond to a click on one of the sort options
+            case R.id.action_sort_default:
+                mViewModel.setSortOrder(PetFilter.SORT_DEFAULT);
+                return true;
+            case R.id.action_sort_name:
+                mViewModel.setSortOrder(PetFilter.SORT_NAME);
+                return true;
+            case R.id.action_sort_breed:
+                mViewModel.setSortOrder(PetFilter.SORT_BREED);
+                return true;
+            case R.id.action_sort_weight:
+                mViewModel.setSortOrder(PetFilter.SORT_WEIGHT);
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
-    private static class InsertPetTask extends AsyncTask<Void, Void, Void> {
+    private static class ImportPetsTask extends AsyncTask<Uri, Void, PetImporter.Result>
+            implements PetImporter.Listener {
+
+        private final WeakReference<Context> weakAppContext;
+
+        ImportPetsTask(Context AppContext) {
+            this.weakAppContext = new WeakReference<>(AppContext);
+        }
+
+        @Override
+        protected PetImporter.Result doInBackground(Uri... uris) {
+            Context context = weakAppContext.get();
+            if (context == null) {
+                return null;
+            }
+            PetsDatabase database = PetsDatabase.getInstance(context);
+            try {
+                PetRecordReader reader = openRoster(context.getContentResolver(), uris[0]);
+                return new PetImporter(database).importPets(reader, this);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error importing pets from " + uris[0], e);
+                return null;
+            }
+        }
+
+        /**
+         * Picks the JSON or CSV reader depending on the type of the roster file.
+         */
+        private PetRecordReader openRoster(ContentResolver resolver, Uri uri) throws IOException {
+            InputStream in = resolver.openInputStream(uri);
+            if (in == null) {
+                throw new IOException("Can't open " + uri);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            String type = resolver.getType(uri);
+            String path = uri.getPath();
+            if ((type != null && type.contains("json")) || (path != null && path.endsWith(".json"))) {
+                return new JsonPetRecordReader(reader);
+            }
+            return new CsvPetRecordReader(reader);
+        }
+
+        @Override
+        public void onProgress(int recordsRead, int petsImported) {
+            Log.d(LOG_TAG, "Imported " + petsImported + " of " + recordsRead + " records");
+        }
 
-        final PetEntry dummyEntry = new PetEntry("Toto", "Terrier", 1, 7);
+        @Override
+        public void onInvalidRecord(int recordNumber, String reason) {
+            Log.w(LOG_TAG, "Skipped record " + recordNumber + ": " + reason);
+        }
+
+        @Override
+        protected void onPostExecute(PetImporter.Result result) {
+            Context context = weakAppContext.get();
+            if (context == null) {
+                return;
+            }
+            // Show a toast message depending on whether or not the import was successful.
+            if (result == null) {
+                Toast.makeText(context, context.getString(R.string.import_pets_failed),
+                        Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(context, context.getString(R.string.import_pets_successful,
+                        result.petsImported, result.invalidRecords),
+                        Toast.LENGTH_LONG).show();
+            }
+        }
+    }
+
+    private static class ExportPetsTask extends AsyncTask<Void, Integer, File>
+            implements PetExporter.Listener {
 
         private final WeakReference<Context> weakAppContext;
+        private final PetExporter.Format format;
+        private WeakReference<ProgressDialog> weakProgressDialog;
+        private volatile PetExporter exporter;
+        private volatile boolean cancelRequested;
+        private boolean cancelled;
 
-        InsertPetTask(Context AppContext) {
+        ExportPetsTask(Context AppContext, PetExporter.Format format) {
             this.weakAppContext = new WeakReference<>(AppContext);
+            this.format = format;
+        }
+
+        void setProgressDialog(ProgressDialog progressDialog) {
+            weakProgressDialog = new WeakReference<>(progressDialog);
+        }
+
+        void cancelExport() {
+            cancelRequested = true;
+            PetExporter runningExporter = exporter;
+            if (runningExporter != null) {
+                runningExporter.cancel();
+            }
         }
 
         @Override
-        protected Void doInBackground(Void... voids) {
-            PetsDatabase database = PetsDatabase.getInstance(weakAppContext.get());
-            database.petDao().insertPet(dummyEntry);
-            return null;
+        protected File doInBackground(Void... voids) {
+            Context context = weakAppContext.get();
+            if (context == null) {
+                return null;
+            }
+            File directory = context.getExternalFilesDir(null);
+            if (directory == null) {
+                directory = context.getFilesDir();
+            }
+            String extension = format == PetExporter.Format.JSON ? ".json.gz" : ".csv.gz";
+            File file = new File(directory, "pets" + extension);
+
+            exporter = new PetExporter(PetsDatabase.getInstance(context));
+            if (cancelRequested) {
+                exporter.cancel();
+            }
+            try {
+                if (exporter.export(file, format, true, this) < 0) {
+                    cancelled = true;
+                    return null;
+                }
+                return file;
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error exporting pets to " + file, e);
+                return null;
+            }
+        }
+
+        @Override
+        public void onProgress(int rowsWritten, int totalRows) {
+            publishProgress(rowsWritten, totalRows);
+        }
+
+        @Override
+        protected void onProgressUpdate(Integer... values) {
+            ProgressDialog dialog = weakProgressDialog != null ? weakProgressDialog.get() : null;
+            if (dialog != null) {
+                dialog.setMax(values[1]);
+                dialog.setProgress(values[0]);
+            }
+        }
+
+        @Override
+        protected void onPostExecute(File file) {
+            ProgressDialog dialog = weakProgressDialog != null ? weakProgressDialog.get() : null;
+            if (dialog != null && dialog.isShowing()) {
+                dialog.dismiss();
+            }
+            Context context = weakAppContext.get();
+            if (context == null) {
+                return;
+            }
+            // Show a toast message depending on whether or not the export was successful.
+            if (cancelled) {
+                Toast.makeText(context, context.getString(R.string.export_pets_cancelled),
+                        Toast.LENGTH_SHORT).show();
+            } else if (file == null) {
+                Toast.makeText(context, context.getString(R.string.export_pets_failed),
+                        Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(context, context.getString(R.string.export_pets_successful,
+                        file.getAbsolutePath()), Toast.LENGTH_LONG).show();
+            }
         }
     }
 
-    private static class DeleteAllTask extends AsyncTask<Void, Void, Void> {
+    private static class PurgePetsTask extends AsyncTask<Void, Integer, PetPurger.Result>
+            implements PetPurger.Listener {
 
         private final WeakReference<Context> weakAppContext;
+        private WeakReference<ProgressDialog> weakProgressDialog;
+        private volatile PetPurger purger;
+        private volatile boolean cancelRequested;
 
-        DeleteAllTask(Context AppContext) {
+        PurgePetsTask(Context AppContext) {
             this.weakAppContext = new WeakReference<>(AppContext);
         }
 
+        void setProgressDialog(ProgressDialog progressDialog) {
+            weakProgressDialog = new WeakReference<>(progressDialog);
+        }
+
+        void cancelPurge() {
+            cancelRequested = true;
+            PetPurger runningPurger = purger;
+            if (runningPurger != null) {
+                runningPurger.cancel();
+            }
+        }
+
+        @Override
+        protected PetPurger.Result doInBackground(Void... voids) {
+            Context context = weakAppContext.get();
+            if (context == null) {
+                return null;
+            }
+            purger = new PetPurger(PetsDatabase.getInstance(context));
+            if (cancelRequested) {
+                purger.cancel();
+            }
+            try {
+                return purger.purge(this);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Error deleting pets", e);
+                return null;
+            }
+        }
+
+        @Override
+        public void onProgress(int petsDeleted, int totalPets) {
+            publishProgress(petsDeleted, totalPets);
+        }
+
         @Override
-        protected Void doInBackground(Void... voids) {
-            PetsDatabase database = PetsDatabase.getInstance(weakAppContext.get());
-            database.petDao().deleteAllPets();
-            return null;
+        protected void onProgressUpdate(Integer... values) {
+            ProgressDialog dialog = weakProgressDialog != null ? weakProgressDialog.get() : null;
+            if (dialog != null) {
+                dialog.setMax(values[1]);
+                dialog.setProgress(values[0]);
+            }
+        }
+
+        @Override
+        protected void onPostExecute(PetPurger.Result result) {
+            ProgressDialog dialog = weakProgressDialog != null ? weakProgressDialog.get() : null;
+            if (dialog != null && dialog.isShowing()) {
+                dialog.dismiss();
+            }
+            Context context = weakAppContext.get();
+            if (context == null) {
+                return;
+            }
+            // Show a toast message depending on whether or not all pets were deleted.
+            if (result == null) {
+                Toast.makeText(context, context.getString(R.string.purge_pets_failed),
+                        Toast.LENGTH_SHORT).show();
+            } else if (result.cancelled) {
+                Toast.makeText(context, context.getString(R.string.purge_pets_cancelled,
+                        result.petsDeleted), Toast.LENGTH_LONG).show();
+            } else {
+                Toast.makeText(context, context.getString(R.string.purge_pets_successful,
+                        result.petsDeleted), Toast.LENGTH_SHORT).show();
+            }
         }
     }
 }
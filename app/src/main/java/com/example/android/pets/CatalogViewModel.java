@@ -1,27 +1,165 @@
 package com.example.android.pets;
 
 import android.app.Application;
+import android.arch.core.util.Function;
 import android.arch.lifecycle.AndroidViewModel;
 import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.arch.lifecycle.Observer;
+import android.arch.lifecycle.Transformations;
+import android.arch.paging.LivePagedListBuilder;
+import android.arch.paging.PagedList;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
-import com.example.android.pets.data.PetEntry;
+import com.example.android.pets.data.PetCursorLiveData;
+import com.example.android.pets.data.PetFilter;
+import com.example.android.pets.data.PetKeysetDataSource;
+import com.example.android.pets.data.PetQueryDataSource;
+import com.example.android.pets.data.PetSearch;
+import com.example.android.pets.data.PetSummary;
 import com.example.android.pets.data.PetsDatabase;
 
-import java.util.List;
-
 public class CatalogViewModel extends AndroidViewModel {
 
-    private LiveData<List<PetEntry>> pets;
+    // Number of pets loaded from the database per page
+    private static final int PAGE_SIZE = 50;
+
+    // Number of pets loaded for the first page, also prefetched by PetsApplication
+    static final int INITIAL_LOAD_SIZE = PAGE_SIZE * 2;
+
+    // Time to wait after the last keystroke before searching
+    private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+
+    // Minimum time between two reloads of the catalog while pets are being written
+    private static final long INVALIDATION_WINDOW_MILLIS = 500;
+
+    private final PetsDatabase database;
+
+    private final PagedList.Config config;
+
+    /** Search, filter and sort order currently applied to the catalog */
+    private final MutableLiveData<PetFilter> filter = new MutableLiveData<>();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private String pendingSearchText;
+
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            String expression = PetSearch.toMatchExpression(pendingSearchText);
+            if (!sameText(expression, getFilter().getMatchExpression())) {
+                PetFilter newFilter = new PetFilter(getFilter());
+                newFilter.setMatchExpression(expression);
+                filter.setValue(newFilter);
+            }
+        }
+    };
+
+    private LiveData<PagedList<PetSummary>> pets;
+
+    /** Cursor for {@link PetCursorAdapter}, only created if the catalog uses it */
+    private PetCursorLiveData petCursor;
+
+    private final Observer<PetFilter> cursorFilterObserver = new Observer<PetFilter>() {
+        @Override
+        public void onChanged(@Nullable PetFilter petFilter) {
+            if (petFilter != null) {
+                petCursor.setFilter(petFilter);
+            }
+        }
+    };
 
     public CatalogViewModel(@NonNull Application application) {
         super(application);
-        PetsDatabase database =
-                PetsDatabase.getInstance(this.getApplication());
-        pets = database.petDao().loadAllPets();
+        database = PetsDatabase.getInstance(this.getApplication());
+        config = new PagedList.Config.Builder()
+                .setPageSize(PAGE_SIZE)
+                .setInitialLoadSizeHint(INITIAL_LOAD_SIZE)
+                .setEnablePlaceholders(false)
+                .build();
+
+        // Switching to a new source drops the previous one, so results of a stale
+        // search are never delivered once the user has typed something else.
+        filter.setValue(new PetFilter());
+        pets = Transformations.switchMap(filter,
+                new Function<PetFilter, LiveData<PagedList<PetSummary>>>() {
+                    @Override
+                    public LiveData<PagedList<PetSummary>> apply(PetFilter petFilter) {
+                        if (petFilter.isDefault()) {
+                            return new LivePagedListBuilder<>(new PetKeysetDataSource.Factory(
+                                    database, INVALIDATION_WINDOW_MILLIS), config).build();
+                        }
+                        return new LivePagedListBuilder<>(new PetQueryDataSource.Factory(
+                                database, petFilter, INVALIDATION_WINDOW_MILLIS), config).build();
+                    }
+                });
     }
 
-    public LiveData<List<PetEntry>> getPets(){
+    public LiveData<PagedList<PetSummary>> getPets(){
         return pets;
     }
+
+    /**
+     * Same pets as {@link #getPets()}, as a cursor for {@link PetCursorAdapter}. The cursors are
+     * closed by the returned LiveData.
+     */
+    public LiveData<Cursor> getPetCursor() {
+        if (petCursor == null) {
+            petCursor = new PetCursorLiveData(database, getFilter(), INVALIDATION_WINDOW_MILLIS);
+            // Also delivers the current filter, which the cursor was created with.
+            filter.observeForever(cursorFilterObserver);
+        }
+        return petCursor;
+    }
+
+    public PetFilter getFilter() {
+        return filter.getValue();
+    }
+
+    /**
+     * Only shows pets of the given gender, or all pets for {@link PetFilter#ANY_GENDER}.
+     */
+    public void setGenderFilter(int gender) {
+        PetFilter newFilter = new PetFilter(getFilter());
+        newFilter.setGender(gender);
+        filter.setValue(newFilter);
+    }
+
+    /**
+     * @param sortOrder one of the SORT_ constants of {@link PetFilter}
+     */
+    public void setSortOrder(int sortOrder) {
+        PetFilter newFilter = new PetFilter(getFilter());
+        newFilter.setSortOrder(sortOrder);
+        filter.setValue(newFilter);
+    }
+
+    /**
+     * Searches pets by name and breed once the user has stopped typing for a moment.
+     * Pass null or an empty text to show all pets again.
+     */
+    public void setSearchText(String text) {
+        pendingSearchText = text;
+        handler.removeCallbacks(searchRunnable);
+        handler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MILLIS);
+    }
+
+    @Override
+    protected void onCleared() {
+        handler.removeCallbacks(searchRunnable);
+        if (petCursor != null) {
+            filter.removeObserver(cursorFilterObserver);
+            petCursor.close();
+        }
+        super.onCleared();
+    }
+
+    private static boolean sameText(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
 }
@@ -21,51 +21,69 @@ import android.arch.lifecycle.ViewModelProviders;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.app.NavUtils;
 import android.support.v7.app.AppCompatActivity;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.EditText;
+import android.widget.ImageView;
 import android.widget.Spinner;
 import android.widget.Toast;
 
+import com.example.android.pets.data.PetChanges;
 import com.example.android.pets.data.PetEntry;
-import com.example.android.pets.data.PetsDatabase;
+import com.example.android.pets.data.PetPhotoStore;
+import com.example.android.pets.data.PetRepository;
 
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.List;
 
 /**
  * Allows user to create a new pet or edit an existing one.
  */
 public class EditorActivity extends AppCompatActivity {
 
+    private static final String LOG_TAG = EditorActivity.class.getSimpleName();
+
     // Extra for the pet ID to be received in the intent
     public static final String EXTRA_PET_ID = "extraPetId";
 
     // Extra for the pet ID to be received after rotation
     public static final String INSTANCE_PET_ID = "instancePetId";
 
+    // Key for the photo chosen in the editor, kept across rotation
+    private static final String INSTANCE_PHOTO_PATH = "instancePhotoPath";
+
+    // Key for whether the user touched the input fields, kept across rotation
+    private static final String INSTANCE_PET_HAS_CHANGED = "instancePetHasChanged";
+
+    private static final int REQUEST_PICK_PHOTO = 1;
+
     // Constant for default pet id to be used when not in update mode
     private static final int DEFAULT_PET_ID = -1;
 
     private int mPetId = DEFAULT_PET_ID;
 
-    // Member variable for the Database
-    private PetsDatabase mDb;
+    // Member variable for the Repository
+    private PetRepository mRepository;
 
     /** EditText field to enter the pet's name */
     private EditText mNameEditText;
 
-    /** EditText field to enter the pet's breed */
-    private EditText mBreedEditText;
+    /** EditText field to enter the pet's breed, suggesting known breeds */
+    private AutoCompleteTextView mBreedEditText;
 
     /** EditText field to enter the pet's weight */
     private EditText mWeightEditText;
@@ -73,6 +91,14 @@ public class EditorActivity extends AppCompatActivity {
     /** EditText field to enter the pet's gender */
     private Spinner mGenderSpinner;
 
+    /** ImageView showing the pet's photo */
+    private ImageView mPhotoImageView;
+
+    private PetPhotoLoader mPhotoLoader;
+
+    /** File name of the pet's photo in {@link PetPhotoStore}, or null if it has none */
+    private String mPhotoPath;
+
     /**
      * Gender of the pet. The possible valid values are in the PetEntry.java file:
      * {@link PetEntry#GENDER_UNKNOWN}, {@link PetEntry#GENDER_MALE}, or
@@ -83,6 +109,18 @@ public class EditorActivity extends AppCompatActivity {
     /** Boolean flag that keeps track of whether the pet has been edited (true) or not (false) */
     private boolean mPetHasChanged = false;
 
+    /**
+     * The pet as last shown in the input fields, used to find which fields were changed. It is
+     * also kept by {@link #mViewModel}, so it survives rotation.
+     */
+    private PetEntry mLoadedPet;
+
+    /** Loads the pet being edited, or null for a new pet */
+    private AddPetViewModel mViewModel;
+
+    /** The pet as last read from the database, which may be newer than {@link #mLoadedPet} */
+    private PetEntry mLatestPet;
+
     /**
      * OnTouchListener that listens for any user touches on a View, implying that they are modifying
      * the view, and we change the mPetHasChanged boolean to true.
@@ -100,14 +138,23 @@ public class EditorActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_editor);
 
-        mDb = PetsDatabase.getInstance(getApplicationContext());
+        mRepository = PetRepository.getInstance(getApplicationContext());
+        mPhotoLoader = PetPhotoLoader.getInstance(this);
 
         initViews();
         setupSpinner();
+        setupBreedSuggestions();
 
         if (savedInstanceState != null && savedInstanceState.containsKey(INSTANCE_PET_ID)) {
             mPetId = savedInstanceState.getInt(INSTANCE_PET_ID, DEFAULT_PET_ID);
         }
+        if (savedInstanceState != null && savedInstanceState.containsKey(INSTANCE_PHOTO_PATH)) {
+            mPhotoPath = savedInstanceState.getString(INSTANCE_PHOTO_PATH);
+        }
+        if (savedInstanceState != null) {
+            mPetHasChanged = savedInstanceState.getBoolean(INSTANCE_PET_HAS_CHANGED);
+        }
+        showPhoto();
 
         // Examine the intent that was used to launch this activity,
         // in order to figure out if we're creating a new pet or editing an existing one.
@@ -119,22 +166,32 @@ public class EditorActivity extends AppCompatActivity {
             // Otherwise this is an existing pet, so change app bar to say "Edit Pet"
             setTitle(getString(R.string.editor_activity_title_edit_pet));
 
-            if(mPetId == DEFAULT_PET_ID) {
-                //populate the UI
+            if (mPetId == DEFAULT_PET_ID) {
                 mPetId = intent.getIntExtra(EXTRA_PET_ID, DEFAULT_PET_ID);
-                AddPetViewModelFactory factory = new AddPetViewModelFactory(mDb, mPetId);
-                final AddPetViewModel viewModel =
-                        ViewModelProviders.of(EditorActivity.this,
-                                factory).get(AddPetViewModel.class);
-
-                viewModel.getPet().observe(EditorActivity.this, new Observer<PetEntry>() {
-                    @Override
-                    public void onChanged(@Nullable PetEntry petEntry) {
-                        viewModel.getPet().removeObserver(this);
+            }
+            // After a rotation the view model is the one of the previous activity, still
+            // holding the pet the restored fields were filled with.
+            AddPetViewModelFactory factory = new AddPetViewModelFactory(mRepository, mPetId);
+            mViewModel = ViewModelProviders.of(this, factory).get(AddPetViewModel.class);
+            mLoadedPet = mViewModel.getLoadedPet();
+
+            //populate the UI
+            mViewModel.getPet().observe(this, new Observer<PetEntry>() {
+                @Override
+                public void onChanged(@Nullable PetEntry petEntry) {
+                    // The first value may come from the cache and be followed by the
+                    // fresh one from the database. Once the user starts editing, newer
+                    // values are only kept to resolve a conflict when saving.
+                    mLatestPet = petEntry;
+                    if (!isEditing()) {
                         populateUI(petEntry);
+                    } else if (mLoadedPet == null && petEntry != null) {
+                        // Edits restored after the process was killed, with a new view
+                        // model: compare them to the current pet.
+                        setLoadedPet(petEntry);
                     }
-                });
-            }
+                }
+            });
         } else {
             // This is a new pet, so change the app bar to say "Add a Pet"
             setTitle(getString(R.string.editor_activity_title_new_pet));
@@ -148,15 +205,32 @@ public class EditorActivity extends AppCompatActivity {
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         outState.putInt(INSTANCE_PET_ID, mPetId);
+        outState.putString(INSTANCE_PHOTO_PATH, mPhotoPath);
+        outState.putBoolean(INSTANCE_PET_HAS_CHANGED, mPetHasChanged);
         super.onSaveInstanceState(outState);
     }
 
+    @Override
+    protected void onDestroy() {
+        // Lets the loader reuse the photo's bitmap.
+        mPhotoLoader.cancel(mPhotoImageView);
+        super.onDestroy();
+    }
+
     private void initViews() {
         // Find all relevant views that we will need to read user input from
         mNameEditText = (EditText) findViewById(R.id.edit_pet_name);
-        mBreedEditText = (EditText) findViewById(R.id.edit_pet_breed);
+        mBreedEditText = (AutoCompleteTextView) findViewById(R.id.edit_pet_breed);
         mWeightEditText = (EditText) findViewById(R.id.edit_pet_weight);
         mGenderSpinner = (Spinner) findViewById(R.id.spinner_gender);
+        mPhotoImageView = (ImageView) findViewById(R.id.edit_pet_photo);
+
+        findViewById(R.id.choose_pet_photo).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                pickPhoto();
+            }
+        });
 
         // Setup OnTouchListeners on all the input fields, so we can determine if the user
         // has touched or modified them. This will let us know if there are unsaved changes
@@ -167,6 +241,58 @@ public class EditorActivity extends AppCompatActivity {
         mGenderSpinner.setOnTouchListener(mTouchListener);
     }
 
+    /**
+     * Ask the user for an image to use as the pet's photo.
+     */
+    private void pickPhoto() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.setType("image/*");
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        startActivityForResult(intent, REQUEST_PICK_PHOTO);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == REQUEST_PICK_PHOTO) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                new ImportPhotoTask(this).execute(data.getData());
+            }
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
+    }
+
+    /**
+     * Shows the photo picked by the user, once it was copied into the app's storage. The pet
+     * only refers to it once saved.
+     */
+    private void setPhoto(String photoPath) {
+        mPhotoPath = photoPath;
+        mPetHasChanged = true;
+        showPhoto();
+    }
+
+    private void showPhoto() {
+        mPhotoLoader.load(mPhotoImageView, mPhotoPath,
+                getResources().getDimensionPixelSize(R.dimen.photo_editor_size),
+                R.drawable.photo_placeholder);
+    }
+
+    /**
+     * Suggest the breeds already stored while the user types the breed of the pet.
+     */
+    private void setupBreedSuggestions() {
+        mRepository.loadBreedNames().observe(this, new Observer<List<String>>() {
+            @Override
+            public void onChanged(@Nullable List<String> breeds) {
+                if (breeds != null) {
+                    mBreedEditText.setAdapter(new ArrayAdapter<>(EditorActivity.this,
+                            android.R.layout.simple_dropdown_item_1line, breeds));
+                }
+            }
+        });
+    }
+
     /**
      * Setup the dropdown spinner that allows the user to select the gender of the pet.
      */
@@ -210,6 +336,7 @@ public class EditorActivity extends AppCompatActivity {
         if (pet == null){
             return;
         }
+        setLoadedPet(pet);
 
         // Extract out the value from the Pet received
         String name = pet.getName();
@@ -221,6 +348,8 @@ public class EditorActivity extends AppCompatActivity {
         mNameEditText.setText(name);
         mBreedEditText.setText(breed);
         mWeightEditText.setText(Integer.toString(weight));
+        mPhotoPath = pet.getPhotoPath();
+        showPhoto();
 
         // Gender is a dropdown spinner, so map the constant value from the database
         // into one of the dropdown options (0 is Unknown, 1 is Male, 2 is Female).
@@ -238,26 +367,103 @@ public class EditorActivity extends AppCompatActivity {
         }
     }
 
+    private void setLoadedPet(PetEntry pet) {
+        mLoadedPet = pet;
+        mViewModel.setLoadedPet(pet);
+    }
+
     /**
-     * Get user input from editor and save pet into database.
+     * @return true once the user touched an input field, or the fields differ from the loaded
+     * pet, such as edits restored after a rotation
      */
-    private void savePet() {
-        // Read from input fields
-        // Use trim to eliminate leading or trailing white space
-        String nameString = mNameEditText.getText().toString().trim();
-        String breedString = mBreedEditText.getText().toString().trim();
-        String weightString = mWeightEditText.getText().toString().trim();
+    private boolean isEditing() {
+        return mPetHasChanged || (mLoadedPet != null
+                && !PetChanges.diff(mLoadedPet, readPetFromFields()).isEmpty());
+    }
 
+    /**
+     * Get user input from editor and save pet into database. Only the fields that differ from
+     * the loaded pet are written, and only if nobody else changed the pet since it was loaded.
+     * The editor closes once the pet is saved, or shows a conflict dialog if it was changed.
+     */
+    private void savePet() {
         // Check if this is supposed to be a new pet
         // and check if all the fields in the editor are blank
-        if (mPetId == DEFAULT_PET_ID &&
-                TextUtils.isEmpty(nameString) && TextUtils.isEmpty(breedString) &&
-                TextUtils.isEmpty(weightString) && mGender == PetEntry.GENDER_UNKNOWN) {
+        if (mPetId == DEFAULT_PET_ID && !hasUnsavedChanges()) {
             // Since no fields were modified, we can return early without creating a new pet.
+            finish();
+            return;
+        }
+
+        PetEntry petEntry = readPetFromFields();
+
+        // Determine if this is a new or existing pet by checking if mCurrentPetUri is null or not
+        if (mPetId == DEFAULT_PET_ID) {
+            // This is a NEW pet
+            mRepository.insertPet(petEntry, new WriteResultToast<Long>(getApplicationContext(),
+                    R.string.editor_insert_pet_successful, R.string.editor_insert_pet_failed));
+            finish();
             return;
         }
 
-        // Create a new Pet Entry with the input values.
+        // Otherwise this is an EXISTING pet, only write the fields that were changed.
+        // Nothing can have been edited until the pet was loaded.
+        PetChanges changes = mLoadedPet != null ? PetChanges.diff(mLoadedPet, petEntry) : null;
+        if (changes == null || changes.isEmpty()) {
+            finish();
+            return;
+        }
+        mRepository.updatePetFields(changes, new UpdateResultCallback(this));
+    }
+
+    /**
+     * Called when the pet was changed elsewhere since it was loaded, so the edits weren't saved.
+     * The user either writes the fields they edited over the current pet, keeping the other
+     * fields as they were changed elsewhere, or gets the current values in the editor.
+     */
+    private void showConflictDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setMessage(R.string.conflict_dialog_msg);
+        builder.setPositiveButton(R.string.conflict_save_mine,
+                new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int id) {
+                        PetChanges changes = PetChanges.diff(mLoadedPet, readPetFromFields());
+                        if (mLatestPet == null || changes.isEmpty()) {
+                            finish();
+                            return;
+                        }
+                        changes.setExpectedVersion(mLatestPet.getVersion());
+                        mRepository.updatePetFields(changes,
+                                new UpdateResultCallback(EditorActivity.this));
+                    }
+                });
+        builder.setNegativeButton(R.string.conflict_show_current,
+                new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int id) {
+                        mPetHasChanged = false;
+                        populateUI(mLatestPet);
+                    }
+                });
+        builder.setNeutralButton(R.string.keep_editing, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                if (dialog != null) {
+                    dialog.dismiss();
+                }
+            }
+        });
+        builder.create().show();
+    }
+
+    /**
+     * Builds a pet from the input fields, with the id of the pet being edited if any.
+     */
+    private PetEntry readPetFromFields() {
+        // Read from input fields
+        // Use trim to eliminate leading or trailing white space
+        String nameString = mNameEditText.getText().toString().trim();
+        String breedString = mBreedEditText.getText().toString().trim();
+        String weightString = mWeightEditText.getText().toString().trim();
+
         // If the weight is not provided by the user, don't try to parse the string into an
         // integer value. Use 0 by default.
         int weight = 0;
@@ -265,19 +471,44 @@ public class EditorActivity extends AppCompatActivity {
             weight = Integer.parseInt(weightString);
         }
 
-        PetEntry petEntry = new PetEntry(nameString, breedString, mGender, weight);
+        PetEntry petEntry = new PetEntry(nameString, breedString, getSelectedGender(), weight);
+        petEntry.setPhotoPath(mPhotoPath);
+        if (mPetId != DEFAULT_PET_ID) {
+            petEntry.setId(mPetId);
+        }
+        return petEntry;
+    }
 
-        // Determine if this is a new or existing pet by checking if mCurrentPetUri is null or not
+    /**
+     * @return the gender shown by the spinner. Unlike {@link #mGender}, which the spinner's
+     * listener updates later, it changes as soon as {@link #populateUI} selects a gender.
+     */
+    private int getSelectedGender() {
+        // Same positions as in populateUI: 0 is Unknown, 1 is Male, 2 is Female.
+        switch (mGenderSpinner.getSelectedItemPosition()) {
+            case 1:
+                return PetEntry.GENDER_MALE;
+            case 2:
+                return PetEntry.GENDER_FEMALE;
+            default:
+                return PetEntry.GENDER_UNKNOWN;
+        }
+    }
+
+    /**
+     * @return true if a field differs from the loaded pet, or for a new pet, if a field was
+     * filled in
+     */
+    private boolean hasUnsavedChanges() {
         if (mPetId == DEFAULT_PET_ID) {
-            // This is a NEW pet
-            new InsertPetTask(getApplicationContext()).execute(petEntry);
-        } else {
-            // Otherwise this is an EXISTING pet
-            petEntry.setId(mPetId);
-            new UpdatePetTask(getApplicationContext()).execute(petEntry);
+            return mNameEditText.length() > 0 || mBreedEditText.length() > 0
+                    || mWeightEditText.length() > 0 || mGender != PetEntry.GENDER_UNKNOWN
+                    || mPhotoPath != null;
         }
-        // Close the activity
-        finish();
+        if (mLoadedPet == null) {
+            return mPetHasChanged;
+        }
+        return !PetChanges.diff(mLoadedPet, readPetFromFields()).isEmpty();
     }
 
     @Override
@@ -309,10 +540,8 @@ public class EditorActivity extends AppCompatActivity {
         switch (item.getItemId()) {
             // Respond to a click on the "Save" menu option
             case R.id.action_save:
-                // Save pet to database
+                // Save pet to database, which exits the activity once saved
                 savePet();
-                // Exit activity
-                finish();
                 return true;
             // Respond to a click on the "Delete" menu option
             case R.id.action_delete:
@@ -323,7 +552,7 @@ public class EditorActivity extends AppCompatActivity {
             case android.R.id.home:
                 // If the pet hasn't changed, continue with navigating up to parent activity
                 // which is the {@link CatalogActivity}.
-                if (!mPetHasChanged) {
+                if (!hasUnsavedChanges()) {
                     NavUtils.navigateUpFromSameTask(EditorActivity.this);
                     return true;
                 }
@@ -353,7 +582,7 @@ public class EditorActivity extends AppCompatActivity {
     @Override
     public void onBackPressed() {
         // If the pet hasn't changed, continue with handling back button press
-        if (!mPetHasChanged) {
+        if (!hasUnsavedChanges()) {
             super.onBackPressed();
             return;
         }
@@ -437,99 +666,114 @@ public class EditorActivity extends AppCompatActivity {
     private void deletePet() {
         // Only perform the delete if this is an existing pet.
         if (mPetId != DEFAULT_PET_ID) {
-            new DeletePetTask(getApplicationContext()).execute(mPetId);
+            mRepository.deletePet(mPetId,
+                    new WriteResultToast<Integer>(getApplicationContext(),
+                            R.string.editor_delete_pet_successful,
+                            R.string.editor_delete_pet_failed));
         }
         // Close the activity
         finish();
     }
 
-    private static class InsertPetTask extends AsyncTask<PetEntry, Void, Long> {
+    /**
+     * Copies the image picked by the user into the app's storage, where it stays readable
+     * after the picker's permission on it expires, and shows it in the editor.
+     */
+    private static class ImportPhotoTask extends AsyncTask<Uri, Void, String> {
 
-        private final WeakReference<Context> weakAppContext;
+        private final WeakReference<EditorActivity> activityReference;
+        private final Context appContext;
 
-        InsertPetTask(Context AppContext) {
-            this.weakAppContext = new WeakReference<>(AppContext);
+        ImportPhotoTask(EditorActivity activity) {
+            activityReference = new WeakReference<>(activity);
+            appContext = activity.getApplicationContext();
         }
 
         @Override
-        protected Long doInBackground(PetEntry... petEntries) {
-            PetsDatabase database = PetsDatabase.getInstance(weakAppContext.get());
-            return database.petDao().insertPet(petEntries[0]);
+        protected String doInBackground(Uri... uris) {
+            try {
+                return PetPhotoStore.importPhoto(appContext, uris[0]);
+            } catch (IOException | SecurityException e) {
+                Log.e(LOG_TAG, "Error copying photo " + uris[0], e);
+                return null;
+            }
         }
 
         @Override
-        protected void onPostExecute(Long result) {
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (result != (long) -1) {
-                // If the insertion was successful, it returned a positive, bigger or equal to 0, id.
-                Toast.makeText(weakAppContext.get(), weakAppContext.get().getString(R.string.editor_insert_pet_successful),
-                        Toast.LENGTH_SHORT).show();
-
-            } else {
-                // Otherwise, there was an error with insertion.
-                Toast.makeText(weakAppContext.get(), weakAppContext.get().getString(R.string.editor_insert_pet_failed),
+        protected void onPostExecute(String photoPath) {
+            if (photoPath == null) {
+                Toast.makeText(appContext, appContext.getString(R.string.editor_photo_failed),
                         Toast.LENGTH_SHORT).show();
+                return;
+            }
+            EditorActivity activity = activityReference.get();
+            if (activity != null && !activity.isFinishing()) {
+                activity.setPhoto(photoPath);
             }
         }
     }
 
-    private static class UpdatePetTask extends AsyncTask<PetEntry, Void, Integer> {
-
-        private final WeakReference<Context> weakAppContext;
+    /**
+     * Receives the result of saving an existing pet. The editor closes once the pet is saved,
+     * or shows the conflict dialog if it is still open. Only a weak reference to the editor is
+     * kept, so a pending write doesn't keep a destroyed editor in memory.
+     */
+    private static class UpdateResultCallback implements PetRepository.Callback<Integer> {
 
-        UpdatePetTask(Context AppContext) {
-            this.weakAppContext = new WeakReference<>(AppContext);
-        }
+        private final WeakReference<EditorActivity> activityReference;
+        private final Context appContext;
 
-        @Override
-        protected Integer doInBackground(PetEntry... petEntries) {
-            PetsDatabase database = PetsDatabase.getInstance(weakAppContext.get());
-            return database.petDao().updatePet(petEntries[0]);
+        UpdateResultCallback(EditorActivity activity) {
+            activityReference = new WeakReference<>(activity);
+            appContext = activity.getApplicationContext();
         }
 
         @Override
-        protected void onPostExecute(Integer result) {
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (result == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(weakAppContext.get(), weakAppContext.get().getString(R.string.editor_update_pet_failed),
-                        Toast.LENGTH_SHORT).show();
-
+        public void onComplete(Integer result) {
+            EditorActivity activity = activityReference.get();
+            boolean open = activity != null && !activity.isFinishing();
+            int message;
+            if (result != null && result == PetRepository.CONFLICT) {
+                if (open) {
+                    activity.showConflictDialog();
+                    return;
+                }
+                message = R.string.editor_update_pet_conflict;
+            } else if (result != null && result > 0) {
+                message = R.string.editor_update_pet_successful;
             } else {
-                // Otherwise, the update was successful and we can display a toast.
-                Toast.makeText(weakAppContext.get(), weakAppContext.get().getString(R.string.editor_update_pet_successful),
-                        Toast.LENGTH_SHORT).show();
+                message = R.string.editor_update_pet_failed;
+            }
+            Toast.makeText(appContext, appContext.getString(message), Toast.LENGTH_SHORT).show();
+            if (open) {
+                activity.finish();
             }
         }
     }
 
-    private static class DeletePetTask extends AsyncTask<Integer, Void, Integer> {
-
-        private final WeakReference<Context> weakAppContext;
+    /**
+     * Shows a toast once a write queued by the editor has completed. It only holds on to the
+     * application context, since the editor has usually finished by then.
+     */
+    private static class WriteResultToast<T extends Number> implements PetRepository.Callback<T> {
 
-        DeletePetTask(Context AppContext) {
-            this.weakAppContext = new WeakReference<>(AppContext);
-        }
+        private final Context appContext;
+        private final int successMessage;
+        private final int failureMessage;
 
-        @Override
-        protected Integer doInBackground(Integer... ids) {
-            PetsDatabase database = PetsDatabase.getInstance(weakAppContext.get());
-            return database.petDao().deletePet(ids[0]);
+        WriteResultToast(Context appContext, int successMessage, int failureMessage) {
+            this.appContext = appContext;
+            this.successMessage = successMessage;
+            this.failureMessage = failureMessage;
         }
 
         @Override
-        protected void onPostExecute(Integer result) {
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (result == 0) {
-                // If no rows were affected, then there was an error with the delete.
-                Toast.makeText(weakAppContext.get(), weakAppContext.get().getString(R.string.editor_delete_pet_failed),
-                        Toast.LENGTH_SHORT).show();
-
-            } else {
-                // Otherwise, the delete was successful and we can display a toast.
-                Toast.makeText(weakAppContext.get(), weakAppContext.get().getString(R.string.editor_delete_pet_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+        public void onComplete(T result) {
+            // Inserts return the new id or -1, updates and deletes the number of affected rows,
+            // so a positive result means the write was successful.
+            int message = result != null && result.longValue() > 0
+                    ? successMessage : failureMessage;
+            Toast.makeText(appContext, appContext.getString(message), Toast.LENGTH_SHORT).show();
         }
     }
-}
\ No newline at end of file
+}
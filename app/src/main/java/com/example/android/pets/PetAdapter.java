@@ -15,56 +15,109 @@
  */
 package com.example.android.pets;
 
+import android.arch.paging.PagedListAdapter;
 import android.content.Context;
-import android.content.res.Resources;
+import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.example.android.pets.data.PetEntry;
-
-import java.util.List;
+import com.example.android.pets.data.PetSummary;
 
 /**
  * {@link PetAdapter} is an adapter for a list . This adapter knows
- * how to create list items for each row of pet data
+ * how to create list items for each row of pet data.
+ *
+ * Each new {@link android.arch.paging.PagedList} is diffed against the previous one on a
+ * background thread, and only the rows that actually changed are rebound.
  */
-public class PetAdapter extends ArrayAdapter<PetEntry> {
+public class PetAdapter extends PagedListAdapter<PetSummary, PetAdapter.PetViewHolder> {
+
+    /**
+     * Compares pets by id to detect moves, and by their displayed fields to detect changes.
+     */
+    private static final DiffUtil.ItemCallback<PetSummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<PetSummary>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull PetSummary oldPet, @NonNull PetSummary newPet) {
+                    return oldPet.getId() == newPet.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull PetSummary oldPet, @NonNull PetSummary newPet) {
+                    return TextUtils.equals(oldPet.getName(), newPet.getName())
+                            && TextUtils.equals(oldPet.getBreed(), newPet.getBreed())
+                            && TextUtils.equals(oldPet.getPhotoPath(), newPet.getPhotoPath());
+                }
+            };
+
+    private static final Runnable MARK_FIRST_CONTENT = new Runnable() {
+        @Override
+        public void run() {
+            StartupTrace.mark(StartupTrace.Phase.FIRST_CONTENT);
+        }
+    };
+
+    /**
+     * Receives the id of the pet whose row was clicked.
+     */
+    public interface ItemClickListener {
+        void onItemClickListener(int petId);
+    }
+
+    private final Context mContext;
+
+    private final ItemClickListener mItemClickListener;
+
+    private final PetPhotoLoader mPhotoLoader;
+
+    /** Size of the photo thumbnails in pixels */
+    private final int mPhotoSize;
 
     /**
      * Constructs a new {@link PetAdapter}.
      *
      * @param context The context
+     * @param listener Listener notified when a pet row is clicked
      */
-    public PetAdapter(Context context, List<PetEntry> petEntries) {
-        super(context, 0, petEntries);
+    public PetAdapter(Context context, ItemClickListener listener) {
+        super(DIFF_CALLBACK);
+        mContext = context;
+        mItemClickListener = listener;
+        mPhotoLoader = PetPhotoLoader.getInstance(context);
+        mPhotoSize = context.getResources().getDimensionPixelSize(R.dimen.photo_thumbnail_size);
+    }
+
+    @NonNull
+    @Override
+    public PetViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(mContext).inflate(
+                R.layout.list_item, parent, false);
+        return new PetViewHolder(listItemView);
     }
 
     /**
-     * Get a View that displays the data at the specified position in the data set.
+     * Binds the data at the specified position in the data set to the given view holder.
      *
-     * @param position    Existing view, returned earlier by newView() method
-     * @param convertView app context
-     * @param parent  The cursor from which to get the data. The cursor is already moved to the
-     *                correct row.
+     * @param holder   The recycled view holder of the row
+     * @param position Position of the pet in the current PagedList
      */
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        View listItemView = convertView;
-        if(listItemView == null){
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.list_item, parent, false);
+    public void onBindViewHolder(@NonNull PetViewHolder holder, int position) {
+        // getItem() also lets the PagedList fetch the next page before the user
+        // reaches the end of the list.
+        PetSummary pet = getItem(position);
+        if (pet == null) {
+            mPhotoLoader.load(holder.photoImageView, null, mPhotoSize,
+                    R.drawable.photo_placeholder);
+            return;
         }
 
-        PetEntry pet = getItem(position);
-
-        // Find individual views that we want to modify in the list item layout
-        TextView nameTextView = (TextView) listItemView.findViewById(R.id.name);
-        TextView summaryTextView = (TextView) listItemView.findViewById(R.id.summary);
-
         // Read the pet attributes from the current pet
         String petName = pet.getName();
         String petBreed = pet.getBreed();
@@ -72,13 +125,54 @@ public class PetAdapter extends ArrayAdapter<PetEntry> {
         // If the pet breed is empty string or null, then use some default text
         // that says "Unknown breed", so the TextView isn't blank.
         if (TextUtils.isEmpty(petBreed)) {
-            petBreed = getContext().getResources().getString(R.string.unknown_breed);
+            petBreed = mContext.getResources().getString(R.string.unknown_breed);
         }
 
         // Update the TextViews with the attributes for the current pet
-        nameTextView.setText(petName);
-        summaryTextView.setText(petBreed);
+        holder.nameTextView.setText(petName);
+        holder.summaryTextView.setText(petBreed);
+        mPhotoLoader.load(holder.photoImageView, pet.getPhotoPath(), mPhotoSize,
+                R.drawable.photo_placeholder);
 
-        return listItemView;
+        if (position == 0) {
+            // Runs once the row has been laid out and drawn.
+            holder.itemView.post(MARK_FIRST_CONTENT);
+        }
+    }
+
+    /**
+     * Stops loading the photo of a row scrolled off screen, and lets its thumbnail be reused.
+     */
+    @Override
+    public void onViewRecycled(@NonNull PetViewHolder holder) {
+        mPhotoLoader.cancel(holder.photoImageView);
+    }
+
+    class PetViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        ImageView photoImageView;
+        TextView nameTextView;
+        TextView summaryTextView;
+
+        PetViewHolder(View itemView) {
+            super(itemView);
+            // Find individual views that we want to modify in the list item layout
+            photoImageView = (ImageView) itemView.findViewById(R.id.photo);
+            nameTextView = (TextView) itemView.findViewById(R.id.name);
+            summaryTextView = (TextView) itemView.findViewById(R.id.summary);
+            itemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            PetSummary pet = getItem(position);
+            if (pet != null) {
+                mItemClickListener.onItemClickListener(pet.getId());
+            }
+        }
     }
-}
\ No newline at end of file
+}
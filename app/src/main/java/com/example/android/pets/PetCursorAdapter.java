@@ -0,0 +1,177 @@
+package com.example.android.pets;
+
+import android.content.Context;
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.example.android.pets.data.PetCursorLiveData;
+import com.example.android.pets.data.PetSummary;
+
+/**
+ * Alternative to {@link PetAdapter} binding the catalog rows straight from a {@link Cursor},
+ * e.g. from {@link PetCursorLiveData}, instead of from {@link PetSummary} objects. The rows stay
+ * in the cursor's window; names and breeds are copied into char buffers owned by each view
+ * holder, so binding a row only allocates for its photo path.
+ *
+ * A new cursor replaces the whole list, since diffing two cursors would read every row of both.
+ * Item ids are the pet ids, so the RecyclerView keeps the rows of pets it already shows.
+ */
+public class PetCursorAdapter extends RecyclerView.Adapter<PetCursorAdapter.PetViewHolder> {
+
+    private static final Runnable MARK_FIRST_CONTENT = new Runnable() {
+        @Override
+        public void run() {
+            StartupTrace.mark(StartupTrace.Phase.FIRST_CONTENT);
+        }
+    };
+
+    private final Context mContext;
+
+    private final PetAdapter.ItemClickListener mItemClickListener;
+
+    private final PetPhotoLoader mPhotoLoader;
+
+    /** Size of the photo thumbnails in pixels */
+    private final int mPhotoSize;
+
+    /** Shown in place of an empty breed */
+    private final String mUnknownBreed;
+
+    private Cursor mCursor;
+
+    private int mIdColumn;
+    private int mNameColumn;
+    private int mBreedColumn;
+    private int mPhotoColumn;
+
+    /**
+     * Constructs a new {@link PetCursorAdapter}.
+     *
+     * @param context The context
+     * @param listener Listener notified when a pet row is clicked
+     */
+    public PetCursorAdapter(Context context, PetAdapter.ItemClickListener listener) {
+        mContext = context;
+        mItemClickListener = listener;
+        mPhotoLoader = PetPhotoLoader.getInstance(context);
+        mPhotoSize = context.getResources().getDimensionPixelSize(R.dimen.photo_thumbnail_size);
+        mUnknownBreed = context.getString(R.string.unknown_breed);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Shows the pets of the given cursor, or none for null. The adapter doesn't close cursors.
+     */
+    public void swapCursor(Cursor cursor) {
+        if (cursor == mCursor) {
+            return;
+        }
+        mCursor = cursor;
+        if (cursor != null) {
+            mIdColumn = cursor.getColumnIndexOrThrow("id");
+            mNameColumn = cursor.getColumnIndexOrThrow("name");
+            mBreedColumn = cursor.getColumnIndexOrThrow("breed");
+            mPhotoColumn = cursor.getColumnIndexOrThrow("photo_path");
+        }
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getItemCount() {
+        return mCursor == null ? 0 : mCursor.getCount();
+    }
+
+    /**
+     * @return the id of the pet at the given position
+     */
+    @Override
+    public long getItemId(int position) {
+        if (mCursor == null || !mCursor.moveToPosition(position)) {
+            return RecyclerView.NO_ID;
+        }
+        return mCursor.getLong(mIdColumn);
+    }
+
+    @NonNull
+    @Override
+    public PetViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(mContext).inflate(
+                R.layout.list_item, parent, false);
+        return new PetViewHolder(listItemView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PetViewHolder holder, int position) {
+        if (mCursor == null || !mCursor.moveToPosition(position)) {
+            return;
+        }
+
+        // The TextViews show the holder's buffers, which are only refilled when the holder
+        // is bound again.
+        mCursor.copyStringToBuffer(mNameColumn, holder.nameBuffer);
+        holder.nameTextView.setText(holder.nameBuffer.data, 0, holder.nameBuffer.sizeCopied);
+
+        mCursor.copyStringToBuffer(mBreedColumn, holder.breedBuffer);
+        if (holder.breedBuffer.sizeCopied == 0) {
+            holder.summaryTextView.setText(mUnknownBreed);
+        } else {
+            holder.summaryTextView.setText(holder.breedBuffer.data, 0,
+                    holder.breedBuffer.sizeCopied);
+        }
+
+        String photoPath = mCursor.isNull(mPhotoColumn) ? null : mCursor.getString(mPhotoColumn);
+        mPhotoLoader.load(holder.photoImageView, photoPath, mPhotoSize,
+                R.drawable.photo_placeholder);
+
+        if (position == 0) {
+            // Runs once the row has been laid out and drawn.
+            holder.itemView.post(MARK_FIRST_CONTENT);
+        }
+    }
+
+    /**
+     * Stops loading the photo of a row scrolled off screen, and lets its thumbnail be reused.
+     */
+    @Override
+    public void onViewRecycled(@NonNull PetViewHolder holder) {
+        mPhotoLoader.cancel(holder.photoImageView);
+    }
+
+    class PetViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        final CharArrayBuffer nameBuffer = new CharArrayBuffer(32);
+        final CharArrayBuffer breedBuffer = new CharArrayBuffer(32);
+
+        ImageView photoImageView;
+        TextView nameTextView;
+        TextView summaryTextView;
+
+        PetViewHolder(View itemView) {
+            super(itemView);
+            photoImageView = (ImageView) itemView.findViewById(R.id.photo);
+            nameTextView = (TextView) itemView.findViewById(R.id.name);
+            summaryTextView = (TextView) itemView.findViewById(R.id.summary);
+            itemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view) {
+            // Looks the pet id up in the cursor by the row's current position.
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            long petId = PetCursorAdapter.this.getItemId(position);
+            if (petId != RecyclerView.NO_ID) {
+                mItemClickListener.onItemClickListener((int) petId);
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.example.android.pets;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.android.pets.data.PetPhotoStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the photos of pets into ImageViews as square thumbnails of the size they are shown at.
+ *
+ * Photos are decoded on a small pool of background threads, downsampled while decoding to the
+ * smallest power of two that still covers the thumbnail, so a full-size photo is never held in
+ * memory. Thumbnails are kept in two tiers: a memory cache bounded by the bytes of its bitmaps,
+ * and JPEG files in the app's cache directory, so a thumbnail is only made from the photo once.
+ *
+ * Loading into a view cancels the previous request of that view, so rows scrolled off screen
+ * and recycled stop waiting for their old photo. Bitmaps leaving the memory cache while no view
+ * shows them are kept to decode later thumbnails into, instead of allocating new ones.
+ *
+ * Every method must be called on the main thread.
+ */
+public class PetPhotoLoader {
+
+    private static final String LOG_TAG = PetPhotoLoader.class.getSimpleName();
+
+    /** Number of threads decoding photos */
+    private static final int THREAD_COUNT = 2;
+
+    /** Share of the app's memory class used by the memory cache */
+    private static final int MEMORY_CACHE_DIVIDER = 8;
+
+    private static final String THUMBNAIL_DIRECTORY = "thumbnails";
+    private static final int THUMBNAIL_QUALITY = 85;
+
+    /** Size above which the oldest thumbnails are deleted from the disk cache */
+    private static final long MAX_DISK_CACHE_BYTES = 20 * 1024 * 1024;
+
+    /** Number of thumbnails written between two trims of the disk cache */
+    private static final int WRITES_PER_TRIM = 50;
+
+    /** Maximum number of bitmaps kept for reuse */
+    private static final int MAX_REUSABLE_BITMAPS = 8;
+
+    private static PetPhotoLoader sInstance;
+
+    private final Context mAppContext;
+    private final File mThumbnailDirectory;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor =
+            Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NonNull final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "PetPhotoLoader-" + mCount.incrementAndGet());
+                }
+            });
+
+    /** Thumbnails by key, see {@link #getKey} */
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    /** Bitmaps currently in the memory cache */
+    private final Set<Bitmap> mCachedBitmaps =
+            Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+
+    /** Number of views showing each bitmap */
+    private final Map<Bitmap, Integer> mDisplayCounts = new IdentityHashMap<>();
+
+    /** Bitmaps neither cached nor shown, to decode into. Guarded by itself. */
+    private final List<Bitmap> mReusableBitmaps = new ArrayList<>();
+
+    private final AtomicInteger mWritesSinceTrim = new AtomicInteger();
+
+    private PetPhotoLoader(Context context) {
+        mAppContext = context.getApplicationContext();
+        mThumbnailDirectory = new File(mAppContext.getCacheDir(), THUMBNAIL_DIRECTORY);
+
+        ActivityManager activityManager =
+                (ActivityManager) mAppContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CACHE_DIVIDER;
+        mMemoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldBitmap,
+                                        Bitmap newBitmap) {
+                mCachedBitmaps.remove(oldBitmap);
+                if (!mDisplayCounts.containsKey(oldBitmap)) {
+                    addReusable(oldBitmap);
+                }
+            }
+        };
+    }
+
+    public static synchronized PetPhotoLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PetPhotoLoader(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Shows the thumbnail of the given photo in the view, or the placeholder while it loads
+     * and if there is no photo. Any earlier request of the view is cancelled.
+     *
+     * @param photoPath   the photo's file name in {@link PetPhotoStore}, or null
+     * @param sizePx      width and height of the thumbnail
+     * @param placeholder drawable resource shown until the thumbnail is ready
+     */
+    public void load(ImageView view, String photoPath, int sizePx, int placeholder) {
+        cancel(view);
+        if (photoPath == null) {
+            view.setImageResource(placeholder);
+            return;
+        }
+        String key = getKey(photoPath, sizePx);
+        Bitmap cached = mMemoryCache.get(key);
+        if (cached != null) {
+            show(view, cached);
+            return;
+        }
+        view.setImageResource(placeholder);
+        Request request = new Request(view, photoPath, key, sizePx);
+        view.setTag(R.id.photo_request, request);
+        request.mFuture = mExecutor.submit(request);
+    }
+
+    /**
+     * Cancels the pending request of the view, if any, and stops showing its thumbnail, e.g.
+     * when its row is recycled.
+     */
+    public void cancel(ImageView view) {
+        Request request = (Request) view.getTag(R.id.photo_request);
+        if (request != null) {
+            request.mCancelled = true;
+            request.mFuture.cancel(false);
+            view.setTag(R.id.photo_request, null);
+        }
+        Bitmap shown = (Bitmap) view.getTag(R.id.photo_bitmap);
+        if (shown != null) {
+            view.setImageDrawable(null);
+            view.setTag(R.id.photo_bitmap, null);
+            Integer count = mDisplayCounts.get(shown);
+            if (count == null || count <= 1) {
+                mDisplayCounts.remove(shown);
+                if (!mCachedBitmaps.contains(shown)) {
+                    addReusable(shown);
+                }
+            } else {
+                mDisplayCounts.put(shown, count - 1);
+            }
+        }
+    }
+
+    private void show(ImageView view, Bitmap bitmap) {
+        view.setImageBitmap(bitmap);
+        view.setTag(R.id.photo_bitmap, bitmap);
+        Integer count = mDisplayCounts.get(bitmap);
+        mDisplayCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Caches a thumbnail decoded in the background and shows it, if its view still wants it.
+     */
+    private void deliver(Request request, Bitmap bitmap) {
+        mCachedBitmaps.add(bitmap);
+        mMemoryCache.put(request.mKey, bitmap);
+        if (!request.mCancelled && request.mView.getTag(R.id.photo_request) == request) {
+            request.mView.setTag(R.id.photo_request, null);
+            show(request.mView, bitmap);
+        }
+    }
+
+    /**
+     * Reads the thumbnail from the disk cache, or makes it from the photo and stores it there.
+     * Runs on the decoding threads.
+     */
+    private Bitmap loadThumbnail(Request request) {
+        File thumbnail = new File(mThumbnailDirectory, hash(request.mKey) + ".jpg");
+        if (thumbnail.exists()) {
+            Bitmap bitmap = decode(thumbnail, request.mSizePx);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        if (request.mCancelled) {
+            return null;
+        }
+
+        File photo = PetPhotoStore.getFile(mAppContext, request.mPhotoPath);
+        Bitmap bitmap = decode(photo, request.mSizePx);
+        if (bitmap == null) {
+            return null;
+        }
+        bitmap = scaleToCover(bitmap, request.mSizePx);
+        writeThumbnail(thumbnail, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Decodes the image downsampled by the largest power of two keeping both sides at least
+     * the given size, into a reusable bitmap if one fits.
+     */
+    private Bitmap decode(File file, int sizePx) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = 1;
+        while (options.outWidth / (options.inSampleSize * 2) >= sizePx
+                && options.outHeight / (options.inSampleSize * 2) >= sizePx) {
+            options.inSampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inBitmap = takeReusable(options);
+        try {
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        } catch (IllegalArgumentException e) {
+            // The reused bitmap didn't fit the image after all.
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        }
+    }
+
+    /**
+     * Scales the bitmap down so its shorter side is the given size, if it is noticeably larger.
+     */
+    private Bitmap scaleToCover(Bitmap bitmap, int sizePx) {
+        int shorterSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (shorterSide <= sizePx * 5 / 4) {
+            return bitmap;
+        }
+        float scale = (float) sizePx / shorterSide;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                Math.round(bitmap.getHeight() * scale), true);
+        if (scaled != bitmap) {
+            addReusable(bitmap);
+        }
+        return scaled;
+    }
+
+    private void writeThumbnail(File thumbnail, Bitmap bitmap) {
+        //noinspection ResultOfMethodCallIgnored
+        mThumbnailDirectory.mkdirs();
+        File temporary = new File(mThumbnailDirectory, thumbnail.getName() + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(temporary);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+            } finally {
+                out.close();
+            }
+            if (!temporary.renameTo(thumbnail)) {
+                throw new IOException("Can't rename " + temporary);
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Error writing thumbnail " + thumbnail, e);
+            //noinspection ResultOfMethodCallIgnored
+            temporary.delete();
+        }
+        if (mWritesSinceTrim.incrementAndGet() >= WRITES_PER_TRIM) {
+            mWritesSinceTrim.set(0);
+            trimDiskCache();
+        }
+    }
+
+    /**
+     * Deletes the least recently written thumbnails until the disk cache fits its size limit.
+     */
+    private void trimDiskCache() {
+        File[] files = mThumbnailDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= MAX_DISK_CACHE_BYTES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (totalBytes <= MAX_DISK_CACHE_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    private void addReusable(Bitmap bitmap) {
+        if (!bitmap.isMutable()) {
+            return;
+        }
+        synchronized (mReusableBitmaps) {
+            if (mReusableBitmaps.size() >= MAX_REUSABLE_BITMAPS) {
+                mReusableBitmaps.remove(0);
+            }
+            mReusableBitmaps.add(bitmap);
+        }
+    }
+
+    /**
+     * @return a bitmap the image described by the options can be decoded into, or null
+     */
+    private Bitmap takeReusable(BitmapFactory.Options options) {
+        synchronized (mReusableBitmaps) {
+            Iterator<Bitmap> iterator = mReusableBitmaps.iterator();
+            while (iterator.hasNext()) {
+                Bitmap candidate = iterator.next();
+                if (candidate.isRecycled()) {
+                    iterator.remove();
+                } else if (canDecodeInto(candidate, options)) {
+                    iterator.remove();
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Before KitKat, a bitmap can only be reused for an image of exactly its size, decoded
+     * without downsampling; since then, for any image that needs at most as many bytes.
+     */
+    private static boolean canDecodeInto(Bitmap candidate, BitmapFactory.Options options) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return candidate.getWidth() == options.outWidth
+                    && candidate.getHeight() == options.outHeight
+                    && options.inSampleSize == 1;
+        }
+        return canDecodeIntoKitKat(candidate, options);
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static boolean canDecodeIntoKitKat(Bitmap candidate, BitmapFactory.Options options) {
+        int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        // Photos are decoded as ARGB_8888, 4 bytes per pixel.
+        return candidate.getConfig() == Bitmap.Config.ARGB_8888
+                && width * height * 4 <= candidate.getAllocationByteCount();
+    }
+
+    private static String getKey(String photoPath, int sizePx) {
+        return photoPath + "@" + sizePx;
+    }
+
+    /**
+     * @return a file name safe digest of the key
+     */
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5")
+                    .digest(key.getBytes(Charset.forName("UTF-8")));
+            return String.format("%032x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    /**
+     * A thumbnail requested for a view.
+     */
+    private class Request implements Runnable {
+
+        final ImageView mView;
+        final String mPhotoPath;
+        final String mKey;
+        final int mSizePx;
+        volatile boolean mCancelled;
+        Future<?> mFuture;
+
+        Request(ImageView view, String photoPath, String key, int sizePx) {
+            mView = view;
+            mPhotoPath = photoPath;
+            mKey = key;
+            mSizePx = sizePx;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            final Bitmap bitmap = loadThumbnail(this);
+            if (bitmap == null) {
+                return;
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(Request.this, bitmap);
+                }
+            });
+        }
+    }
+}
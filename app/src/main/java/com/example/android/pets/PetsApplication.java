@@ -0,0 +1,77 @@
+package com.example.android.pets;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.os.TraceCompat;
+
+import com.example.android.pets.data.PetKeysetDataSource;
+import com.example.android.pets.data.PetPhotoStore;
+import com.example.android.pets.data.PetPurger;
+import com.example.android.pets.data.PetsDatabase;
+
+/**
+ * Takes the database work off the critical path of a cold start: while the catalog activity is
+ * being created, the database is opened and the first catalog page is read on a background
+ * thread, so the catalog's first query only has to pick up the prefetched page. Maintenance runs
+ * well after the start, at background priority: the one-time switch of the database to
+ * incremental auto-vacuum, and the daily look for photos no pet refers to anymore.
+ */
+public class PetsApplication extends Application {
+
+    /** Delay before the maintenance starts, so it doesn't compete with the start */
+    private static final long MAINTENANCE_DELAY_MILLIS = 30 * 1000;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTrace.start();
+
+        Thread warmUp = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                PetsDatabase database;
+                TraceCompat.beginSection("PetsDatabase.open");
+                try {
+                    database = PetsDatabase.getInstance(PetsApplication.this);
+                    // Opening the helper creates or migrates the database.
+                    database.getOpenHelper().getWritableDatabase();
+                } finally {
+                    TraceCompat.endSection();
+                }
+                StartupTrace.mark(StartupTrace.Phase.DATABASE_OPENED);
+
+                TraceCompat.beginSection("PetKeysetDataSource.prefetchFirstPage");
+                try {
+                    PetKeysetDataSource.prefetchFirstPage(database,
+                            CatalogViewModel.INITIAL_LOAD_SIZE);
+                } finally {
+                    TraceCompat.endSection();
+                }
+                StartupTrace.mark(StartupTrace.Phase.FIRST_QUERY);
+            }
+        }, "PetsWarmUp");
+        warmUp.start();
+
+        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                startMaintenance();
+            }
+        }, MAINTENANCE_DELAY_MILLIS);
+    }
+
+    private void startMaintenance() {
+        Thread maintenance = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                PetsDatabase database = PetsDatabase.getInstance(PetsApplication.this);
+                PetPurger.enableIncrementalVacuum(database);
+                PetPhotoStore.deleteUnreferencedIfDue(PetsApplication.this, database);
+            }
+        }, "PetsMaintenance");
+        maintenance.start();
+    }
+}
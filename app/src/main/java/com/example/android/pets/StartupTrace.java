@@ -0,0 +1,87 @@
+package com.example.android.pets;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Records when each phase of a cold start was reached, relative to the start of the process,
+ * and logs a report once the catalog shows its first content.
+ */
+public final class StartupTrace {
+
+    private static final String LOG_TAG = StartupTrace.class.getSimpleName();
+
+    /** Time budget from process start to the first catalog content, in milliseconds */
+    public static final long COLD_START_BUDGET_MILLIS = 800;
+
+    /** Phases of a cold start, in the order they are expected to be reached */
+    public enum Phase {
+        /** The Application object was created */
+        APPLICATION_CREATED,
+        /** The database was opened and migrated */
+        DATABASE_OPENED,
+        /** The first catalog page was read */
+        FIRST_QUERY,
+        /** The first catalog row, or the empty view, was drawn */
+        FIRST_CONTENT
+    }
+
+    private static final long[] sPhaseUptimeMillis = new long[Phase.values().length];
+
+    private static long sProcessStartUptimeMillis;
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Starts the trace. Must be called as early as possible, from the Application.
+     */
+    static synchronized void start() {
+        long now = SystemClock.uptimeMillis();
+        sProcessStartUptimeMillis = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartUptimeMillis() : now;
+        sPhaseUptimeMillis[Phase.APPLICATION_CREATED.ordinal()] = now;
+    }
+
+    /**
+     * Records that a phase was reached. Only the first call for each phase counts.
+     */
+    public static synchronized void mark(Phase phase) {
+        if (sProcessStartUptimeMillis == 0 || sPhaseUptimeMillis[phase.ordinal()] != 0) {
+            return;
+        }
+        sPhaseUptimeMillis[phase.ordinal()] = SystemClock.uptimeMillis();
+        if (phase == Phase.FIRST_CONTENT) {
+            long total = sPhaseUptimeMillis[phase.ordinal()] - sProcessStartUptimeMillis;
+            if (total > COLD_START_BUDGET_MILLIS) {
+                Log.w(LOG_TAG, "Cold start over budget of " + COLD_START_BUDGET_MILLIS
+                        + " ms: " + getReport());
+            } else {
+                Log.i(LOG_TAG, "Cold start: " + getReport());
+            }
+        }
+    }
+
+    /**
+     * @return the time of every phase reached so far, in ms since the process started
+     */
+    public static synchronized String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            long uptime = sPhaseUptimeMillis[phase.ordinal()];
+            if (uptime == 0) {
+                continue;
+            }
+            if (report.length() > 0) {
+                report.append(", ");
+            }
+            report.append(phase.name().toLowerCase(Locale.US)).append('=')
+                    .append(uptime - sProcessStartUptimeMillis).append("ms");
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.pets;
+
+import android.arch.lifecycle.Observer;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+
+import com.example.android.pets.data.NamedBreedStats;
+import com.example.android.pets.data.PetBreedStats;
+import com.example.android.pets.data.PetEntry;
+import com.example.android.pets.data.PetGenderStats;
+import com.example.android.pets.data.PetStatsDao;
+import com.example.android.pets.data.PetsDatabase;
+import com.example.android.pets.data.ShelterShards;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+/**
+ * Displays the number of pets by gender and the weights by breed. The statistics are read from
+ * summary tables, so opening this screen doesn't depend on how many pets are stored.
+ * When pets are also stored in shelter databases, the totals of every shelter follow, read
+ * from all of them in parallel by {@link ShelterShards}.
+ */
+public class StatsActivity extends AppCompatActivity {
+
+    private static final String LOG_TAG = StatsActivity.class.getSimpleName();
+
+    /** TextView listing the number of pets of each gender */
+    private TextView mGenderStatsTextView;
+
+    /** TextView listing the number of pets and their weights for each breed */
+    private TextView mBreedStatsTextView;
+
+    /** Title of the totals of every shelter, with the number of shelters */
+    private TextView mShelterStatsTitleTextView;
+
+    /** TextView listing the totals of every shelter, by gender then by breed */
+    private TextView mShelterStatsTextView;
+
+    private ShelterStatsTask mShelterStatsTask;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+
+        mGenderStatsTextView = (TextView) findViewById(R.id.gender_stats);
+        mBreedStatsTextView = (TextView) findViewById(R.id.breed_stats);
+        mShelterStatsTitleTextView = (TextView) findViewById(R.id.shelter_stats_title);
+        mShelterStatsTextView = (TextView) findViewById(R.id.shelter_stats);
+
+        PetStatsDao dao = PetsDatabase.getInstance(getApplicationContext()).petStatsDao();
+        dao.loadGenderStats().observe(this, new Observer<List<PetGenderStats>>() {
+            @Override
+            public void onChanged(@Nullable List<PetGenderStats> stats) {
+                showGenderStats(stats);
+            }
+        });
+        dao.loadBreedStats().observe(this, new Observer<List<NamedBreedStats>>() {
+            @Override
+            public void onChanged(@Nullable List<NamedBreedStats> stats) {
+                showBreedStats(stats);
+            }
+        });
+
+        mShelterStatsTask = new ShelterStatsTask(this);
+        mShelterStatsTask.execute();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mShelterStatsTask.cancel(false);
+    }
+
+    private void showGenderStats(List<PetGenderStats> stats) {
+        mGenderStatsTextView.setText(formatGenderStats(stats));
+    }
+
+    private void showBreedStats(List<NamedBreedStats> stats) {
+        mBreedStatsTextView.setText(formatBreedStats(stats));
+    }
+
+    private void showShelterStats(ShelterStats stats) {
+        mShelterStatsTitleTextView.setText(
+                getString(R.string.stats_shelters_title, stats.shelterCount));
+        mShelterStatsTextView.setText(TextUtils.concat(formatGenderStats(stats.genderStats),
+                "\n\n", formatBreedStats(stats.breedStats)));
+        mShelterStatsTitleTextView.setVisibility(View.VISIBLE);
+        mShelterStatsTextView.setVisibility(View.VISIBLE);
+    }
+
+    private CharSequence formatGenderStats(List<PetGenderStats> stats) {
+        if (stats == null || stats.isEmpty()) {
+            return getString(R.string.stats_no_pets);
+        }
+        StringBuilder text = new StringBuilder();
+        for (PetGenderStats gender : stats) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(getString(R.string.stats_gender_line,
+                    getString(getGenderLabel(gender.getGender())), gender.getPetCount()));
+        }
+        return text;
+    }
+
+    private CharSequence formatBreedStats(List<NamedBreedStats> stats) {
+        if (stats == null || stats.isEmpty()) {
+            return getString(R.string.stats_no_pets);
+        }
+        StringBuilder text = new StringBuilder();
+        for (NamedBreedStats namedBreed : stats) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            PetBreedStats breed = namedBreed.getStats();
+            String name = TextUtils.isEmpty(namedBreed.getBreed())
+                    ? getString(R.string.unknown_breed) : namedBreed.getBreed();
+            text.append(getString(R.string.stats_breed_line, name, breed.getPetCount(),
+                    breed.getAverageWeight(), breed.getMinWeight(), breed.getMaxWeight()));
+        }
+        return text;
+    }
+
+    private static int getGenderLabel(int gender) {
+        switch (gender) {
+            case PetEntry.GENDER_MALE:
+                return R.string.gender_male;
+            case PetEntry.GENDER_FEMALE:
+                return R.string.gender_female;
+            default:
+                return R.string.gender_unknown;
+        }
+    }
+
+    /**
+     * The statistics of every shelter added up.
+     */
+    private static class ShelterStats {
+        int shelterCount;
+        List<PetGenderStats> genderStats;
+        List<NamedBreedStats> breedStats;
+    }
+
+    /**
+     * Reads the statistics of every shelter database, or nothing if there are none.
+     */
+    private static class ShelterStatsTask extends AsyncTask<Void, Void, ShelterStats> {
+
+        private final WeakReference<StatsActivity> weakActivity;
+        private final ShelterShards shards;
+
+        ShelterStatsTask(StatsActivity activity) {
+            this.weakActivity = new WeakReference<>(activity);
+            this.shards = new ShelterShards(activity);
+        }
+
+        @Override
+        protected ShelterStats doInBackground(Void... voids) {
+            ShelterStats stats = new ShelterStats();
+            stats.shelterCount = shards.getShelterIds().size();
+            if (stats.shelterCount == 0) {
+                return null;
+            }
+            try {
+                stats.genderStats = shards.getAllGenderStats();
+                stats.breedStats = shards.getAllBreedStats();
+                return stats;
+            } catch (InterruptedException e) {
+                return null;
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Error reading the statistics of the shelters", e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(ShelterStats stats) {
+            StatsActivity activity = weakActivity.get();
+            if (stats != null && activity != null && !activity.isFinishing()) {
+                activity.showShelterStats(stats);
+            }
+        }
+    }
+}
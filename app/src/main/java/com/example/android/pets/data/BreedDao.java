@@ -0,0 +1,24 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface BreedDao {
+
+    /**
+     * @return the id of the new breed, or -1 if a breed with the same name already exists
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertBreed(BreedEntry breedEntry);
+
+    @Query("SELECT * FROM breed WHERE name = :name COLLATE NOCASE LIMIT 1")
+    BreedEntry findBreed(String name);
+
+    @Query("SELECT * FROM breed")
+    List<BreedEntry> getAllBreeds();
+}
@@ -0,0 +1,136 @@
+package com.example.android.pets.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory copy of the breed table of one database, used to turn the breed names of pets into
+ * breed ids before they are written, and to suggest known breeds while a pet is edited.
+ *
+ * Names are compared after trimming and collapsing whitespace, and ignoring the case of ASCII
+ * letters like SQLite's NOCASE collation, so "labrador  retriever" and "Labrador Retriever" are
+ * the same breed. The spelling written first is the one kept.
+ *
+ * The dictionary is read from the database the first time it is used, so its methods must be
+ * called off the main thread.
+ */
+public class BreedDictionary {
+
+    private final PetsDatabase mDb;
+
+    /** Breed ids by lookup key, or null until loaded. Guarded by this. */
+    private Map<String, Integer> mIdsByKey;
+
+    /** Breed names, sorted ignoring case. Guarded by this. */
+    private List<String> mNames;
+
+    BreedDictionary(PetsDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Returns the id of the given breed, adding it to the breed table if it is new. Must not be
+     * called inside a transaction that may be rolled back, as the new id would stay cached.
+     *
+     * @return the breed id, or null if the name is empty
+     */
+    public synchronized Integer getOrCreateId(String breed) {
+        String name = normalize(breed);
+        if (name == null) {
+            return null;
+        }
+        ensureLoaded();
+        String key = toKey(name);
+        Integer id = mIdsByKey.get(key);
+        if (id == null) {
+            BreedDao dao = mDb.breedDao();
+            long rowId = dao.insertBreed(new BreedEntry(name));
+            if (rowId == -1) {
+                // Added by another dictionary of the same database since this one was loaded
+                BreedEntry existing = dao.findBreed(name);
+                id = existing.getId();
+                name = existing.getName();
+            } else {
+                id = (int) rowId;
+            }
+            add(key, id, name);
+        }
+        return id;
+    }
+
+    /**
+     * Sets the breed id of each pet from its breed name.
+     */
+    void resolve(List<PetEntry> pets) {
+        for (PetEntry pet : pets) {
+            resolve(pet);
+        }
+    }
+
+    void resolve(PetEntry pet) {
+        pet.setBreedId(getOrCreateId(pet.getBreed()));
+    }
+
+    /**
+     * @return the names of every known breed, sorted ignoring case
+     */
+    public synchronized List<String> getNames() {
+        ensureLoaded();
+        return new ArrayList<>(mNames);
+    }
+
+    /**
+     * Forgets the cached breeds, so they are read again from the database on next use.
+     */
+    synchronized void clear() {
+        mIdsByKey = null;
+        mNames = null;
+    }
+
+    private void ensureLoaded() {
+        if (mIdsByKey != null) {
+            return;
+        }
+        List<BreedEntry> breeds = mDb.breedDao().getAllBreeds();
+        mIdsByKey = new HashMap<>(breeds.size() * 2);
+        mNames = new ArrayList<>(breeds.size());
+        for (BreedEntry breed : breeds) {
+            mIdsByKey.put(toKey(breed.getName()), breed.getId());
+            mNames.add(breed.getName());
+        }
+        Collections.sort(mNames, String.CASE_INSENSITIVE_ORDER);
+    }
+
+    private void add(String key, int id, String name) {
+        mIdsByKey.put(key, id);
+        int index = Collections.binarySearch(mNames, name, String.CASE_INSENSITIVE_ORDER);
+        mNames.add(index < 0 ? -index - 1 : index, name);
+    }
+
+    /**
+     * @return the name without leading, trailing and repeated whitespace, or null if empty
+     */
+    static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = name.trim().replaceAll("\\s+", " ");
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    /**
+     * Lower-cases ASCII letters only, to match names the way SQLite's NOCASE collation does.
+     */
+    static String toKey(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] += 'a' - 'A';
+            }
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Ignore;
+import android.arch.persistence.room.Index;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+/**
+ * A breed name, stored once and referenced by id from every pet of that breed. Names compare
+ * ignoring ASCII case, like {@link BreedDictionary} matches them, so the unique index on the
+ * name serves case-insensitive lookups and sorts.
+ */
+@Entity(tableName = BreedEntry.TABLE_NAME, indices = {@Index(value = "name", unique = true)})
+public class BreedEntry {
+
+    /** Name of the database table for breeds. */
+    public static final String TABLE_NAME = "breed";
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+    @NonNull
+    @ColumnInfo(collate = ColumnInfo.NOCASE)
+    private String name;
+
+    public BreedEntry(int id, @NonNull String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Ignore
+    public BreedEntry(@NonNull String name) {
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Moves the breed names stored in every pet row into the breed table, leaving an integer
+ * breed id in each pet. Used by {@link PetsDatabase#MIGRATION_4_5}.
+ */
+final class BreedMigration {
+
+    private static final String LOG_TAG = BreedMigration.class.getSimpleName();
+
+    /** Number of pet ids copied by each statement */
+    private static final int BATCH_SIZE = 10000;
+
+    private BreedMigration() {
+    }
+
+    static void migrate(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + BreedEntry.TABLE_NAME
+                + " (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, name TEXT NOT NULL)");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_breed_name ON breed (name)");
+
+        // Distinct breed spellings are few, so they are normalised here with the same rules
+        // as BreedDictionary, and mapped to their breed id in a temporary table.
+        db.execSQL("CREATE TEMP TABLE breed_map (raw TEXT PRIMARY KEY, breed_id INTEGER NOT NULL)");
+        Map<String, Long> idsByKey = new HashMap<>();
+        Cursor cursor = db.query("SELECT DISTINCT breed FROM pet WHERE breed IS NOT NULL");
+        try {
+            while (cursor.moveToNext()) {
+                String raw = cursor.getString(0);
+                String name = BreedDictionary.normalize(raw);
+                if (name == null) {
+                    continue;
+                }
+                String key = BreedDictionary.toKey(name);
+                Long id = idsByKey.get(key);
+                if (id == null) {
+                    ContentValues breed = new ContentValues();
+                    breed.put("name", name);
+                    id = db.insert(BreedEntry.TABLE_NAME, SQLiteDatabase.CONFLICT_ABORT, breed);
+                    idsByKey.put(key, id);
+                }
+                ContentValues mapping = new ContentValues();
+                mapping.put("raw", raw);
+                mapping.put("breed_id", id);
+                db.insert("breed_map", SQLiteDatabase.CONFLICT_ABORT, mapping);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // SQLite can't drop a column, so the pet rows are copied into a new table,
+        // one bounded range of ids per statement.
+        long maxId = 0;
+        cursor = db.query("SELECT MAX(id), (SELECT seq FROM sqlite_sequence WHERE name = 'pet') "
+                + "FROM pet");
+        try {
+            if (cursor.moveToFirst()) {
+                maxId = Math.max(cursor.getLong(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        db.execSQL("CREATE TABLE pet_new (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "name TEXT, breed_id INTEGER, gender INTEGER NOT NULL, weight INTEGER NOT NULL)");
+        for (long start = 0; start <= maxId; start += BATCH_SIZE) {
+            db.execSQL("INSERT INTO pet_new (id, name, breed_id, gender, weight) "
+                            + "SELECT id, name, (SELECT breed_id FROM breed_map WHERE raw = pet.breed), "
+                            + "gender, weight FROM pet WHERE id > ? AND id <= ?",
+                    new Object[]{start, start + BATCH_SIZE});
+        }
+        db.execSQL("DROP TABLE pet");
+        db.execSQL("ALTER TABLE pet_new RENAME TO pet");
+        db.execSQL("DROP TABLE breed_map");
+
+        // Ids of deleted pets must not be handed out again.
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name = 'pet'");
+        db.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES ('pet', ?)",
+                new Object[]{maxId});
+
+        db.execSQL("CREATE INDEX IF NOT EXISTS index_pet_name ON pet (name)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS index_pet_breed_id_weight ON pet (breed_id, weight)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS index_pet_gender_weight ON pet (gender, weight)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS index_pet_weight ON pet (weight)");
+        Log.i(LOG_TAG, "Moved " + idsByKey.size() + " breeds out of the pet table");
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android.pets.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link PetRecordReader} for comma separated rosters. The first line is the header naming the
+ * columns, e.g. {@code name,breed,gender,weight}. Fields may be quoted with double quotes, in
+ * which case they can contain commas, line breaks and doubled ("") quotes.
+ */
+public class CsvPetRecordReader implements PetRecordReader {
+
+    private static final int END_OF_STREAM = -1;
+
+    private final Reader mReader;
+    private String[] mHeader;
+
+    /** Character read ahead by the parser, or {@link #END_OF_STREAM} */
+    private int mNext;
+
+    private final StringBuilder mField = new StringBuilder();
+    private final List<String> mFields = new ArrayList<>();
+
+    /**
+     * @param reader Source of the roster; callers should pass a buffered reader.
+     */
+    public CsvPetRecordReader(Reader reader) throws IOException {
+        mReader = reader;
+        mNext = mReader.read();
+    }
+
+    @Override
+    public Map<String, String> readRecord() throws IOException {
+        if (mHeader == null) {
+            List<String> header = readLine();
+            if (header == null) {
+                return null;
+            }
+            mHeader = new String[header.size()];
+            for (int i = 0; i < mHeader.length; i++) {
+                mHeader[i] = header.get(i).trim().toLowerCase(Locale.US);
+            }
+        }
+
+        List<String> values = readLine();
+        // Skip blank lines between records
+        while (values != null && values.size() == 1 && values.get(0).isEmpty()) {
+            values = readLine();
+        }
+        if (values == null) {
+            return null;
+        }
+
+        Map<String, String> record = new HashMap<>();
+        for (int i = 0; i < mHeader.length && i < values.size(); i++) {
+            record.put(mHeader[i], values.get(i));
+        }
+        return record;
+    }
+
+    /**
+     * Reads the fields of the next line, or returns null at the end of the stream.
+     */
+    private List<String> readLine() throws IOException {
+        if (mNext == END_OF_STREAM) {
+            return null;
+        }
+        mFields.clear();
+        mField.setLength(0);
+        boolean quoted = false;
+
+        while (mNext != END_OF_STREAM) {
+            char c = (char) mNext;
+            mNext = mReader.read();
+
+            if (quoted) {
+                if (c == '"') {
+                    if (mNext == '"') {
+                        // An escaped quote inside a quoted field
+                        mField.append('"');
+                        mNext = mReader.read();
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    mField.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                mFields.add(mField.toString());
+                mField.setLength(0);
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r' && mNext == '\n') {
+                    mNext = mReader.read();
+                }
+                break;
+            } else {
+                mField.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IOException("Unterminated quoted field at end of roster");
+        }
+        mFields.add(mField.toString());
+        return new ArrayList<>(mFields);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.Looper;
+import android.support.annotation.RequiresApi;
+import android.util.Pair;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link SupportSQLiteDatabase} recording every query and write in {@link QueryMetrics}.
+ *
+ * The latency of a query runs from the call to query() until its cursor first executes the
+ * statement, on the first getCount() or move. That first call fills the cursor window and counts
+ * every row of the result, so it covers the time SQLite takes to run the query, but not the time
+ * the caller keeps the cursor open: the cursors of {@link PetCursorLiveData} live as long as the
+ * list shows them.
+ */
+class InstrumentedDatabase implements SupportSQLiteDatabase {
+
+    private final SupportSQLiteDatabase mDelegate;
+    private final QueryMetrics mMetrics;
+
+    InstrumentedDatabase(SupportSQLiteDatabase delegate, QueryMetrics metrics) {
+        mDelegate = delegate;
+        mMetrics = metrics;
+    }
+
+    boolean wraps(SupportSQLiteDatabase database) {
+        return mDelegate == database;
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private Cursor instrument(Cursor cursor, String sql, long startNanos) {
+        return new InstrumentedCursor(cursor, sql, startNanos);
+    }
+
+    private void record(String sql, long startNanos, long rows) {
+        mMetrics.record(sql, System.nanoTime() - startNanos, rows, isMainThread());
+    }
+
+    @Override
+    public SupportSQLiteStatement compileStatement(String sql) {
+        return new InstrumentedStatement(mDelegate.compileStatement(sql), sql, mMetrics);
+    }
+
+    @Override
+    public Cursor query(String query) {
+        long start = System.nanoTime();
+        return instrument(mDelegate.query(query), query, start);
+    }
+
+    @Override
+    public Cursor query(String query, Object[] bindArgs) {
+        long start = System.nanoTime();
+        return instrument(mDelegate.query(query, bindArgs), query, start);
+    }
+
+    @Override
+    public Cursor query(SupportSQLiteQuery query) {
+        long start = System.nanoTime();
+        return instrument(mDelegate.query(query), query.getSql(), start);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public Cursor query(SupportSQLiteQuery query, CancellationSignal cancellationSignal) {
+        long start = System.nanoTime();
+        return instrument(mDelegate.query(query, cancellationSignal), query.getSql(), start);
+    }
+
+    @Override
+    public long insert(String table, int conflictAlgorithm, ContentValues values)
+            throws SQLException {
+        long start = System.nanoTime();
+        long id = mDelegate.insert(table, conflictAlgorithm, values);
+        record("INSERT INTO " + table, start, id == -1 ? 0 : 1);
+        return id;
+    }
+
+    @Override
+    public int delete(String table, String whereClause, Object[] whereArgs) {
+        long start = System.nanoTime();
+        int rows = mDelegate.delete(table, whereClause, whereArgs);
+        record("DELETE FROM " + table + (whereClause == null ? "" : " WHERE " + whereClause),
+                start, rows);
+        return rows;
+    }
+
+    @Override
+    public int update(String table, int conflictAlgorithm, ContentValues values,
+                      String whereClause, Object[] whereArgs) {
+        long start = System.nanoTime();
+        int rows = mDelegate.update(table, conflictAlgorithm, values, whereClause, whereArgs);
+        record("UPDATE " + table + " SET " + values.keySet()
+                + (whereClause == null ? "" : " WHERE " + whereClause), start, rows);
+        return rows;
+    }
+
+    @Override
+    public void execSQL(String sql) throws SQLException {
+        long start = System.nanoTime();
+        mDelegate.execSQL(sql);
+        record(sql, start, 0);
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] bindArgs) throws SQLException {
+        long start = System.nanoTime();
+        mDelegate.execSQL(sql, bindArgs);
+        record(sql, start, 0);
+    }
+
+    @Override
+    public void beginTransaction() {
+        mDelegate.beginTransaction();
+    }
+
+    @Override
+    public void beginTransactionNonExclusive() {
+        mDelegate.beginTransactionNonExclusive();
+    }
+
+    @Override
+    public void beginTransactionWithListener(SQLiteTransactionListener transactionListener) {
+        mDelegate.beginTransactionWithListener(transactionListener);
+    }
+
+    @Override
+    public void beginTransactionWithListenerNonExclusive(
+            SQLiteTransactionListener transactionListener) {
+        mDelegate.beginTransactionWithListenerNonExclusive(transactionListener);
+    }
+
+    @Override
+    public void endTransaction() {
+        long start = System.nanoTime();
+        mDelegate.endTransaction();
+        // Includes the commit and its sync to disk.
+        record("END TRANSACTION", start, 0);
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        mDelegate.setTransactionSuccessful();
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return mDelegate.inTransaction();
+    }
+
+    @Override
+    public boolean isDbLockedByCurrentThread() {
+        return mDelegate.isDbLockedByCurrentThread();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely() {
+        return mDelegate.yieldIfContendedSafely();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+        return mDelegate.yieldIfContendedSafely(sleepAfterYieldDelay);
+    }
+
+    @Override
+    public int getVersion() {
+        return mDelegate.getVersion();
+    }
+
+    @Override
+    public void setVersion(int version) {
+        mDelegate.setVersion(version);
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return mDelegate.getMaximumSize();
+    }
+
+    @Override
+    public long setMaximumSize(long numBytes) {
+        return mDelegate.setMaximumSize(numBytes);
+    }
+
+    @Override
+    public long getPageSize() {
+        return mDelegate.getPageSize();
+    }
+
+    @Override
+    public void setPageSize(long numBytes) {
+        mDelegate.setPageSize(numBytes);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return mDelegate.isReadOnly();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mDelegate.isOpen();
+    }
+
+    @Override
+    public boolean needUpgrade(int newVersion) {
+        return mDelegate.needUpgrade(newVersion);
+    }
+
+    @Override
+    public String getPath() {
+        return mDelegate.getPath();
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+        mDelegate.setLocale(locale);
+    }
+
+    @Override
+    public void setMaxSqlCacheSize(int cacheSize) {
+        mDelegate.setMaxSqlCacheSize(cacheSize);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public void setForeignKeyConstraintsEnabled(boolean enable) {
+        mDelegate.setForeignKeyConstraintsEnabled(enable);
+    }
+
+    @Override
+    public boolean enableWriteAheadLogging() {
+        return mDelegate.enableWriteAheadLogging();
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public void disableWriteAheadLogging() {
+        mDelegate.disableWriteAheadLogging();
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public boolean isWriteAheadLoggingEnabled() {
+        return mDelegate.isWriteAheadLoggingEnabled();
+    }
+
+    @Override
+    public List<Pair<String, String>> getAttachedDbs() {
+        return mDelegate.getAttachedDbs();
+    }
+
+    @Override
+    public boolean isDatabaseIntegrityOk() {
+        return mDelegate.isDatabaseIntegrityOk();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mDelegate.close();
+    }
+
+    /**
+     * Records the query the first time its cursor executes it, with the number of rows of the
+     * result. A cursor closed without being read only records the time to prepare the query.
+     */
+    private class InstrumentedCursor extends CursorWrapper {
+
+        private final String mSql;
+        private final long mStartNanos;
+        private final long mPreparedNanos;
+        private boolean mRecorded;
+
+        InstrumentedCursor(Cursor cursor, String sql, long startNanos) {
+            super(cursor);
+            mSql = sql;
+            mStartNanos = startNanos;
+            mPreparedNanos = System.nanoTime();
+        }
+
+        /**
+         * Records the query after the first call that ran it. The wrapped cursor has counted
+         * every row by then, so getCount() doesn't run the query again.
+         */
+        private void recordExecution() {
+            if (!mRecorded) {
+                mRecorded = true;
+                mMetrics.record(mSql, System.nanoTime() - mStartNanos, super.getCount(),
+                        isMainThread());
+            }
+        }
+
+        @Override
+        public int getCount() {
+            int count = super.getCount();
+            recordExecution();
+            return count;
+        }
+
+        @Override
+        public boolean move(int offset) {
+            boolean moved = super.move(offset);
+            recordExecution();
+            return moved;
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            boolean moved = super.moveToPosition(position);
+            recordExecution();
+            return moved;
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            boolean moved = super.moveToFirst();
+            recordExecution();
+            return moved;
+        }
+
+        @Override
+        public boolean moveToLast() {
+            boolean moved = super.moveToLast();
+            recordExecution();
+            return moved;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            boolean moved = super.moveToNext();
+            recordExecution();
+            return moved;
+        }
+
+        @Override
+        public boolean moveToPrevious() {
+            boolean moved = super.moveToPrevious();
+            recordExecution();
+            return moved;
+        }
+
+        @Override
+        public void close() {
+            if (!mRecorded) {
+                mRecorded = true;
+                mMetrics.record(mSql, mPreparedNanos - mStartNanos, 0, isMainThread());
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+/**
+ * {@link SupportSQLiteOpenHelper.Factory} wrapping the databases of another factory, so every
+ * statement Room runs is recorded in {@link QueryMetrics}.
+ */
+public class InstrumentedOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+
+    private final SupportSQLiteOpenHelper.Factory mDelegate;
+    private final QueryMetrics mMetrics;
+
+    public InstrumentedOpenHelperFactory(SupportSQLiteOpenHelper.Factory delegate,
+                                         QueryMetrics metrics) {
+        mDelegate = delegate;
+        mMetrics = metrics;
+    }
+
+    @Override
+    public SupportSQLiteOpenHelper create(SupportSQLiteOpenHelper.Configuration configuration) {
+        return new InstrumentedOpenHelper(mDelegate.create(configuration), mMetrics);
+    }
+
+    private static class InstrumentedOpenHelper implements SupportSQLiteOpenHelper {
+
+        private final SupportSQLiteOpenHelper mDelegate;
+        private final QueryMetrics mMetrics;
+
+        /** Wrapper of the last database returned by the delegate, reused between calls */
+        private volatile InstrumentedDatabase mDatabase;
+
+        InstrumentedOpenHelper(SupportSQLiteOpenHelper delegate, QueryMetrics metrics) {
+            mDelegate = delegate;
+            mMetrics = metrics;
+        }
+
+        @Override
+        public String getDatabaseName() {
+            return mDelegate.getDatabaseName();
+        }
+
+        @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+        @Override
+        public void setWriteAheadLoggingEnabled(boolean enabled) {
+            mDelegate.setWriteAheadLoggingEnabled(enabled);
+        }
+
+        @Override
+        public SupportSQLiteDatabase getWritableDatabase() {
+            return wrap(mDelegate.getWritableDatabase());
+        }
+
+        @Override
+        public SupportSQLiteDatabase getReadableDatabase() {
+            return wrap(mDelegate.getReadableDatabase());
+        }
+
+        private SupportSQLiteDatabase wrap(SupportSQLiteDatabase database) {
+            InstrumentedDatabase wrapper = mDatabase;
+            if (wrapper == null || !wrapper.wraps(database)) {
+                wrapper = new InstrumentedDatabase(database, mMetrics);
+                mDatabase = wrapper;
+            }
+            return wrapper;
+        }
+
+        @Override
+        public void close() {
+            mDelegate.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.os.Looper;
+
+import java.io.IOException;
+
+/**
+ * {@link SupportSQLiteStatement} recording the latency and affected rows of every execution.
+ */
+class InstrumentedStatement implements SupportSQLiteStatement {
+
+    private final SupportSQLiteStatement mDelegate;
+    private final String mSql;
+    private final QueryMetrics mMetrics;
+
+    InstrumentedStatement(SupportSQLiteStatement delegate, String sql, QueryMetrics metrics) {
+        mDelegate = delegate;
+        mSql = sql;
+        mMetrics = metrics;
+    }
+
+    private void record(long startNanos, long rows) {
+        mMetrics.record(mSql, System.nanoTime() - startNanos, rows,
+                Looper.myLooper() == Looper.getMainLooper());
+    }
+
+    @Override
+    public void execute() {
+        long start = System.nanoTime();
+        mDelegate.execute();
+        record(start, 0);
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        long start = System.nanoTime();
+        int rows = mDelegate.executeUpdateDelete();
+        record(start, rows);
+        return rows;
+    }
+
+    @Override
+    public long executeInsert() {
+        long start = System.nanoTime();
+        long id = mDelegate.executeInsert();
+        record(start, id == -1 ? 0 : 1);
+        return id;
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        long start = System.nanoTime();
+        long value = mDelegate.simpleQueryForLong();
+        record(start, 1);
+        return value;
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        long start = System.nanoTime();
+        String value = mDelegate.simpleQueryForString();
+        record(start, 1);
+        return value;
+    }
+
+    @Override
+    public void bindNull(int index) {
+        mDelegate.bindNull(index);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        mDelegate.bindLong(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        mDelegate.bindDouble(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        mDelegate.bindString(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        mDelegate.bindBlob(index, value);
+    }
+
+    @Override
+    public void clearBindings() {
+        mDelegate.clearBindings();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mDelegate.close();
+    }
+}
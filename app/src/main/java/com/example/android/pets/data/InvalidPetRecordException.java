@@ -0,0 +1,11 @@
+package com.example.android.pets.data;
+
+/**
+ * Thrown when a roster record can't be turned into a valid {@link PetEntry}.
+ */
+public class InvalidPetRecordException extends Exception {
+
+    public InvalidPetRecordException(String message) {
+        super(message);
+    }
+}
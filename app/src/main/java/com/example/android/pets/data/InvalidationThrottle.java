@@ -0,0 +1,84 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.InvalidationTracker;
+import android.support.annotation.NonNull;
+
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Observes tables of a database and runs a callback at most once per window, however many
+ * transactions change them in the meantime. The first change after a quiet period schedules the
+ * callback one window later; changes until then are absorbed by it. A bulk import committing
+ * hundreds of transactions thus costs one reload of the observers' query per window instead of
+ * one per commit, while changes keep showing up at a steady pace during the import.
+ */
+public class InvalidationThrottle {
+
+    /** Default time between two callbacks */
+    public static final long DEFAULT_WINDOW_MILLIS = 250;
+
+    /** Runs the delayed callbacks of every throttle */
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor();
+
+    private final InvalidationTracker mTracker;
+    private final long mWindowMillis;
+    private final Runnable mCallback;
+    private final InvalidationTracker.Observer mObserver;
+
+    /** Whether a callback is scheduled and absorbs new changes */
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    private final Runnable mScheduledCallback = new Runnable() {
+        @Override
+        public void run() {
+            // Changes from now on schedule the next callback, which sees them.
+            mScheduled.set(false);
+            mCallback.run();
+        }
+    };
+
+    /**
+     * @param windowMillis minimum time between two callbacks, 0 to run the callback on every
+     *                     change
+     * @param callback     run on a background thread once the tables changed
+     */
+    public InvalidationThrottle(PetsDatabase db, long windowMillis, Runnable callback,
+                                String... tables) {
+        mTracker = db.getInvalidationTracker();
+        mWindowMillis = windowMillis;
+        mCallback = callback;
+        mObserver = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                onTablesChanged();
+            }
+        };
+    }
+
+    /**
+     * Starts observing the tables.
+     */
+    public void start() {
+        mTracker.addObserver(mObserver);
+    }
+
+    /**
+     * Stops observing the tables. A callback already scheduled still runs.
+     */
+    public void stop() {
+        mTracker.removeObserver(mObserver);
+    }
+
+    private void onTablesChanged() {
+        if (mWindowMillis <= 0) {
+            mCallback.run();
+        } else if (mScheduled.compareAndSet(false, true)) {
+            SCHEDULER.schedule(mScheduledCallback, mWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
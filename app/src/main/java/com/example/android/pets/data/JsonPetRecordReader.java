@@ -0,0 +1,77 @@
+package com.example.android.pets.data;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link PetRecordReader} for JSON rosters, which are a top level array of flat objects such as
+ * {@code [{"name": "Toto", "breed": "Terrier", "gender": "male", "weight": 7}]}.
+ * The array is pulled element by element with a {@link JsonReader}, so it is never held in memory.
+ * Nested objects and arrays inside a record are skipped. A roster of another shape, such as a
+ * top level object or array elements that aren't objects, is reported as an {@link IOException}.
+ */
+public class JsonPetRecordReader implements PetRecordReader {
+
+    private final JsonReader mReader;
+    private boolean mStarted;
+
+    public JsonPetRecordReader(Reader reader) {
+        mReader = new JsonReader(reader);
+    }
+
+    @Override
+    public Map<String, String> readRecord() throws IOException {
+        try {
+            return readNextRecord();
+        } catch (IllegalStateException | NumberFormatException e) {
+            // JsonReader reports an unexpected token as an IllegalStateException.
+            throw new IOException("Roster is not an array of objects: " + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, String> readNextRecord() throws IOException {
+        if (!mStarted) {
+            mReader.beginArray();
+            mStarted = true;
+        }
+        if (!mReader.hasNext()) {
+            return null;
+        }
+
+        Map<String, String> record = new HashMap<>();
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName().toLowerCase(Locale.US);
+            JsonToken token = mReader.peek();
+            switch (token) {
+                case NULL:
+                    mReader.nextNull();
+                    break;
+                case BOOLEAN:
+                    record.put(name, Boolean.toString(mReader.nextBoolean()));
+                    break;
+                case STRING:
+                case NUMBER:
+                    // Numbers are read as their literal text and validated by PetRecordMapper.
+                    record.put(name, mReader.nextString());
+                    break;
+                default:
+                    mReader.skipValue();
+                    break;
+            }
+        }
+        mReader.endObject();
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+
+/**
+ * Triggers and tables of earlier schema versions, as the migrations that added them created
+ * them. {@link PetSearch} and {@link PetStats} describe the current schema, so a migration to
+ * an earlier version can't call them: the pet table only has a breed_id column from version 5.
+ */
+final class LegacySchema {
+
+    /** Key of a pet in the breed statistics of versions 4 and earlier */
+    private static final String BREED_KEY = "IFNULL(%1$s.breed, '')";
+
+    private LegacySchema() {
+    }
+
+    /**
+     * Creates and fills the version 2 search index, over the name and breed text of every pet.
+     */
+    static void createSearchIndexV2(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + PetSearch.FTS_TABLE_NAME
+                + " USING fts4(content=\"pet\", name, breed)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_fts_before_update BEFORE UPDATE ON pet BEGIN "
+                + "DELETE FROM " + PetSearch.FTS_TABLE_NAME + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_fts_before_delete BEFORE DELETE ON pet BEGIN "
+                + "DELETE FROM " + PetSearch.FTS_TABLE_NAME + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_fts_after_update AFTER UPDATE ON pet BEGIN "
+                + "INSERT INTO " + PetSearch.FTS_TABLE_NAME + "(docid, name, breed) "
+                + "VALUES (new.id, new.name, new.breed); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_fts_after_insert AFTER INSERT ON pet BEGIN "
+                + "INSERT INTO " + PetSearch.FTS_TABLE_NAME + "(docid, name, breed) "
+                + "VALUES (new.id, new.name, new.breed); END");
+        db.execSQL("INSERT INTO " + PetSearch.FTS_TABLE_NAME + "(" + PetSearch.FTS_TABLE_NAME
+                + ") VALUES ('rebuild')");
+    }
+
+    /**
+     * Creates the version 4 triggers maintaining the statistics summary tables, keyed by breed
+     * text, and fills the tables from the pet table.
+     */
+    static void createStatsTriggersV4(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_stats_after_insert AFTER INSERT ON pet BEGIN "
+                + add("new") + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_stats_after_delete AFTER DELETE ON pet BEGIN "
+                + remove("old") + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_stats_after_update "
+                + "AFTER UPDATE OF gender, breed, weight ON pet BEGIN "
+                + remove("old") + add("new") + "END");
+
+        db.execSQL("DELETE FROM " + PetGenderStats.TABLE_NAME);
+        db.execSQL("INSERT INTO " + PetGenderStats.TABLE_NAME + " (gender, pet_count) "
+                + "SELECT gender, COUNT(*) FROM pet GROUP BY gender");
+        db.execSQL("DELETE FROM " + PetBreedStats.TABLE_NAME);
+        db.execSQL("INSERT INTO " + PetBreedStats.TABLE_NAME
+                + " (breed, pet_count, total_weight, min_weight, max_weight) "
+                + "SELECT IFNULL(breed, ''), COUNT(*), SUM(weight), MIN(weight), MAX(weight) "
+                + "FROM pet GROUP BY IFNULL(breed, '')");
+    }
+
+    private static String add(String row) {
+        String breed = String.format(BREED_KEY, row);
+        return "INSERT OR IGNORE INTO " + PetGenderStats.TABLE_NAME + " (gender, pet_count) "
+                + "VALUES (" + row + ".gender, 0); "
+                + "UPDATE " + PetGenderStats.TABLE_NAME + " SET pet_count = pet_count + 1 "
+                + "WHERE gender = " + row + ".gender; "
+                + "INSERT OR IGNORE INTO " + PetBreedStats.TABLE_NAME
+                + " (breed, pet_count, total_weight, min_weight, max_weight) "
+                + "VALUES (" + breed + ", 0, 0, " + row + ".weight, " + row + ".weight); "
+                + "UPDATE " + PetBreedStats.TABLE_NAME + " SET pet_count = pet_count + 1, "
+                + "total_weight = total_weight + " + row + ".weight, "
+                + "min_weight = MIN(min_weight, " + row + ".weight), "
+                + "max_weight = MAX(max_weight, " + row + ".weight) "
+                + "WHERE breed = " + breed + "; ";
+    }
+
+    private static String remove(String row) {
+        String breed = String.format(BREED_KEY, row);
+        String breedPets = "FROM pet WHERE pet.breed = " + breed
+                + " OR (" + breed + " = '' AND pet.breed IS NULL)";
+        return "UPDATE " + PetGenderStats.TABLE_NAME + " SET pet_count = pet_count - 1 "
+                + "WHERE gender = " + row + ".gender; "
+                + "DELETE FROM " + PetGenderStats.TABLE_NAME
+                + " WHERE gender = " + row + ".gender AND pet_count = 0; "
+                + "UPDATE " + PetBreedStats.TABLE_NAME + " SET pet_count = pet_count - 1, "
+                + "total_weight = total_weight - " + row + ".weight "
+                + "WHERE breed = " + breed + "; "
+                + "DELETE FROM " + PetBreedStats.TABLE_NAME
+                + " WHERE breed = " + breed + " AND pet_count = 0; "
+                + "UPDATE " + PetBreedStats.TABLE_NAME + " SET "
+                + "min_weight = (SELECT MIN(weight) " + breedPets + "), "
+                + "max_weight = (SELECT MAX(weight) " + breedPets + ") "
+                + "WHERE breed = " + breed + " AND (" + row + ".weight <= min_weight OR "
+                + row + ".weight >= max_weight); ";
+    }
+}
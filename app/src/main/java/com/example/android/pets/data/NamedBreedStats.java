@@ -0,0 +1,32 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.Embedded;
+
+/**
+ * The statistics of a breed joined with the name of the breed.
+ */
+public class NamedBreedStats {
+
+    @Embedded
+    private PetBreedStats stats;
+    private String breed;
+
+    public PetBreedStats getStats() {
+        return stats;
+    }
+
+    public void setStats(PetBreedStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @return the name of the breed, or null for pets without a breed
+     */
+    public String getBreed() {
+        return breed;
+    }
+
+    public void setBreed(String breed) {
+        this.breed = breed;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android.pets.data;
+
+import android.support.annotation.WorkerThread;
+
+import java.util.List;
+
+/**
+ * Writes many pets at once. The input is split into chunks of at most {@link #MAX_CHUNK_SIZE}
+ * rows and every chunk runs in a single transaction, so a batch pays for one journal commit per
+ * chunk instead of one per row, while a huge batch still can't hold the write lock indefinitely.
+ *
+ * All methods block and must be called off the main thread.
+ */
+public class PetBatchWriter {
+
+    /** Default upper bound for the number of rows written per transaction */
+    public static final int MAX_CHUNK_SIZE = 500;
+
+    private final PetsDatabase mDb;
+    private final PetDao mPetDao;
+    private final PetCache mCache;
+    private final int mChunkSize;
+
+    public PetBatchWriter(PetsDatabase db) {
+        this(db, MAX_CHUNK_SIZE);
+    }
+
+    public PetBatchWriter(PetsDatabase db, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        mDb = db;
+        mCache = db.getPetCache();
+        mPetDao = db.petDao();
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * Inserts the given pets. Their breed names are first resolved to breed ids, adding new
+     * breeds to the breed table.
+     *
+     * @return the generated id of each pet, in input order, or -1 for a row that was not inserted
+     */
+    @WorkerThread
+    public long[] insertPets(final List<PetEntry> petEntries) {
+        mDb.getBreedDictionary().resolve(petEntries);
+        final long[] ids = new long[petEntries.size()];
+        for (int start = 0; start < petEntries.size(); start += mChunkSize) {
+            final int from = start;
+            final int to = Math.min(start + mChunkSize, petEntries.size());
+            mDb.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    long[] chunkIds = mPetDao.insertPets(petEntries.subList(from, to));
+                    System.arraycopy(chunkIds, 0, ids, from, chunkIds.length);
+                }
+            });
+        }
+        return ids;
+    }
+
+    /**
+     * Updates the given pets, matched by id, whatever version they have. Their breed names are
+     * first resolved to breed ids, adding new breeds to the breed table.
+     *
+     * @return the number of rows updated for each pet, in input order
+     */
+    @WorkerThread
+    public int[] updatePets(final List<PetEntry> petEntries) {
+        mDb.getBreedDictionary().resolve(petEntries);
+        final int[] counts = new int[petEntries.size()];
+        for (int start = 0; start < petEntries.size(); start += mChunkSize) {
+            final int from = start;
+            final int to = Math.min(start + mChunkSize, petEntries.size());
+            mDb.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = from; i < to; i++) {
+                        PetEntry pet = petEntries.get(i);
+                        counts[i] = mPetDao.updatePet(pet.getId(), pet.getName(),
+                                pet.getBreedId(), pet.getGender(), pet.getWeight());
+                    }
+                }
+            });
+            // Once committed, so a concurrent load can't cache the rows read before the commit.
+            for (int i = from; i < to; i++) {
+                mCache.remove(petEntries.get(i).getId());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Deletes the pets with the given ids.
+     *
+     * @return the number of rows deleted for each id, in input order
+     */
+    @WorkerThread
+    public int[] deletePets(final List<Integer> ids) {
+        final int[] counts = new int[ids.size()];
+        for (int start = 0; start < ids.size(); start += mChunkSize) {
+            final int from = start;
+            final int to = Math.min(start + mChunkSize, ids.size());
+            mDb.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = from; i < to; i++) {
+                        counts[i] = mPetDao.deletePet(ids.get(i));
+                    }
+                }
+            });
+            // Once committed, as in updatePets.
+            for (int i = from; i < to; i++) {
+                mCache.remove(ids.get(i));
+            }
+        }
+        return counts;
+    }
+}
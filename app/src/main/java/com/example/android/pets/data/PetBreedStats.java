@@ -0,0 +1,84 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+
+/**
+ * Number of pets and weight range of one breed, kept up to date by the triggers created in
+ * {@link PetStats}. Pets without a breed are counted under breed id 0.
+ */
+@Entity(tableName = PetBreedStats.TABLE_NAME)
+public class PetBreedStats {
+
+    /** Name of the database table for the breed statistics. */
+    public static final String TABLE_NAME = "pet_breed_stats";
+
+    @PrimaryKey
+    @ColumnInfo(name = "breed_id")
+    private int breedId;
+    @ColumnInfo(name = "pet_count")
+    private int petCount;
+    @ColumnInfo(name = "total_weight")
+    private long totalWeight;
+    @ColumnInfo(name = "min_weight")
+    private int minWeight;
+    @ColumnInfo(name = "max_weight")
+    private int maxWeight;
+
+    public PetBreedStats(int breedId, int petCount, long totalWeight, int minWeight,
+                         int maxWeight) {
+        this.breedId = breedId;
+        this.petCount = petCount;
+        this.totalWeight = totalWeight;
+        this.minWeight = minWeight;
+        this.maxWeight = maxWeight;
+    }
+
+    public int getBreedId() {
+        return breedId;
+    }
+
+    public int getPetCount() {
+        return petCount;
+    }
+
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    public int getMinWeight() {
+        return minWeight;
+    }
+
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    public double getAverageWeight() {
+        return petCount == 0 ? 0 : (double) totalWeight / petCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PetBreedStats)) {
+            return false;
+        }
+        PetBreedStats other = (PetBreedStats) o;
+        return breedId == other.breedId && petCount == other.petCount
+                && totalWeight == other.totalWeight && minWeight == other.minWeight
+                && maxWeight == other.maxWeight;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = breedId;
+        result = 31 * result + petCount;
+        result = 31 * result + (int) (totalWeight ^ (totalWeight >>> 32));
+        result = 31 * result + minWeight;
+        return 31 * result + maxWeight;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.android.pets.data;
+
+import android.util.LruCache;
+
+/**
+ * LRU cache of the {@link PetEntry} objects of one database by id, bounded by the approximate
+ * number of bytes the cached entries use; see {@link PetsDatabase#getPetCache()}. It is filled
+ * when a pet is loaded or written, and entries are replaced or dropped by every write going
+ * through {@link PetRepository}, {@link PetBatchWriter}, {@link PetSyncEngine} or
+ * {@link PetPurger}, once the write committed.
+ *
+ * Catalog pages don't fill it: they only read the {@link PetSummary} columns, while an entry
+ * needs the gender, weight and version the editor compares edits to.
+ *
+ * Entries are copied on the way in and out, so a caller changing a pet it got from the cache or
+ * put into it doesn't change what other callers read.
+ */
+public class PetCache {
+
+    /** Default upper bound for the size of the cached entries, in bytes */
+    static final int DEFAULT_MAX_SIZE_BYTES = 256 * 1024;
+
+    /** Rough size of a PetEntry object without its strings, in bytes */
+    private static final int ENTRY_OVERHEAD_BYTES = 48;
+
+    /** Rough size of a String object without its characters, in bytes */
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final LruCache<Integer, PetEntry> mCache;
+
+    PetCache(int maxSizeBytes) {
+        mCache = new LruCache<Integer, PetEntry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(Integer id, PetEntry pet) {
+                return estimateSize(pet);
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the cached pet, or null if it is not in the cache
+     */
+    public PetEntry get(int id) {
+        PetEntry pet = mCache.get(id);
+        return pet != null ? pet.copy() : null;
+    }
+
+    void put(PetEntry pet) {
+        if (pet != null) {
+            mCache.put(pet.getId(), pet.copy());
+        }
+    }
+
+    void remove(int id) {
+        mCache.remove(id);
+    }
+
+    void clear() {
+        mCache.evictAll();
+    }
+
+    public int hitCount() {
+        return mCache.hitCount();
+    }
+
+    public int missCount() {
+        return mCache.missCount();
+    }
+
+    public int evictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * @return the approximate number of bytes used by the cached entries
+     */
+    public int size() {
+        return mCache.size();
+    }
+
+    @Override
+    public String toString() {
+        return "PetCache[size=" + mCache.size() + "/" + mCache.maxSize()
+                + " bytes, hits=" + hitCount() + ", misses=" + missCount()
+                + ", evictions=" + evictionCount() + "]";
+    }
+
+    private static int estimateSize(PetEntry pet) {
+        return ENTRY_OVERHEAD_BYTES + estimateSize(pet.getName()) + estimateSize(pet.getBreed())
+                + estimateSize(pet.getPhotoPath());
+    }
+
+    private static int estimateSize(String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + 2 * value.length();
+    }
+}
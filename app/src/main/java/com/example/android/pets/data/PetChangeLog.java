@@ -0,0 +1,120 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+
+/**
+ * Change log (outbox) of the pet table, read by {@link PetSyncEngine}. Triggers on the pet
+ * table record every insert, update and delete with a monotonically increasing sequence number,
+ * in the same transaction as the change itself, so no change can be missed by the next sync.
+ * Only the id of the pet is recorded; its values are read from the pet table when the change
+ * is uploaded, so several changes of one pet are sent as one.
+ *
+ * The sync state, such as the last sequence acknowledged by the server, is kept in a small
+ * key/value table next to the log, so it is updated atomically with the rows it describes.
+ * Room 1.1 doesn't manage either table; they are created here, from the database callback and
+ * migrations.
+ */
+public final class PetChangeLog {
+
+    /** Name of the change log table */
+    static final String TABLE_NAME = "pet_change_log";
+
+    /** Name of the sync state table */
+    static final String STATE_TABLE_NAME = "pet_sync_state";
+
+    /** Operations recorded in the log */
+    static final int OP_INSERT = 1;
+    static final int OP_UPDATE = 2;
+    static final int OP_DELETE = 3;
+
+    /** Last local sequence number acknowledged by the server */
+    static final String KEY_UPLOADED_SEQ = "uploaded_seq";
+
+    /** Last server sequence number applied locally */
+    static final String KEY_DOWNLOADED_SEQ = "downloaded_seq";
+
+    /**
+     * Set while changes downloaded from the server are applied, so they aren't recorded and
+     * sent back. The row only exists inside the applying transaction, so other connections
+     * never see it.
+     */
+    private static final String KEY_APPLYING_REMOTE = "applying_remote";
+
+    /** Condition of the triggers, false while remote changes are applied */
+    private static final String NOT_APPLYING_REMOTE = "NOT EXISTS (SELECT 1 FROM "
+            + STATE_TABLE_NAME + " WHERE name = '" + KEY_APPLYING_REMOTE + "')";
+
+    private PetChangeLog() {
+    }
+
+    /**
+     * Creates the tables and triggers if they don't exist yet.
+     */
+    static void create(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+                + " (seq INTEGER PRIMARY KEY AUTOINCREMENT, pet_id INTEGER NOT NULL, "
+                + "op INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS index_" + TABLE_NAME + "_pet_id_seq ON "
+                + TABLE_NAME + " (pet_id, seq)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + STATE_TABLE_NAME
+                + " (name TEXT NOT NULL PRIMARY KEY, value INTEGER NOT NULL)");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_change_log_after_insert "
+                + "AFTER INSERT ON pet WHEN " + NOT_APPLYING_REMOTE + " BEGIN "
+                + record("new", OP_INSERT) + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_change_log_after_update "
+                + "AFTER UPDATE ON pet WHEN " + NOT_APPLYING_REMOTE + " BEGIN "
+                + record("new", OP_UPDATE) + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_change_log_after_delete "
+                + "AFTER DELETE ON pet WHEN " + NOT_APPLYING_REMOTE + " BEGIN "
+                + record("old", OP_DELETE) + "END");
+    }
+
+    /**
+     * Records every pet as inserted, so the next sync uploads the whole table. Used when the
+     * log is added to existing data.
+     */
+    static void recordAll(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + TABLE_NAME + " (pet_id, op) "
+                + "SELECT id, " + OP_INSERT + " FROM pet ORDER BY id");
+    }
+
+    /**
+     * Stops recording changes until {@link #endApplyingRemote}. Must be called inside a
+     * transaction.
+     */
+    static void beginApplyingRemote(SupportSQLiteDatabase db) {
+        setState(db, KEY_APPLYING_REMOTE, 1);
+    }
+
+    static void endApplyingRemote(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + STATE_TABLE_NAME + " WHERE name = ?",
+                new Object[]{KEY_APPLYING_REMOTE});
+    }
+
+    /**
+     * @return the value stored for the given key, or 0 if there is none
+     */
+    static long getState(SupportSQLiteDatabase db, String key) {
+        Cursor cursor = db.query("SELECT value FROM " + STATE_TABLE_NAME + " WHERE name = ?",
+                new Object[]{key});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    static void setState(SupportSQLiteDatabase db, String key, long value) {
+        db.execSQL("INSERT OR REPLACE INTO " + STATE_TABLE_NAME + " (name, value) VALUES (?, ?)",
+                new Object[]{key, value});
+    }
+
+    /**
+     * Trigger statement appending the given row to the log.
+     */
+    private static String record(String row, int op) {
+        return "INSERT INTO " + TABLE_NAME + " (pet_id, op) VALUES (" + row + ".id, " + op + "); ";
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
+import android.text.TextUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fields of a pet that were modified, used to update only the columns that changed.
+ * Changes computed with {@link #diff} are only written if the pet still has the version it was
+ * read with.
+ */
+public class PetChanges {
+
+    /** Expected version of changes written whatever version the pet has */
+    public static final int ANY_VERSION = -1;
+
+    private static final int NAME = 1;
+    private static final int BREED = 1 << 1;
+    private static final int GENDER = 1 << 2;
+    private static final int WEIGHT = 1 << 3;
+    private static final int PHOTO = 1 << 4;
+
+    private final int petId;
+    private int expectedVersion = ANY_VERSION;
+
+    /** Which fields were changed, as a combination of the flags above */
+    private int changedFields;
+    private String name;
+    private String breed;
+    private Integer breedId;
+    private int gender;
+    private int weight;
+    private String photoPath;
+
+    public PetChanges(int petId) {
+        this.petId = petId;
+    }
+
+    /**
+     * Compares the fields of two versions of a pet.
+     *
+     * @param before the pet as it was loaded
+     * @param after the pet as edited
+     * @return the fields that differ, set to their value in after, expecting the version of
+     * before
+     */
+    public static PetChanges diff(PetEntry before, PetEntry after) {
+        PetChanges changes = new PetChanges(before.getId());
+        changes.setExpectedVersion(before.getVersion());
+        if (!TextUtils.equals(before.getName(), after.getName())) {
+            changes.setName(after.getName());
+        }
+        if (!TextUtils.equals(BreedDictionary.normalize(before.getBreed()),
+                BreedDictionary.normalize(after.getBreed()))) {
+            changes.setBreed(after.getBreed());
+        }
+        if (before.getGender() != after.getGender()) {
+            changes.setGender(after.getGender());
+        }
+        if (before.getWeight() != after.getWeight()) {
+            changes.setWeight(after.getWeight());
+        }
+        if (!TextUtils.equals(before.getPhotoPath(), after.getPhotoPath())) {
+            changes.setPhotoPath(after.getPhotoPath());
+        }
+        return changes;
+    }
+
+    public int getPetId() {
+        return petId;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * Only writes the changes if the pet has the given version, or whatever its version is
+     * for {@link #ANY_VERSION}.
+     */
+    public void setExpectedVersion(int expectedVersion) {
+        this.expectedVersion = expectedVersion;
+    }
+
+    /**
+     * @return true if no field was changed
+     */
+    public boolean isEmpty() {
+        return changedFields == 0;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        changedFields |= NAME;
+    }
+
+    public void setBreed(String breed) {
+        this.breed = breed;
+        breedId = null;
+        changedFields |= BREED;
+    }
+
+    public void setGender(int gender) {
+        this.gender = gender;
+        changedFields |= GENDER;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+        changedFields |= WEIGHT;
+    }
+
+    public void setPhotoPath(String photoPath) {
+        this.photoPath = photoPath;
+        changedFields |= PHOTO;
+    }
+
+    /**
+     * Adds the changes made after these ones, which win for the fields changed by both.
+     * The expected version stays the one of these changes, which are written first.
+     */
+    void merge(PetChanges newer) {
+        if ((newer.changedFields & NAME) != 0) {
+            setName(newer.name);
+        }
+        if ((newer.changedFields & BREED) != 0) {
+            setBreed(newer.breed);
+        }
+        if ((newer.changedFields & GENDER) != 0) {
+            setGender(newer.gender);
+        }
+        if ((newer.changedFields & WEIGHT) != 0) {
+            setWeight(newer.weight);
+        }
+        if ((newer.changedFields & PHOTO) != 0) {
+            setPhotoPath(newer.photoPath);
+        }
+    }
+
+    /**
+     * Sets the changed fields on the given pet.
+     */
+    void applyTo(PetEntry pet) {
+        if ((changedFields & NAME) != 0) {
+            pet.setName(name);
+        }
+        if ((changedFields & BREED) != 0) {
+            pet.setBreed(breed);
+            pet.setBreedId(breedId);
+        }
+        if ((changedFields & GENDER) != 0) {
+            pet.setGender(gender);
+        }
+        if ((changedFields & WEIGHT) != 0) {
+            pet.setWeight(weight);
+        }
+        if ((changedFields & PHOTO) != 0) {
+            pet.setPhotoPath(photoPath);
+        }
+    }
+
+    /**
+     * Resolves the changed breed name, if any, to a breed id.
+     */
+    void resolveBreed(BreedDictionary breeds) {
+        if ((changedFields & BREED) != 0) {
+            breedId = breeds.getOrCreateId(breed);
+        }
+    }
+
+    /**
+     * Writes the changed columns and increments the version of the pet, once
+     * {@link #resolveBreed} has been called.
+     *
+     * @return 1 if the pet was updated, 0 if it was deleted or doesn't have the expected version
+     */
+    int update(SupportSQLiteDatabase db) {
+        StringBuilder sql = new StringBuilder("UPDATE " + PetEntry.TABLE_NAME + " SET ");
+        List<Object> args = new ArrayList<>(7);
+        if ((changedFields & NAME) != 0) {
+            sql.append("name = ?, ");
+            args.add(name);
+        }
+        if ((changedFields & BREED) != 0) {
+            sql.append("breed_id = ?, ");
+            args.add(breedId);
+        }
+        if ((changedFields & GENDER) != 0) {
+            sql.append("gender = ?, ");
+            args.add(gender);
+        }
+        if ((changedFields & WEIGHT) != 0) {
+            sql.append("weight = ?, ");
+            args.add(weight);
+        }
+        if ((changedFields & PHOTO) != 0) {
+            sql.append("photo_path = ?, ");
+            args.add(photoPath);
+        }
+        sql.append("version = version + 1 WHERE id = ?");
+        args.add(petId);
+        if (expectedVersion != ANY_VERSION) {
+            sql.append(" AND version = ?");
+            args.add(expectedVersion);
+        }
+
+        SupportSQLiteStatement statement = db.compileStatement(sql.toString());
+        try {
+            SimpleSQLiteQuery.bind(statement, args.toArray());
+            return statement.executeUpdateDelete();
+        } finally {
+            try {
+                statement.close();
+            } catch (IOException e) {
+                // Closing a statement releases memory only and can't fail.
+            }
+        }
+    }
+}
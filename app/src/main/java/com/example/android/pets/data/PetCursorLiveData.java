@@ -0,0 +1,197 @@
+package com.example.android.pets.data;
+
+import android.arch.lifecycle.LiveData;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.CursorWrapper;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds a {@link Cursor} over the pets matching a {@link PetFilter}, with the columns of a
+ * {@link PetSummary}, for the cursor-backed catalog adapter. Rows stay in the cursor's window
+ * and are never turned into objects.
+ *
+ * A cursor only holds one window of rows, and moving past it refills the window from the
+ * query on the thread reading the cursor, which is the main thread for the adapter. So the
+ * window is filled on a background thread, and on Android 9 and later, when the rows don't fit
+ * the default window, the query is read again into a window large enough for all of them, up
+ * to {@link #MAX_WINDOW_BYTES}. Larger results, and results larger than the default window on
+ * older releases, still refill the window on the main thread while scrolling past it; the
+ * paged catalog adapter has no such limit.
+ *
+ * A query that fails is logged and keeps the previous cursor; the next change of the filter or
+ * of the tables tries again.
+ *
+ * The cursor is reloaded when the filter changes, and through an {@link InvalidationThrottle}
+ * when pets or breeds change. Each cursor is closed once observers received the next one, and
+ * the last one by {@link #close()}, so observers must not close them.
+ */
+public class PetCursorLiveData extends LiveData<Cursor> {
+
+    private static final String LOG_TAG = PetCursorLiveData.class.getSimpleName();
+
+    /** Size of the window of a cursor unless it is given another one, on most devices */
+    private static final int DEFAULT_WINDOW_BYTES = 2 * 1024 * 1024;
+
+    /** Largest window allocated to hold every row of a query */
+    static final int MAX_WINDOW_BYTES = 16 * 1024 * 1024;
+
+    /** Runs the queries of every instance, so reloads never run concurrently */
+    private static final ExecutorService QUERY_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final PetsDatabase mDb;
+    private final InvalidationThrottle mThrottle;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile PetFilter mFilter;
+    private boolean mLoaded;
+    private boolean mClosed;
+
+    private final Runnable mLoad = new Runnable() {
+        @Override
+        public void run() {
+            final Cursor cursor;
+            try {
+                cursor = query(mFilter);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Error loading pets", e);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        setFailed();
+                    }
+                });
+                return;
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    setCursor(cursor);
+                }
+            });
+        }
+    };
+
+    /**
+     * Runs the query of the filter, and fills the cursor's window with as many rows as the
+     * window can take here rather than on the main thread.
+     */
+    @WorkerThread
+    private Cursor query(PetFilter filter) {
+        Cursor cursor = mDb.query(filter.buildQuery());
+        try {
+            int count = cursor.getCount();
+            AbstractWindowedCursor windowed = unwrap(cursor);
+            if (windowed != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                CursorWindow window = windowed.getWindow();
+                int rowsInWindow = window != null ? window.getNumRows() : count;
+                if (rowsInWindow > 0 && rowsInWindow < count) {
+                    // Sizes the window from the bytes the rows of the default window took.
+                    long bytes = (long) DEFAULT_WINDOW_BYTES * count / rowsInWindow * 5 / 4;
+                    windowed.setWindow(new CursorWindow(null, Math.min(bytes, MAX_WINDOW_BYTES)));
+                    // The new window is empty, so moving to the first row fills it again.
+                    windowed.moveToFirst();
+                    windowed.moveToPosition(-1);
+                }
+            }
+            return cursor;
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the windowed cursor wrapped by the given cursor, or null if there is none
+     */
+    private static AbstractWindowedCursor unwrap(Cursor cursor) {
+        while (cursor instanceof CursorWrapper) {
+            cursor = ((CursorWrapper) cursor).getWrappedCursor();
+        }
+        return cursor instanceof AbstractWindowedCursor ? (AbstractWindowedCursor) cursor : null;
+    }
+
+    /**
+     * @param invalidationWindowMillis minimum time between two reloads caused by changes of
+     *                                 the tables, see {@link InvalidationThrottle}
+     */
+    public PetCursorLiveData(PetsDatabase db, PetFilter filter, long invalidationWindowMillis) {
+        mDb = db;
+        mFilter = new PetFilter(filter);
+        mThrottle = new InvalidationThrottle(db, invalidationWindowMillis, new Runnable() {
+            @Override
+            public void run() {
+                QUERY_EXECUTOR.execute(mLoad);
+            }
+        }, PetEntry.TABLE_NAME, BreedEntry.TABLE_NAME);
+        mThrottle.start();
+    }
+
+    /**
+     * Reloads the cursor with the pets matching the given filter.
+     */
+    @MainThread
+    public void setFilter(PetFilter filter) {
+        mFilter = new PetFilter(filter);
+        if (mLoaded) {
+            QUERY_EXECUTOR.execute(mLoad);
+        }
+    }
+
+    @Override
+    protected void onActive() {
+        if (!mLoaded) {
+            mLoaded = true;
+            QUERY_EXECUTOR.execute(mLoad);
+        }
+    }
+
+    /**
+     * Stops reloading and closes the current cursor, e.g. once the ViewModel holding this
+     * is cleared.
+     */
+    @MainThread
+    public void close() {
+        mClosed = true;
+        mThrottle.stop();
+        Cursor cursor = getValue();
+        if (cursor != null) {
+            setValue(null);
+            cursor.close();
+        }
+    }
+
+    /**
+     * Keeps the previous cursor after a failed query, or delivers null if there was none yet,
+     * so observers stop waiting for the first one.
+     */
+    @MainThread
+    private void setFailed() {
+        if (!mClosed && getValue() == null) {
+            setValue(null);
+        }
+    }
+
+    @MainThread
+    private void setCursor(Cursor cursor) {
+        if (mClosed) {
+            cursor.close();
+            return;
+        }
+        Cursor previous = getValue();
+        // Active observers switch to the new cursor before the previous one is closed.
+        setValue(cursor);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.example.android.pets.data;
 
 import android.arch.lifecycle.LiveData;
+import android.arch.persistence.db.SupportSQLiteQuery;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Delete;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
-import android.arch.persistence.room.Update;
+import android.arch.persistence.room.RawQuery;
 
 import java.util.List;
 
@@ -16,17 +17,68 @@ public interface PetDao {
     @Insert
     long insertPet(PetEntry petEntry);
 
-    @Update(onConflict = OnConflictStrategy.REPLACE)
-    int updatePet(PetEntry petEntry);
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long[] insertPets(List<PetEntry> petEntries);
+
+    /**
+     * Updates every column of the pet but its photo and increments its version, whatever
+     * version it has.
+     */
+    @Query("UPDATE pet SET name = :name, breed_id = :breedId, gender = :gender, "
+            + "weight = :weight, version = version + 1 WHERE id = :id")
+    int updatePet(int id, String name, Integer breedId, int gender, int weight);
+
+    /**
+     * Updates every column of the pet and increments its version, only if the pet still has
+     * the given version.
+     *
+     * @return 1 if the pet was updated, 0 if it was deleted or changed by another writer
+     */
+    @Query("UPDATE pet SET name = :name, breed_id = :breedId, gender = :gender, "
+            + "weight = :weight, photo_path = :photoPath, version = version + 1 "
+            + "WHERE id = :id AND version = :version")
+    int updatePetIfVersion(int id, int version, String name, Integer breedId, int gender,
+                           int weight, String photoPath);
+
+    @Query("SELECT EXISTS(SELECT 1 FROM pet WHERE id = :id)")
+    boolean petExists(int id);
 
     @Query("DELETE FROM pet WHERE id = :id")
     int deletePet(int id);
 
-    @Query("SELECT * FROM pet")
-    LiveData<List<PetEntry>> loadAllPets();
+    @Query("SELECT pet.*, breed.name AS breed FROM pet LEFT JOIN breed ON breed.id = pet.breed_id")
+    LiveData<List<PetWithBreed>> loadAllPets();
+
+    @Query("SELECT pet.id, pet.name, breed.name AS breed, pet.photo_path FROM pet "
+            + "LEFT JOIN breed ON breed.id = pet.breed_id "
+            + "WHERE pet.id > :afterId ORDER BY pet.id LIMIT :limit")
+    List<PetSummary> loadPetSummariesAfter(int afterId, int limit);
+
+    @Query("SELECT pet.id, pet.name, breed.name AS breed, pet.photo_path FROM pet "
+            + "LEFT JOIN breed ON breed.id = pet.breed_id "
+            + "WHERE pet.id >= :fromId ORDER BY pet.id LIMIT :limit")
+    List<PetSummary> loadPetSummariesFrom(int fromId, int limit);
+
+    @Query("SELECT pet.id, pet.name, breed.name AS breed, pet.photo_path FROM pet "
+            + "LEFT JOIN breed ON breed.id = pet.breed_id "
+            + "WHERE pet.id < :beforeId ORDER BY pet.id DESC LIMIT :limit")
+    List<PetSummary> loadPetSummariesBefore(int beforeId, int limit);
+
+    /**
+     * Runs a query selecting the id, name, breed and photo_path columns of pets, such as the
+     * ones built by {@link PetSearch} and {@link PetFilter}. Changes aren't observed; see
+     * {@link PetQueryDataSource} to page through the results as the tables change.
+     */
+    @RawQuery
+    List<PetSummary> loadPetSummaries(SupportSQLiteQuery query);
+
+    @Query("SELECT pet.*, breed.name AS breed FROM pet "
+            + "LEFT JOIN breed ON breed.id = pet.breed_id WHERE pet.id = :id")
+    LiveData<PetWithBreed> loadPetById(int id);
 
-    @Query("SELECT * FROM pet WHERE id = :id")
-    LiveData<PetEntry> loadPetById(int id);
+    @Query("SELECT pet.*, breed.name AS breed FROM pet "
+            + "LEFT JOIN breed ON breed.id = pet.breed_id WHERE pet.id = :id")
+    PetWithBreed getPetById(int id);
 
     @Query("DELETE FROM pet")
     void deleteAllPets();
@@ -1,19 +1,50 @@
 package com.example.android.pets.data;
 
+import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
 import android.arch.persistence.room.Ignore;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 
-@Entity(tableName = "pet")
+@Entity(tableName = PetEntry.TABLE_NAME,
+        indices = {
+                @Index("name"),
+                @Index("breed_id"),
+                @Index({"breed_id", "weight"}),
+                @Index({"gender", "weight"}),
+                @Index("weight")
+        })
 public class PetEntry {
 
+    /** Name of the database table for pets. */
+    public static final String TABLE_NAME = "pet";
+
     @PrimaryKey(autoGenerate = true)
     private int id;
     private String name;
-    private String breed;
+    @ColumnInfo(name = "breed_id")
+    private Integer breedId;
     private int gender;
     private int weight;
 
+    /**
+     * Incremented by every update of the row. Writers pass the version they read to only
+     * update the pet if nobody else changed it in the meantime.
+     */
+    private int version;
+
+    /** File name of the pet's photo in {@link PetPhotoStore}, or null */
+    @ColumnInfo(name = "photo_path")
+    private String photoPath;
+
+    /**
+     * Name of the breed referenced by breedId. It isn't stored in the pet table: pets loaded
+     * through {@link PetWithBreed} have it set, and {@link BreedDictionary} resolves it to an
+     * id before the pet is written.
+     */
+    @Ignore
+    private String breed;
+
     /**
      * Possible values for the gender of the pet.
      */
@@ -24,6 +55,15 @@ public class PetEntry {
     @Ignore
     public static final int GENDER_FEMALE = 2;
 
+    public PetEntry(int id, String name, Integer breedId, int gender, int weight) {
+        this.id = id;
+        this.name = name;
+        this.breedId = breedId;
+        this.gender = gender;
+        this.weight = weight;
+    }
+
+    @Ignore
     public PetEntry(int id, String name, String breed, int gender, int weight) {
         this.id = id;
         this.name = name;
@@ -56,6 +96,14 @@ public class PetEntry {
         this.name = name;
     }
 
+    public Integer getBreedId() {
+        return breedId;
+    }
+
+    public void setBreedId(Integer breedId) {
+        this.breedId = breedId;
+    }
+
     public String getBreed() {
         return breed;
     }
@@ -79,4 +127,31 @@ public class PetEntry {
     public void setWeight(int weight) {
         this.weight = weight;
     }
+
+    public String getPhotoPath() {
+        return photoPath;
+    }
+
+    public void setPhotoPath(String photoPath) {
+        this.photoPath = photoPath;
+    }
+
+    /**
+     * @return a new entry with the same fields, which can be changed without changing this one
+     */
+    public PetEntry copy() {
+        PetEntry copy = new PetEntry(id, name, breedId, gender, weight);
+        copy.setBreed(breed);
+        copy.setPhotoPath(photoPath);
+        copy.setVersion(version);
+        return copy;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
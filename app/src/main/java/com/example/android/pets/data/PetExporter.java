@@ -0,0 +1,216 @@
+package com.example.android.pets.data;
+
+import android.database.Cursor;
+import android.support.annotation.WorkerThread;
+import android.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports every pet to a CSV or JSON file. Rows are read in windows of {@link #WINDOW_SIZE}
+ * with a keyset query on the id and streamed straight to the file, so the heap used does not
+ * grow with the number of pets. The id, name, breed name, gender and weight of each pet are
+ * exported, named as in the CSV header and JSON fields; the row version and the photo file name
+ * only have a meaning in this database and are left out.
+ */
+public class PetExporter {
+
+    /** Supported file formats */
+    public enum Format {
+        CSV,
+        JSON
+    }
+
+    /**
+     * Receives the export progress after every window. Callbacks are made on the exporting thread.
+     */
+    public interface Listener {
+        void onProgress(int rowsWritten, int totalRows);
+    }
+
+    /** Number of rows read from the database per query */
+    public static final int WINDOW_SIZE = 1000;
+
+    private static final String WINDOW_QUERY =
+            "SELECT pet.id, pet.name, breed.name AS breed, pet.gender, pet.weight FROM pet "
+                    + "LEFT JOIN breed ON breed.id = pet.breed_id "
+                    + "WHERE pet.id > ? ORDER BY pet.id LIMIT ?";
+    private static final String COUNT_QUERY = "SELECT COUNT(*) FROM " + PetEntry.TABLE_NAME;
+
+    private final PetsDatabase mDb;
+    private volatile boolean mCancelled;
+
+    public PetExporter(PetsDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Stops the running export after the current window.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Writes all pets to the given file, replacing it. An export that is cancelled or fails
+     * deletes the partially written file.
+     *
+     * @param gzip true to gzip the output
+     * @return the number of rows written, or -1 if the export was cancelled
+     */
+    @WorkerThread
+    public int export(File file, Format format, boolean gzip, Listener listener)
+            throws IOException {
+        int rowsWritten;
+        boolean complete = false;
+        try {
+            FileOutputStream fileStream = new FileOutputStream(file);
+            try {
+                OutputStream out = Channels.newOutputStream(fileStream.getChannel());
+                if (gzip) {
+                    out = new GZIPOutputStream(out);
+                }
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+                try {
+                    if (format == Format.JSON) {
+                        rowsWritten = writeJson(writer, listener);
+                    } else {
+                        rowsWritten = writeCsv(writer, listener);
+                    }
+                } finally {
+                    writer.close();
+                }
+            } finally {
+                fileStream.close();
+            }
+            complete = !mCancelled;
+        } finally {
+            if (!complete) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        return complete ? rowsWritten : -1;
+    }
+
+    private int writeCsv(Writer writer, Listener listener) throws IOException {
+        int totalRows = countRows();
+        int rowsWritten = 0;
+        int lastId = 0;
+        boolean headerWritten = false;
+
+        while (!mCancelled) {
+            Cursor cursor = queryWindow(lastId);
+            try {
+                if (!headerWritten) {
+                    writeCsvRow(writer, cursor.getColumnNames());
+                    headerWritten = true;
+                }
+                if (!cursor.moveToFirst()) {
+                    break;
+                }
+                int idIndex = cursor.getColumnIndexOrThrow("id");
+                String[] values = new String[cursor.getColumnCount()];
+                do {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = cursor.isNull(i) ? "" : cursor.getString(i);
+                    }
+                    writeCsvRow(writer, values);
+                    lastId = cursor.getInt(idIndex);
+                    rowsWritten++;
+                } while (cursor.moveToNext());
+            } finally {
+                cursor.close();
+            }
+            listener.onProgress(rowsWritten, totalRows);
+        }
+        return rowsWritten;
+    }
+
+    private static void writeCsvRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values[i];
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    private int writeJson(Writer writer, Listener listener) throws IOException {
+        int totalRows = countRows();
+        int rowsWritten = 0;
+        int lastId = 0;
+
+        JsonWriter json = new JsonWriter(writer);
+        json.beginArray();
+        while (!mCancelled) {
+            Cursor cursor = queryWindow(lastId);
+            try {
+                if (!cursor.moveToFirst()) {
+                    break;
+                }
+                int idIndex = cursor.getColumnIndexOrThrow("id");
+                String[] columns = cursor.getColumnNames();
+                do {
+                    json.beginObject();
+                    for (int i = 0; i < columns.length; i++) {
+                        json.name(columns[i]);
+                        switch (cursor.getType(i)) {
+                            case Cursor.FIELD_TYPE_NULL:
+                                json.nullValue();
+                                break;
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                json.value(cursor.getLong(i));
+                                break;
+                            case Cursor.FIELD_TYPE_FLOAT:
+                                json.value(cursor.getDouble(i));
+                                break;
+                            default:
+                                json.value(cursor.getString(i));
+                                break;
+                        }
+                    }
+                    json.endObject();
+                    lastId = cursor.getInt(idIndex);
+                    rowsWritten++;
+                } while (cursor.moveToNext());
+            } finally {
+                cursor.close();
+            }
+            listener.onProgress(rowsWritten, totalRows);
+        }
+        json.endArray();
+        json.flush();
+        return rowsWritten;
+    }
+
+    private Cursor queryWindow(int afterId) {
+        return mDb.query(WINDOW_QUERY, new Object[]{afterId, WINDOW_SIZE});
+    }
+
+    private int countRows() {
+        Cursor cursor = mDb.query(COUNT_QUERY, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
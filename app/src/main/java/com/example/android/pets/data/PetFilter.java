@@ -0,0 +1,255 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes which pets the catalog shows and in which order, and builds the matching queries
+ * for {@link PetQueryDataSource}. Every filter and sort order is backed by one of the indices
+ * declared on {@link PetEntry} and {@link BreedEntry}, so no query sorts the pet table.
+ *
+ * Sorting by breed merges two queries that each return their rows in order: pets without a
+ * breed, walking the breed id index, and pets with a breed, walking the breed name index and,
+ * for each breed, its pets in the breed id index.
+ */
+public class PetFilter {
+
+    /** Possible sort orders. The default is by id, or by relevance while searching. */
+    public static final int SORT_DEFAULT = 0;
+    public static final int SORT_NAME = 1;
+    public static final int SORT_BREED = 2;
+    public static final int SORT_WEIGHT = 3;
+
+    /** Gender value meaning pets of every gender are shown */
+    public static final int ANY_GENDER = -1;
+
+    /** Index on the breed of pets, ordered by id within each breed */
+    private static final String BREED_ID_INDEX = "index_pet_breed_id";
+
+    private String matchExpression;
+    private int gender = ANY_GENDER;
+    private String breed;
+    private Integer minWeight;
+    private Integer maxWeight;
+    private int sortOrder = SORT_DEFAULT;
+
+    public PetFilter() {
+    }
+
+    public PetFilter(PetFilter other) {
+        this.matchExpression = other.matchExpression;
+        this.gender = other.gender;
+        this.breed = other.breed;
+        this.minWeight = other.minWeight;
+        this.maxWeight = other.maxWeight;
+        this.sortOrder = other.sortOrder;
+    }
+
+    /**
+     * @return true if all pets are shown in id order, which the keyset data source handles
+     */
+    public boolean isDefault() {
+        return matchExpression == null && gender == ANY_GENDER && breed == null
+                && minWeight == null && maxWeight == null && sortOrder == SORT_DEFAULT;
+    }
+
+    public String getMatchExpression() {
+        return matchExpression;
+    }
+
+    /**
+     * @param matchExpression FTS expression from {@link PetSearch#toMatchExpression(String)}
+     */
+    public void setMatchExpression(String matchExpression) {
+        this.matchExpression = matchExpression;
+    }
+
+    public int getGender() {
+        return gender;
+    }
+
+    public void setGender(int gender) {
+        this.gender = gender;
+    }
+
+    public String getBreed() {
+        return breed;
+    }
+
+    public void setBreed(String breed) {
+        this.breed = breed;
+    }
+
+    public Integer getMinWeight() {
+        return minWeight;
+    }
+
+    public void setMinWeight(Integer minWeight) {
+        this.minWeight = minWeight;
+    }
+
+    public Integer getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(Integer maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public int getSortOrder() {
+        return sortOrder;
+    }
+
+    public void setSortOrder(int sortOrder) {
+        this.sortOrder = sortOrder;
+    }
+
+    /**
+     * Builds the query selecting the id, name, breed and photo of the matching pets.
+     */
+    public SupportSQLiteQuery buildQuery() {
+        return buildQuery("", null, null);
+    }
+
+    /**
+     * Builds the query selecting the id, name, breed and photo of one page of the matching pets,
+     * used by {@link PetQueryDataSource}.
+     */
+    SupportSQLiteQuery buildPageQuery(int offset, int limit) {
+        return buildQuery("", limit, offset);
+    }
+
+    /**
+     * Builds the query selecting one page of the matching pets of one shard, with the columns
+     * {@link ShelterShards} needs to merge them with the other shards: id, name, breed, photo,
+     * weight and name_match, which is 1 when the name matched the search.
+     */
+    SupportSQLiteQuery buildShardQuery(int offset, int limit) {
+        return buildQuery(", pet.weight", limit, offset);
+    }
+
+    /**
+     * Builds the query counting the matching pets.
+     */
+    SupportSQLiteQuery buildCountQuery() {
+        StringBuilder sql = new StringBuilder(
+                "SELECT COUNT(*) FROM pet LEFT JOIN breed ON breed.id = pet.breed_id");
+        List<Object> args = new ArrayList<>();
+        appendConditions(sql, args, null);
+        return new SimpleSQLiteQuery(sql.toString(), args.toArray());
+    }
+
+    /**
+     * Builds the ordered query selecting the {@link PetSummary} columns, the given extra columns
+     * and name_match.
+     */
+    private SupportSQLiteQuery buildQuery(String extraColumns, Integer limit, Integer offset) {
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+
+        if (sortOrder == SORT_BREED && breed == null) {
+            // Each part walks its indices in breed and id order, so SQLite merges them without
+            // sorting. A pet without a breed has a null breed id, returned as its breed name.
+            appendSelect(sql, args, "breed.name", extraColumns,
+                    " FROM breed CROSS JOIN pet ON pet.breed_id = breed.id", null);
+            sql.append(" UNION ALL ");
+            appendSelect(sql, args, "pet.breed_id", extraColumns,
+                    " FROM pet INDEXED BY " + BREED_ID_INDEX, "pet.breed_id IS NULL");
+            sql.append(" ORDER BY breed, pet.id");
+        } else {
+            appendSelect(sql, args, "breed.name", extraColumns,
+                    " FROM pet LEFT JOIN breed ON breed.id = pet.breed_id", null);
+
+            // Ties are broken by id so the order is stable between pages.
+            sql.append(" ORDER BY ");
+            switch (sortOrder) {
+                case SORT_NAME:
+                    sql.append("pet.name, ");
+                    break;
+                case SORT_WEIGHT:
+                    sql.append("pet.weight, ");
+                    break;
+                case SORT_BREED:
+                    // Every pet matching the breed filter has the same breed.
+                    break;
+                default:
+                    if (matchExpression != null) {
+                        sql.append("name_match DESC, ");
+                    }
+                    break;
+            }
+            sql.append("pet.id");
+        }
+
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            args.add(limit);
+        }
+        if (offset != null) {
+            sql.append(" OFFSET ?");
+            args.add(offset);
+        }
+        return new SimpleSQLiteQuery(sql.toString(), args.toArray());
+    }
+
+    /**
+     * Appends a SELECT of the matching pets with the {@link PetSummary} columns, the breed name
+     * being read from the given column, followed by the extra columns and name_match.
+     *
+     * @param condition Condition added to the ones of the filter, or null
+     */
+    private void appendSelect(StringBuilder sql, List<Object> args, String breedColumn,
+                              String extraColumns, String from, String condition) {
+        sql.append("SELECT pet.id, pet.name, ").append(breedColumn)
+                .append(" AS breed, pet.photo_path").append(extraColumns);
+        // Ranks pets whose name matches the search before pets only matching on their breed
+        if (matchExpression != null) {
+            sql.append(", ").append(PetSearch.NAME_MATCH);
+            args.add(matchExpression);
+        } else {
+            sql.append(", 0");
+        }
+        sql.append(" AS name_match").append(from);
+        appendConditions(sql, args, condition);
+    }
+
+    /**
+     * Appends the WHERE clause of the filter.
+     *
+     * @param condition Condition added to the ones of the filter, or null
+     */
+    private void appendConditions(StringBuilder sql, List<Object> args, String condition) {
+        List<String> conditions = new ArrayList<>();
+        if (condition != null) {
+            conditions.add(condition);
+        }
+        if (matchExpression != null) {
+            conditions.add("(" + PetSearch.NAME_MATCH + " OR " + PetSearch.BREED_MATCH + ")");
+            args.add(matchExpression);
+            args.add(matchExpression);
+        }
+        if (gender != ANY_GENDER) {
+            conditions.add("pet.gender = ?");
+            args.add(gender);
+        }
+        if (breed != null) {
+            conditions.add("pet.breed_id = (SELECT id FROM breed WHERE name = ? COLLATE NOCASE)");
+            args.add(BreedDictionary.normalize(breed));
+        }
+        if (minWeight != null) {
+            conditions.add("pet.weight >= ?");
+            args.add(minWeight);
+        }
+        if (maxWeight != null) {
+            conditions.add("pet.weight <= ?");
+            args.add(maxWeight);
+        }
+
+        for (int i = 0; i < conditions.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+
+/**
+ * Number of pets of one gender, kept up to date by the triggers created in {@link PetStats}.
+ */
+@Entity(tableName = PetGenderStats.TABLE_NAME)
+public class PetGenderStats {
+
+    /** Name of the database table for the gender statistics. */
+    public static final String TABLE_NAME = "pet_gender_stats";
+
+    @PrimaryKey
+    private int gender;
+    @ColumnInfo(name = "pet_count")
+    private int petCount;
+
+    public PetGenderStats(int gender, int petCount) {
+        this.gender = gender;
+        this.petCount = petCount;
+    }
+
+    public int getGender() {
+        return gender;
+    }
+
+    public int getPetCount() {
+        return petCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PetGenderStats)) {
+            return false;
+        }
+        PetGenderStats other = (PetGenderStats) o;
+        return gender == other.gender && petCount == other.petCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * gender + petCount;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.pets.data;
+
+import android.support.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imports a pet roster from a {@link PetRecordReader}. Records are validated one by one and
+ * valid pets are written through a {@link PetBatchWriter} whenever a full batch has been read,
+ * so memory use only depends on the batch size and not on the size of the roster.
+ */
+public class PetImporter {
+
+    /**
+     * Receives progress and validation problems while a roster is imported.
+     * Callbacks are made on the importing thread.
+     */
+    public interface Listener {
+
+        /** Called after each batch has been written. */
+        void onProgress(int recordsRead, int petsImported);
+
+        /** Called for a record that was skipped, numbered from 1. */
+        void onInvalidRecord(int recordNumber, String reason);
+    }
+
+    /**
+     * Totals of a finished (or cancelled) import.
+     */
+    public static class Result {
+        public final int recordsRead;
+        public final int petsImported;
+        public final int invalidRecords;
+        public final boolean cancelled;
+
+        Result(int recordsRead, int petsImported, int invalidRecords, boolean cancelled) {
+            this.recordsRead = recordsRead;
+            this.petsImported = petsImported;
+            this.invalidRecords = invalidRecords;
+            this.cancelled = cancelled;
+        }
+    }
+
+    private final PetBatchWriter mWriter;
+    private final int mBatchSize;
+    private volatile boolean mCancelled;
+
+    public PetImporter(PetsDatabase db) {
+        this(db, PetBatchWriter.MAX_CHUNK_SIZE);
+    }
+
+    public PetImporter(PetsDatabase db, int batchSize) {
+        mWriter = new PetBatchWriter(db, batchSize);
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * Stops the running import after the current batch. Batches already written are kept.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Reads every record from the reader and inserts the valid ones. The reader is closed
+     * when the import ends.
+     */
+    @WorkerThread
+    public Result importPets(PetRecordReader reader, Listener listener) throws IOException {
+        List<PetEntry> batch = new ArrayList<>(mBatchSize);
+        int recordsRead = 0;
+        int petsImported = 0;
+        int invalidRecords = 0;
+
+        try {
+            Map<String, String> record;
+            while (!mCancelled && (record = reader.readRecord()) != null) {
+                recordsRead++;
+                try {
+                    batch.add(PetRecordMapper.toPetEntry(record));
+                } catch (InvalidPetRecordException e) {
+                    invalidRecords++;
+                    listener.onInvalidRecord(recordsRead, e.getMessage());
+                }
+
+                if (batch.size() == mBatchSize) {
+                    petsImported += writeBatch(batch);
+                    listener.onProgress(recordsRead, petsImported);
+                }
+            }
+            if (!batch.isEmpty()) {
+                petsImported += writeBatch(batch);
+                listener.onProgress(recordsRead, petsImported);
+            }
+        } finally {
+            reader.close();
+        }
+        return new Result(recordsRead, petsImported, invalidRecords, mCancelled);
+    }
+
+    /**
+     * Inserts the batch and clears it, so the list can be reused for the next batch.
+     *
+     * @return the number of pets actually inserted
+     */
+    private int writeBatch(List<PetEntry> batch) {
+        long[] ids = mWriter.insertPets(batch);
+        batch.clear();
+        int inserted = 0;
+        for (long id : ids) {
+            if (id != -1) {
+                inserted++;
+            }
+        }
+        return inserted;
+    }
+}
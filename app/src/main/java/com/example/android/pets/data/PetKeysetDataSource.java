@@ -0,0 +1,120 @@
+package com.example.android.pets.data;
+
+import android.arch.paging.DataSource;
+import android.arch.paging.ItemKeyedDataSource;
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ItemKeyedDataSource} that pages through the pet table using the id of the last
+ * loaded row as the key (keyset / seek pagination), so every page is a bounded index range
+ * scan on the primary key no matter how deep into the list the user has scrolled.
+ * Pages hold {@link PetSummary} rows, which only carry the columns the catalog displays.
+ */
+public class PetKeysetDataSource extends ItemKeyedDataSource<Integer, PetSummary> {
+
+    private final PetsDatabase mDb;
+    private final PetDao mPetDao;
+
+    PetKeysetDataSource(PetsDatabase db, long invalidationWindowMillis) {
+        mDb = db;
+        mPetDao = db.petDao();
+
+        // Drop this data source once the pet or breed table changes, so the PagedList built
+        // on top of it reloads from the last accessed key. Changes are throttled, so a burst
+        // of writes reloads the list once per window instead of once per transaction.
+        final InvalidationThrottle throttle = new InvalidationThrottle(db,
+                invalidationWindowMillis, new Runnable() {
+                    @Override
+                    public void run() {
+                        invalidate();
+                    }
+                }, PetEntry.TABLE_NAME, BreedEntry.TABLE_NAME);
+        throttle.start();
+        addInvalidatedCallback(new InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                throttle.stop();
+            }
+        });
+    }
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams<Integer> params,
+                            @NonNull LoadInitialCallback<PetSummary> callback) {
+        List<PetSummary> pets;
+        if (params.requestedInitialKey == null) {
+            pets = mDb.getPrefetchedPage().take();
+            if (pets == null || pets.size() > params.requestedLoadSize) {
+                pets = mPetDao.loadPetSummariesAfter(0, params.requestedLoadSize);
+            }
+        } else {
+            pets = mPetDao.loadPetSummariesFrom(params.requestedInitialKey, params.requestedLoadSize);
+        }
+        callback.onResult(pets);
+    }
+
+    @Override
+    public void loadAfter(@NonNull LoadParams<Integer> params,
+                          @NonNull LoadCallback<PetSummary> callback) {
+        callback.onResult(mPetDao.loadPetSummariesAfter(params.key, params.requestedLoadSize));
+    }
+
+    @Override
+    public void loadBefore(@NonNull LoadParams<Integer> params,
+                           @NonNull LoadCallback<PetSummary> callback) {
+        // The query walks the index backwards, so flip the page back into list order.
+        List<PetSummary> pets = mPetDao.loadPetSummariesBefore(params.key, params.requestedLoadSize);
+        Collections.reverse(pets);
+        callback.onResult(pets);
+    }
+
+    /**
+     * Reads the first page of the catalog of the given database ahead of time, so the first
+     * data source created on it can use it instead of querying the database. The page is
+     * dropped if the pet or breed table changes before it is used, including while it is being
+     * read. Must be called off the main thread.
+     *
+     * @param loadSize Initial load size the catalog's PagedList will request
+     */
+    public static void prefetchFirstPage(PetsDatabase db, int loadSize) {
+        PrefetchedPage prefetched = db.getPrefetchedPage();
+        int generation = prefetched.getGeneration();
+        prefetched.set(db.petDao().loadPetSummariesAfter(0, loadSize), generation);
+    }
+
+    @NonNull
+    @Override
+    public Integer getKey(@NonNull PetSummary item) {
+        return item.getId();
+    }
+
+    /**
+     * Creates a new {@link PetKeysetDataSource} every time the previous one is invalidated.
+     */
+    public static class Factory extends DataSource.Factory<Integer, PetSummary> {
+
+        private final PetsDatabase mDb;
+        private final long mInvalidationWindowMillis;
+
+        public Factory(PetsDatabase db) {
+            this(db, InvalidationThrottle.DEFAULT_WINDOW_MILLIS);
+        }
+
+        /**
+         * @param invalidationWindowMillis minimum time between two reloads caused by changes
+         *                                 of the tables, see {@link InvalidationThrottle}
+         */
+        public Factory(PetsDatabase db, long invalidationWindowMillis) {
+            mDb = db;
+            mInvalidationWindowMillis = invalidationWindowMillis;
+        }
+
+        @Override
+        public DataSource<Integer, PetSummary> create() {
+            return new PetKeysetDataSource(mDb, mInvalidationWindowMillis);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stores the photos of pets as files in the app's private storage. The pet table only holds the
+ * file name, in the photo_path column, so rows stay small and photos are never read from the
+ * database. Thumbnails for lists are made from these files by PetPhotoLoader.
+ */
+public final class PetPhotoStore {
+
+    private static final String DIRECTORY_NAME = "photos";
+
+    /** Age below which unreferenced photos are kept, as an editor may still save them */
+    private static final long MIN_UNREFERENCED_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Minimum time between two runs of {@link #deleteUnreferencedIfDue}. Running more often
+     * would find little, as photos younger than {@link #MIN_UNREFERENCED_AGE_MILLIS} are kept.
+     */
+    private static final long CLEANUP_INTERVAL_MILLIS = MIN_UNREFERENCED_AGE_MILLIS;
+
+    private static final String PREFERENCES_NAME = "photo_store";
+    private static final String KEY_LAST_CLEANUP_MILLIS = "last_cleanup_millis";
+
+    private PetPhotoStore() {
+    }
+
+    /**
+     * Copies a picked image into the photo directory.
+     *
+     * @return the file name to store in {@link PetEntry#setPhotoPath(String)}
+     */
+    @WorkerThread
+    public static String importPhoto(Context context, Uri uri) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new IOException("Can't open " + uri);
+        }
+        String name = UUID.randomUUID().toString() + ".jpg";
+        File file = getFile(context, name);
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            throw e;
+        } finally {
+            in.close();
+        }
+        return name;
+    }
+
+    /**
+     * @return the file holding the photo of the given name
+     */
+    public static File getFile(Context context, String name) {
+        File directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        return new File(directory, name);
+    }
+
+    /**
+     * Runs {@link #deleteUnreferenced} unless it already ran during the last day, as it reads
+     * the photo path of every pet and lists the photo directory.
+     *
+     * @return the number of files deleted
+     */
+    @WorkerThread
+    public static int deleteUnreferencedIfDue(Context context, PetsDatabase db) {
+        SharedPreferences preferences =
+                context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        long last = preferences.getLong(KEY_LAST_CLEANUP_MILLIS, 0);
+        if (now >= last && now - last < CLEANUP_INTERVAL_MILLIS) {
+            return 0;
+        }
+        int deleted = deleteUnreferenced(context, db);
+        preferences.edit().putLong(KEY_LAST_CLEANUP_MILLIS, now).apply();
+        return deleted;
+    }
+
+    /**
+     * Deletes the photos no pet refers to anymore, such as photos of deleted pets or photos
+     * picked in an editor that was left without saving. Photos are only attached through the
+     * editor, which writes to the default database, so that is the database to pass. Photos
+     * imported during the last day are kept, as an editor may not have saved its pet yet.
+     *
+     * @return the number of files deleted
+     */
+    @WorkerThread
+    public static int deleteUnreferenced(Context context, PetsDatabase db) {
+        File[] files = new File(context.getFilesDir(), DIRECTORY_NAME).listFiles();
+        if (files == null || files.length == 0) {
+            return 0;
+        }
+        Set<String> referenced = new HashSet<>();
+        Cursor cursor = db.query(
+                "SELECT DISTINCT photo_path FROM pet WHERE photo_path IS NOT NULL", null);
+        try {
+            while (cursor.moveToNext()) {
+                referenced.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        long cutoff = System.currentTimeMillis() - MIN_UNREFERENCED_AGE_MILLIS;
+        int deleted = 0;
+        for (File file : files) {
+            if (!referenced.contains(file.getName()) && file.lastModified() < cutoff
+                    && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
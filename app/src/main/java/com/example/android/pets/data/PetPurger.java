@@ -0,0 +1,179 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.os.SystemClock;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+/**
+ * Deletes every pet in bounded ranges of ids, one short transaction per range, so other readers
+ * and writers get the database between ranges instead of waiting for a single DELETE of the
+ * whole table. The freed pages are returned to the file system with incremental vacuum, at most
+ * {@link #VACUUM_PAGES_PER_STEP} pages at a time between the same pauses, so reclaiming space
+ * never holds the write lock for long either.
+ */
+public class PetPurger {
+
+    private static final String LOG_TAG = PetPurger.class.getSimpleName();
+
+    /**
+     * Receives progress while pets are deleted. Callbacks are made on the purging thread.
+     */
+    public interface Listener {
+
+        /** Called after each range of pets has been deleted. */
+        void onProgress(int petsDeleted, int totalPets);
+    }
+
+    /**
+     * Totals of a finished (or cancelled) purge.
+     */
+    public static class Result {
+        public final int petsDeleted;
+        public final long bytesReclaimed;
+        public final boolean cancelled;
+
+        Result(int petsDeleted, long bytesReclaimed, boolean cancelled) {
+            this.petsDeleted = petsDeleted;
+            this.bytesReclaimed = bytesReclaimed;
+            this.cancelled = cancelled;
+        }
+    }
+
+    /** Maximum number of pets deleted per transaction */
+    public static final int CHUNK_SIZE = 1000;
+
+    /** Maximum number of free pages truncated from the database file per step */
+    public static final int VACUUM_PAGES_PER_STEP = 256;
+
+    /** Pause between two ranges or vacuum steps, letting queued readers and writers run */
+    private static final long YIELD_MILLIS = 10;
+
+    /** Value of PRAGMA auto_vacuum for incremental vacuum */
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final PetsDatabase mDb;
+    private final PetCache mCache;
+    private volatile boolean mCancelled;
+
+    public PetPurger(PetsDatabase db) {
+        mDb = db;
+        mCache = db.getPetCache();
+    }
+
+    /**
+     * Stops the running purge after the current range. Pets already deleted stay deleted.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Deletes every pet that exists when the purge starts; pets added in the meantime are kept.
+     */
+    @WorkerThread
+    public Result purge(Listener listener) {
+        final SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        int totalPets = (int) queryLong(db, "SELECT COUNT(*) FROM pet");
+        long maxId = queryLong(db, "SELECT MAX(id) FROM pet");
+        long pageSize = queryLong(db, "PRAGMA page_size");
+        boolean incremental = queryLong(db, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL;
+
+        int petsDeleted = 0;
+        long pagesReclaimed = 0;
+        long lastId = 0;
+        while (!mCancelled && lastId < maxId) {
+            final long fromId = lastId;
+            final long toId = Math.min(maxId, queryLong(db,
+                    "SELECT MAX(id) FROM (SELECT id FROM pet WHERE id > ? ORDER BY id LIMIT ?)",
+                    fromId, CHUNK_SIZE));
+            if (toId <= fromId) {
+                break;
+            }
+            final int[] deleted = new int[1];
+            mDb.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    deleted[0] = db.delete(PetEntry.TABLE_NAME, "id > ? AND id <= ?",
+                            new Object[]{fromId, toId});
+                }
+            });
+            petsDeleted += deleted[0];
+            lastId = toId;
+            mCache.clear();
+            if (listener != null) {
+                listener.onProgress(petsDeleted, totalPets);
+            }
+            if (incremental) {
+                pagesReclaimed += vacuumStep(db);
+            }
+            SystemClock.sleep(YIELD_MILLIS);
+        }
+
+        // Ranges free more pages than one step reclaims; truncate the rest the same way.
+        while (incremental && !mCancelled && petsDeleted > 0) {
+            long pages = vacuumStep(db);
+            if (pages == 0) {
+                break;
+            }
+            pagesReclaimed += pages;
+            SystemClock.sleep(YIELD_MILLIS);
+        }
+        return new Result(petsDeleted, pagesReclaimed * pageSize, mCancelled);
+    }
+
+    /**
+     * Truncates up to {@link #VACUUM_PAGES_PER_STEP} free pages from the end of the database
+     * file.
+     *
+     * @return the number of pages the database file shrank by
+     */
+    private static long vacuumStep(SupportSQLiteDatabase db) {
+        long pagesBefore = queryLong(db, "PRAGMA page_count");
+        try {
+            queryLong(db, "PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_STEP + ")");
+        } catch (SQLException e) {
+            // Another connection kept the database busy; the pages stay free for reuse.
+            Log.w(LOG_TAG, "Error reclaiming free pages", e);
+            return 0;
+        }
+        return Math.max(0, pagesBefore - queryLong(db, "PRAGMA page_count"));
+    }
+
+    /**
+     * Switches the database to incremental auto-vacuum if it doesn't use it yet. SQLite only
+     * applies the setting to a database holding tables through a full VACUUM, which rewrites
+     * the whole file and holds the write lock meanwhile, so this is left to a background job
+     * rather than run when the database is opened. It is a one-time conversion: once the
+     * database uses incremental auto-vacuum, this only reads the setting. Until then purges
+     * still delete every pet, but leave the freed pages in the file.
+     */
+    @WorkerThread
+    public static void enableIncrementalVacuum(PetsDatabase database) {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        if (queryLong(db, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+            return;
+        }
+        try {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        } catch (SQLException e) {
+            // Tried again the next time the job runs.
+            Log.w(LOG_TAG, "Error enabling incremental vacuum", e);
+        }
+    }
+
+    /**
+     * Runs the query to completion and returns the first column of its first row, or 0.
+     */
+    private static long queryLong(SupportSQLiteDatabase db, String sql, Object... args) {
+        Cursor cursor = db.query(sql, args);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
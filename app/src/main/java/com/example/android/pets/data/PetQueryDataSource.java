@@ -0,0 +1,105 @@
+package com.example.android.pets.data;
+
+import android.arch.paging.DataSource;
+import android.arch.paging.PositionalDataSource;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link PositionalDataSource} paging through the pets matching a {@link PetFilter} with
+ * LIMIT / OFFSET queries. Unlike the data sources Room generates, which reload on every
+ * transaction touching the pet table, it is invalidated through an {@link InvalidationThrottle},
+ * so a bulk import reloads a filtered or searched catalog once per window.
+ */
+public class PetQueryDataSource extends PositionalDataSource<PetSummary> {
+
+    private final PetsDatabase mDb;
+    private final PetFilter mFilter;
+
+    PetQueryDataSource(PetsDatabase db, PetFilter filter, long invalidationWindowMillis) {
+        mDb = db;
+        mFilter = new PetFilter(filter);
+
+        final InvalidationThrottle throttle = new InvalidationThrottle(db,
+                invalidationWindowMillis, new Runnable() {
+                    @Override
+                    public void run() {
+                        invalidate();
+                    }
+                }, PetEntry.TABLE_NAME, BreedEntry.TABLE_NAME);
+        throttle.start();
+        addInvalidatedCallback(new InvalidatedCallback() {
+            @Override
+            public void onInvalidated() {
+                throttle.stop();
+            }
+        });
+    }
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams params,
+                            @NonNull LoadInitialCallback<PetSummary> callback) {
+        int totalCount = countPets();
+        if (totalCount == 0) {
+            callback.onResult(Collections.<PetSummary>emptyList(), 0, 0);
+            return;
+        }
+        int position = computeInitialLoadPosition(params, totalCount);
+        int loadSize = computeInitialLoadSize(params, position, totalCount);
+        List<PetSummary> pets = loadPage(position, loadSize);
+        if (pets.size() == loadSize) {
+            callback.onResult(pets, position, totalCount);
+        } else {
+            // The table changed between the two queries; the next data source will load
+            // consistent pages.
+            invalidate();
+        }
+    }
+
+    @Override
+    public void loadRange(@NonNull LoadRangeParams params,
+                          @NonNull LoadRangeCallback<PetSummary> callback) {
+        callback.onResult(loadPage(params.startPosition, params.loadSize));
+    }
+
+    private List<PetSummary> loadPage(int offset, int limit) {
+        return mDb.petDao().loadPetSummaries(mFilter.buildPageQuery(offset, limit));
+    }
+
+    private int countPets() {
+        Cursor cursor = mDb.query(mFilter.buildCountQuery());
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Creates a new {@link PetQueryDataSource} every time the previous one is invalidated.
+     */
+    public static class Factory extends DataSource.Factory<Integer, PetSummary> {
+
+        private final PetsDatabase mDb;
+        private final PetFilter mFilter;
+        private final long mInvalidationWindowMillis;
+
+        /**
+         * @param invalidationWindowMillis minimum time between two reloads caused by changes
+         *                                 of the tables, see {@link InvalidationThrottle}
+         */
+        public Factory(PetsDatabase db, PetFilter filter, long invalidationWindowMillis) {
+            mDb = db;
+            mFilter = new PetFilter(filter);
+            mInvalidationWindowMillis = invalidationWindowMillis;
+        }
+
+        @Override
+        public DataSource<Integer, PetSummary> create() {
+            return new PetQueryDataSource(mDb, mFilter, mInvalidationWindowMillis);
+        }
+    }
+}
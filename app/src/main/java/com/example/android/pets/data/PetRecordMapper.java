@@ -0,0 +1,85 @@
+package com.example.android.pets.data;
+
+import android.text.TextUtils;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Validates roster records and maps them to {@link PetEntry} objects.
+ */
+public final class PetRecordMapper {
+
+    /** Field names expected in a roster record */
+    public static final String FIELD_NAME = "name";
+    public static final String FIELD_BREED = "breed";
+    public static final String FIELD_GENDER = "gender";
+    public static final String FIELD_WEIGHT = "weight";
+
+    private PetRecordMapper() {
+    }
+
+    /**
+     * Maps a record to a new, not yet inserted, {@link PetEntry}.
+     *
+     * @throws InvalidPetRecordException if the name is missing or a field has an invalid value
+     */
+    public static PetEntry toPetEntry(Map<String, String> record) throws InvalidPetRecordException {
+        String name = trim(record.get(FIELD_NAME));
+        if (TextUtils.isEmpty(name)) {
+            throw new InvalidPetRecordException("Missing name");
+        }
+        String breed = trim(record.get(FIELD_BREED));
+        int gender = parseGender(trim(record.get(FIELD_GENDER)));
+        int weight = parseWeight(trim(record.get(FIELD_WEIGHT)));
+        return new PetEntry(name, breed, gender, weight);
+    }
+
+    /**
+     * Accepts the stored gender codes (0, 1, 2) as well as their names and initials.
+     */
+    static int parseGender(String gender) throws InvalidPetRecordException {
+        if (TextUtils.isEmpty(gender)) {
+            return PetEntry.GENDER_UNKNOWN;
+        }
+        switch (gender.toLowerCase(Locale.US)) {
+            case "0":
+            case "u":
+            case "unknown":
+                return PetEntry.GENDER_UNKNOWN;
+            case "1":
+            case "m":
+            case "male":
+                return PetEntry.GENDER_MALE;
+            case "2":
+            case "f":
+            case "female":
+                return PetEntry.GENDER_FEMALE;
+            default:
+                throw new InvalidPetRecordException("Unknown gender: " + gender);
+        }
+    }
+
+    /**
+     * Parses the weight in kg, which defaults to 0 like in the editor.
+     */
+    static int parseWeight(String weight) throws InvalidPetRecordException {
+        if (TextUtils.isEmpty(weight)) {
+            return 0;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(weight);
+        } catch (NumberFormatException e) {
+            throw new InvalidPetRecordException("Invalid weight: " + weight);
+        }
+        if (value < 0) {
+            throw new InvalidPetRecordException("Negative weight: " + weight);
+        }
+        return value;
+    }
+
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+}
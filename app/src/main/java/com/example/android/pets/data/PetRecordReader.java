@@ -0,0 +1,20 @@
+package com.example.android.pets.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Streams the records of a pet roster one at a time, so a roster of any size can be read
+ * with constant memory. Each record maps a lower case field name to its raw text value.
+ */
+public interface PetRecordReader extends Closeable {
+
+    /**
+     * Reads the next record from the underlying stream.
+     *
+     * @return the fields of the record, or null once the end of the roster has been reached
+     * @throws IOException if the stream can't be read or is not well formed
+     */
+    Map<String, String> readRecord() throws IOException;
+}
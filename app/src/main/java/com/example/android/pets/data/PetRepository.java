@@ -0,0 +1,465 @@
+package com.example.android.pets.data;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MediatorLiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.arch.lifecycle.Observer;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for writes to the pet table.
+ *
+ * Writes are queued and executed on one background thread. Every write arriving within
+ * {@link #BATCH_WINDOW_MILLIS} of the first queued one is committed in the same transaction.
+ * Unconditional changes of a pet that still has unconditional changes waiting in the queue are
+ * merged into them instead of being written twice. Updates expecting a version are never
+ * merged: they run in the order they were queued, so of two updates expecting the same
+ * version, the second one gets {@link #CONFLICT}. The repository lives as long as the process,
+ * so queued writes complete even when the activity that started them has already finished.
+ */
+public class PetRepository {
+
+    private static final String LOG_TAG = PetRepository.class.getSimpleName();
+
+    /** How long the queue waits for more writes before committing a batch */
+    static final long BATCH_WINDOW_MILLIS = 50;
+
+    /** Maximum number of writes committed in one transaction */
+    static final int MAX_BATCH_SIZE = PetBatchWriter.MAX_CHUNK_SIZE;
+
+    /**
+     * Result of an update whose pet was changed by another writer since the version the update
+     * expects was read. Nothing was written.
+     */
+    public static final int CONFLICT = -1;
+
+    /**
+     * Receives the result of a write on the main thread.
+     */
+    public interface Callback<T> {
+        void onComplete(T result);
+    }
+
+    private static final Object LOCK = new Object();
+    private static volatile PetRepository sInstance;
+
+    private final PetsDatabase mDb;
+    private final PetCache mCache;
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Writes waiting to be committed, in the order they were requested. Guarded by mPending. */
+    private final List<Write<?>> mPending = new ArrayList<>();
+
+    /** Last queued write for each pet id, used to coalesce updates. Guarded by mPending. */
+    private final Map<Integer, Write<?>> mLastWriteById = new HashMap<>();
+
+    /** Whether a flush of mPending has already been scheduled. Guarded by mPending. */
+    private boolean mFlushScheduled;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    PetRepository(PetsDatabase db) {
+        mDb = db;
+        mCache = db.getPetCache();
+    }
+
+    public static PetRepository getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    sInstance = new PetRepository(PetsDatabase.getInstance(context));
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Loads a pet by id. If the pet is cached, the cached entry is delivered right away and the
+     * entry is revalidated against the database in the background; the value is updated again
+     * once the fresh entry has been read, and whenever the pet changes afterwards.
+     */
+    public LiveData<PetEntry> loadPetById(final int id) {
+        final MediatorLiveData<PetEntry> pet = new MediatorLiveData<>();
+        PetEntry cached = mCache.get(id);
+        if (cached != null) {
+            pet.setValue(cached);
+        }
+        pet.addSource(mDb.petDao().loadPetById(id), new Observer<PetWithBreed>() {
+            @Override
+            public void onChanged(@Nullable PetWithBreed petWithBreed) {
+                PetEntry petEntry = petWithBreed != null ? petWithBreed.toPetEntry() : null;
+                if (petEntry != null) {
+                    mCache.put(petEntry);
+                } else {
+                    mCache.remove(id);
+                }
+                pet.setValue(petEntry);
+            }
+        });
+        return pet;
+    }
+
+    /**
+     * Loads the names of every known breed, sorted ignoring case, from the breed dictionary.
+     */
+    public LiveData<List<String>> loadBreedNames() {
+        final MutableLiveData<List<String>> names = new MutableLiveData<>();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                names.postValue(mDb.getBreedDictionary().getNames());
+            }
+        });
+        return names;
+    }
+
+    /**
+     * @return the cache of pets by id, to inspect its hit and miss counters
+     */
+    public PetCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Queues the insertion of a new pet. The callback receives its id, or -1 on failure.
+     */
+    public void insertPet(final PetEntry petEntry, @Nullable Callback<Long> callback) {
+        enqueue(new Write<Long>(callback, -1L) {
+            @Override
+            void resolveBreeds(BreedDictionary breeds) {
+                breeds.resolve(petEntry);
+            }
+
+            @Override
+            Long execute(PetDao dao) {
+                return dao.insertPet(petEntry);
+            }
+
+            @Override
+            void updateCache(PetCache cache, Long id) {
+                if (id != -1) {
+                    petEntry.setId(id.intValue());
+                    cache.put(petEntry);
+                }
+            }
+        }, null, false);
+    }
+
+    /**
+     * Queues the update of an existing pet, which is only written if the pet still has the
+     * version of the given entry. The callback receives the number of updated rows, or
+     * {@link #CONFLICT} if the pet was changed by another writer, including by an update
+     * queued before this one.
+     */
+    public void updatePet(PetEntry petEntry, @Nullable Callback<Integer> callback) {
+        enqueue(new UpdateWrite(petEntry, callback), petEntry.getId(), false);
+    }
+
+    /**
+     * Queues the update of the changed columns of an existing pet, which is only written if the
+     * pet has the expected version of the changes. Changes expecting
+     * {@link PetChanges#ANY_VERSION} are merged with such changes of the same pet still waiting
+     * in the queue. The callback receives the number of updated rows, or {@link #CONFLICT} if
+     * the pet was changed by another writer.
+     */
+    public void updatePetFields(PetChanges changes, @Nullable Callback<Integer> callback) {
+        enqueue(new PartialUpdateWrite(mDb, changes, callback), changes.getPetId(), false);
+    }
+
+    /**
+     * Queues the deletion of a pet. The callback receives the number of deleted rows.
+     */
+    public void deletePet(final int id, @Nullable Callback<Integer> callback) {
+        enqueue(new Write<Integer>(callback, 0) {
+            @Override
+            Integer execute(PetDao dao) {
+                return dao.deletePet(id);
+            }
+
+            @Override
+            void updateCache(PetCache cache, Integer count) {
+                cache.remove(id);
+            }
+        }, id, false);
+    }
+
+    /**
+     * Queues the deletion of every pet. The callback receives null once it is done. This runs
+     * a single DELETE holding the write lock until every pet is gone; large tables should be
+     * emptied with a {@link PetPurger} instead.
+     */
+    public void deleteAllPets(@Nullable Callback<Void> callback) {
+        enqueue(new Write<Void>(callback, null) {
+            @Override
+            Void execute(PetDao dao) {
+                dao.deleteAllPets();
+                return null;
+            }
+
+            @Override
+            void updateCache(PetCache cache, Void result) {
+                cache.clear();
+            }
+        }, null, true);
+    }
+
+    /**
+     * Adds a write to the queue, coalescing it with the pending write for the same pet if both
+     * are unconditional partial updates, and schedules a flush if none is pending yet.
+     *
+     * @param petId id of the pet the write touches, or null for inserts and table wide writes
+     * @param tableWide true if the write touches every pet, so it must not be reordered with
+     *                  anything queued before it
+     */
+    private void enqueue(Write<?> write, @Nullable Integer petId, boolean tableWide) {
+        synchronized (mPending) {
+            Write<?> last = petId != null ? mLastWriteById.get(petId) : null;
+            // A versioned update merged into another one would be written with the other's
+            // expected version, so a conflict between the two would go unnoticed.
+            if (write instanceof PartialUpdateWrite && last instanceof PartialUpdateWrite
+                    && ((PartialUpdateWrite) write).isUnconditional()
+                    && ((PartialUpdateWrite) last).isUnconditional()) {
+                ((PartialUpdateWrite) last).merge((PartialUpdateWrite) write);
+                return;
+            }
+
+            mPending.add(write);
+            if (petId != null) {
+                mLastWriteById.put(petId, write);
+            } else if (tableWide) {
+                mLastWriteById.clear();
+            }
+
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mExecutor.schedule(mFlushRunnable, BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Commits the queued writes, {@link #MAX_BATCH_SIZE} per transaction, on the writer thread.
+     */
+    private void flush() {
+        final List<Write<?>> batch;
+        synchronized (mPending) {
+            batch = new ArrayList<>(mPending);
+            mPending.clear();
+            mLastWriteById.clear();
+            mFlushScheduled = false;
+        }
+
+        final PetDao dao = mDb.petDao();
+        final BreedDictionary breeds = mDb.getBreedDictionary();
+        for (int start = 0; start < batch.size(); start += MAX_BATCH_SIZE) {
+            final List<Write<?>> chunk =
+                    batch.subList(start, Math.min(start + MAX_BATCH_SIZE, batch.size()));
+            try {
+                // New breeds are added outside the transaction, so a rollback can't
+                // leave ids of breeds that don't exist in the dictionary.
+                for (Write<?> write : chunk) {
+                    write.resolveBreeds(breeds);
+                }
+                mDb.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Write<?> write : chunk) {
+                            write.run(dao);
+                        }
+                    }
+                });
+                for (Write<?> write : chunk) {
+                    write.updateCache(mCache);
+                }
+            } catch (RuntimeException e) {
+                // The whole transaction was rolled back, so report every write as failed
+                // and forget everything cached, as it may not match the database anymore.
+                Log.e(LOG_TAG, "Error writing " + chunk.size() + " pets", e);
+                mCache.clear();
+                for (Write<?> write : chunk) {
+                    write.fail();
+                }
+            }
+            for (Write<?> write : chunk) {
+                mMainHandler.post(write);
+            }
+        }
+    }
+
+    /**
+     * A queued write. Once executed, posting it to the main thread delivers its result.
+     */
+    private abstract static class Write<T> implements Runnable {
+
+        private final List<Callback<T>> mCallbacks = new ArrayList<>();
+        private final T mFailureResult;
+        private T mResult;
+
+        Write(@Nullable Callback<T> callback, T failureResult) {
+            if (callback != null) {
+                mCallbacks.add(callback);
+            }
+            mFailureResult = failureResult;
+        }
+
+        /**
+         * Sets the breed id of the written pet from its breed name, if the write has a pet.
+         */
+        void resolveBreeds(BreedDictionary breeds) {
+        }
+
+        abstract T execute(PetDao dao);
+
+        /**
+         * Brings the cache in line with the committed result of this write.
+         */
+        abstract void updateCache(PetCache cache, T result);
+
+        void run(PetDao dao) {
+            mResult = execute(dao);
+        }
+
+        /**
+         * Tells apart a conditional update that found no pet from one that found it with
+         * another version. Runs in the update's transaction, so the pet can't change in between.
+         *
+         * @return the number of updated rows, or {@link #CONFLICT}
+         */
+        static int checkConflict(PetDao dao, int petId, int count) {
+            return count == 0 && dao.petExists(petId) ? CONFLICT : count;
+        }
+
+        void updateCache(PetCache cache) {
+            updateCache(cache, mResult);
+        }
+
+        void fail() {
+            mResult = mFailureResult;
+        }
+
+        void addCallbacks(Write<T> other) {
+            mCallbacks.addAll(other.mCallbacks);
+        }
+
+        @Override
+        public void run() {
+            for (Callback<T> callback : mCallbacks) {
+                callback.onComplete(mResult);
+            }
+        }
+    }
+
+    /**
+     * An update of every column of a pet, expecting the version of the given entry.
+     */
+    private static class UpdateWrite extends Write<Integer> {
+
+        private final PetEntry mPetEntry;
+
+        UpdateWrite(PetEntry petEntry, @Nullable Callback<Integer> callback) {
+            super(callback, 0);
+            mPetEntry = petEntry;
+        }
+
+        @Override
+        void resolveBreeds(BreedDictionary breeds) {
+            breeds.resolve(mPetEntry);
+        }
+
+        @Override
+        Integer execute(PetDao dao) {
+            int count = dao.updatePetIfVersion(mPetEntry.getId(), mPetEntry.getVersion(),
+                    mPetEntry.getName(), mPetEntry.getBreedId(), mPetEntry.getGender(),
+                    mPetEntry.getWeight(), mPetEntry.getPhotoPath());
+            return checkConflict(dao, mPetEntry.getId(), count);
+        }
+
+        @Override
+        void updateCache(PetCache cache, Integer count) {
+            if (count > 0) {
+                // The caller's entry keeps the version it was written with.
+                PetEntry updated = mPetEntry.copy();
+                updated.setVersion(mPetEntry.getVersion() + 1);
+                cache.put(updated);
+            } else {
+                cache.remove(mPetEntry.getId());
+            }
+        }
+    }
+
+    /**
+     * An update of the changed columns of a pet. Unconditional changes absorb later
+     * unconditional changes of the same pet while they are still queued.
+     */
+    private static class PartialUpdateWrite extends Write<Integer> {
+
+        private final PetsDatabase mDb;
+        private final PetChanges mChanges;
+
+        PartialUpdateWrite(PetsDatabase db, PetChanges changes,
+                           @Nullable Callback<Integer> callback) {
+            super(callback, 0);
+            mDb = db;
+            mChanges = changes;
+        }
+
+        boolean isUnconditional() {
+            return mChanges.getExpectedVersion() == PetChanges.ANY_VERSION;
+        }
+
+        void merge(PartialUpdateWrite newer) {
+            mChanges.merge(newer.mChanges);
+            addCallbacks(newer);
+        }
+
+        @Override
+        void resolveBreeds(BreedDictionary breeds) {
+            mChanges.resolveBreed(breeds);
+        }
+
+        @Override
+        Integer execute(PetDao dao) {
+            // Room has no partial update in 1.1, so the changed columns are written directly.
+            // The invalidation tracker still sees the change, as it watches the table itself.
+            int count = mChanges.update(mDb.getOpenHelper().getWritableDatabase());
+            if (mChanges.getExpectedVersion() == PetChanges.ANY_VERSION) {
+                return count;
+            }
+            return checkConflict(dao, mChanges.getPetId(), count);
+        }
+
+        @Override
+        void updateCache(PetCache cache, Integer count) {
+            PetEntry cached = cache.get(mChanges.getPetId());
+            if (count > 0 && cached != null
+                    && cached.getVersion() == mChanges.getExpectedVersion()) {
+                PetEntry updated = cached.copy();
+                updated.setVersion(cached.getVersion() + 1);
+                mChanges.applyTo(updated);
+                cache.put(updated);
+            } else {
+                cache.remove(mChanges.getPetId());
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+
+import java.util.Locale;
+
+/**
+ * Full text search over the name and breed of pets.
+ *
+ * Pet names are indexed by an external content FTS4 table on top of the pet table, and breed
+ * names by one on top of the breed table, so the text itself is only stored once and each breed
+ * is only indexed once. A pet matches when its name or its breed matches. Room 1.1 doesn't know
+ * about FTS tables, so the tables and the triggers keeping them in sync with their content are
+ * created here, from the database callback and migrations.
+ */
+public final class PetSearch {
+
+    /** Name of the FTS4 table indexing the name of pets */
+    static final String FTS_TABLE_NAME = "pet_fts";
+
+    /** Name of the FTS4 table indexing the name of breeds */
+    static final String BREED_FTS_TABLE_NAME = "breed_fts";
+
+    /** Condition true for pets whose name matches the expression bound to it */
+    static final String NAME_MATCH = "pet.id IN (SELECT docid FROM " + FTS_TABLE_NAME
+            + " WHERE " + FTS_TABLE_NAME + " MATCH ?)";
+
+    /** Condition true for pets whose breed matches the expression bound to it */
+    static final String BREED_MATCH = "pet.breed_id IN (SELECT docid FROM " + BREED_FTS_TABLE_NAME
+            + " WHERE " + BREED_FTS_TABLE_NAME + " MATCH ?)";
+
+    private PetSearch() {
+    }
+
+    /**
+     * Creates the FTS tables and their triggers if they don't exist yet.
+     */
+    static void createIndex(SupportSQLiteDatabase db) {
+        createIndex(db, FTS_TABLE_NAME, PetEntry.TABLE_NAME);
+        createIndex(db, BREED_FTS_TABLE_NAME, BreedEntry.TABLE_NAME);
+    }
+
+    /**
+     * Creates an FTS table indexing the name column of the given table.
+     */
+    private static void createIndex(SupportSQLiteDatabase db, String ftsTable, String table) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + ftsTable
+                + " USING fts4(content=\"" + table + "\", name)");
+
+        // Rows have to be removed from the index before the content row changes,
+        // and added back once the new content is in place.
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + ftsTable + "_before_update "
+                + "BEFORE UPDATE OF name ON " + table + " BEGIN "
+                + "DELETE FROM " + ftsTable + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + ftsTable + "_before_delete "
+                + "BEFORE DELETE ON " + table + " BEGIN "
+                + "DELETE FROM " + ftsTable + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + ftsTable + "_after_update "
+                + "AFTER UPDATE OF name ON " + table + " BEGIN "
+                + "INSERT INTO " + ftsTable + "(docid, name) VALUES (new.id, new.name); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + ftsTable + "_after_insert "
+                + "AFTER INSERT ON " + table + " BEGIN "
+                + "INSERT INTO " + ftsTable + "(docid, name) VALUES (new.id, new.name); END");
+    }
+
+    /**
+     * Re-indexes every pet and breed, used when the index is added to existing data.
+     */
+    static void rebuildIndex(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + FTS_TABLE_NAME + "(" + FTS_TABLE_NAME + ") VALUES ('rebuild')");
+        db.execSQL("INSERT INTO " + BREED_FTS_TABLE_NAME + "(" + BREED_FTS_TABLE_NAME + ") "
+                + "VALUES ('rebuild')");
+    }
+
+    /**
+     * Turns the text typed by the user into an FTS MATCH expression where every word is
+     * matched as a prefix, e.g. "lab ret" becomes "lab* ret*".
+     *
+     * @return the expression, or null if the text contains no searchable word
+     */
+    public static String toMatchExpression(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder expression = new StringBuilder();
+        for (String word : text.toLowerCase(Locale.getDefault()).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (expression.length() > 0) {
+                expression.append(' ');
+            }
+            expression.append(word).append('*');
+        }
+        return expression.length() == 0 ? null : expression.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+
+/**
+ * Maintains the {@link PetGenderStats} and {@link PetBreedStats} summary tables. Triggers on
+ * the pet table apply every insert, update and delete to the affected groups only, so reading
+ * the statistics costs one row per group instead of a scan of every pet.
+ */
+public final class PetStats {
+
+    /** Key of a pet in the breed statistics, 0 for pets without a breed */
+    private static final String BREED_KEY = "IFNULL(%1$s.breed_id, 0)";
+
+    private PetStats() {
+    }
+
+    /**
+     * Creates the triggers maintaining the summary tables if they don't exist yet.
+     */
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_stats_after_insert AFTER INSERT ON pet BEGIN "
+                + add("new") + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_stats_after_delete AFTER DELETE ON pet BEGIN "
+                + remove("old") + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS pet_stats_after_update "
+                + "AFTER UPDATE OF gender, breed_id, weight ON pet BEGIN "
+                + remove("old") + add("new") + "END");
+    }
+
+    /**
+     * Rebuilds the summary tables from the pet table, used once when they are added to existing
+     * data.
+     */
+    static void recompute(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + PetGenderStats.TABLE_NAME);
+        db.execSQL("INSERT INTO " + PetGenderStats.TABLE_NAME + " (gender, pet_count) "
+                + "SELECT gender, COUNT(*) FROM pet GROUP BY gender");
+        db.execSQL("DELETE FROM " + PetBreedStats.TABLE_NAME);
+        db.execSQL("INSERT INTO " + PetBreedStats.TABLE_NAME
+                + " (breed_id, pet_count, total_weight, min_weight, max_weight) "
+                + "SELECT IFNULL(breed_id, 0), COUNT(*), SUM(weight), MIN(weight), MAX(weight) "
+                + "FROM pet GROUP BY breed_id");
+    }
+
+    /**
+     * Checks that the summary tables match the statistics computed from every pet.
+     * Must be called off the main thread.
+     */
+    public static boolean matchesRecompute(PetsDatabase db) {
+        PetStatsDao dao = db.petStatsDao();
+        return dao.getGenderStats().equals(dao.computeGenderStats())
+                && dao.getBreedStats().equals(dao.computeBreedStats());
+    }
+
+    /**
+     * Trigger statements counting the given row into its groups.
+     */
+    private static String add(String row) {
+        String breed = String.format(BREED_KEY, row);
+        return "INSERT OR IGNORE INTO " + PetGenderStats.TABLE_NAME + " (gender, pet_count) "
+                + "VALUES (" + row + ".gender, 0); "
+                + "UPDATE " + PetGenderStats.TABLE_NAME + " SET pet_count = pet_count + 1 "
+                + "WHERE gender = " + row + ".gender; "
+                + "INSERT OR IGNORE INTO " + PetBreedStats.TABLE_NAME
+                + " (breed_id, pet_count, total_weight, min_weight, max_weight) "
+                + "VALUES (" + breed + ", 0, 0, " + row + ".weight, " + row + ".weight); "
+                + "UPDATE " + PetBreedStats.TABLE_NAME + " SET pet_count = pet_count + 1, "
+                + "total_weight = total_weight + " + row + ".weight, "
+                + "min_weight = MIN(min_weight, " + row + ".weight), "
+                + "max_weight = MAX(max_weight, " + row + ".weight) "
+                + "WHERE breed_id = " + breed + "; ";
+    }
+
+    /**
+     * Trigger statements taking the given row out of its groups. Groups left empty are deleted.
+     * The weight range of the breed is only recomputed, from that breed's pets alone, when the
+     * row held its minimum or maximum weight.
+     */
+    private static String remove(String row) {
+        String breed = String.format(BREED_KEY, row);
+        String breedPets = "FROM pet WHERE pet.breed_id = " + breed
+                + " OR (" + breed + " = 0 AND pet.breed_id IS NULL)";
+        return "UPDATE " + PetGenderStats.TABLE_NAME + " SET pet_count = pet_count - 1 "
+                + "WHERE gender = " + row + ".gender; "
+                + "DELETE FROM " + PetGenderStats.TABLE_NAME
+                + " WHERE gender = " + row + ".gender AND pet_count = 0; "
+                + "UPDATE " + PetBreedStats.TABLE_NAME + " SET pet_count = pet_count - 1, "
+                + "total_weight = total_weight - " + row + ".weight "
+                + "WHERE breed_id = " + breed + "; "
+                + "DELETE FROM " + PetBreedStats.TABLE_NAME
+                + " WHERE breed_id = " + breed + " AND pet_count = 0; "
+                + "UPDATE " + PetBreedStats.TABLE_NAME + " SET "
+                + "min_weight = (SELECT MIN(weight) " + breedPets + "), "
+                + "max_weight = (SELECT MAX(weight) " + breedPets + ") "
+                + "WHERE breed_id = " + breed + " AND (" + row + ".weight <= min_weight OR "
+                + row + ".weight >= max_weight); ";
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.android.pets.data;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface PetStatsDao {
+
+    @Query("SELECT * FROM pet_gender_stats ORDER BY gender")
+    LiveData<List<PetGenderStats>> loadGenderStats();
+
+    @Query("SELECT pet_breed_stats.*, breed.name AS breed FROM pet_breed_stats "
+            + "LEFT JOIN breed ON breed.id = pet_breed_stats.breed_id "
+            + "ORDER BY pet_count DESC, breed.name")
+    LiveData<List<NamedBreedStats>> loadBreedStats();
+
+    @Query("SELECT pet_breed_stats.*, breed.name AS breed FROM pet_breed_stats "
+            + "LEFT JOIN breed ON breed.id = pet_breed_stats.breed_id "
+            + "ORDER BY pet_count DESC, breed.name")
+    List<NamedBreedStats> getNamedBreedStats();
+
+    @Query("SELECT * FROM pet_gender_stats ORDER BY gender")
+    List<PetGenderStats> getGenderStats();
+
+    @Query("SELECT * FROM pet_breed_stats ORDER BY breed_id")
+    List<PetBreedStats> getBreedStats();
+
+    /** Computes the gender statistics from the pet table, reading every pet */
+    @Query("SELECT gender, COUNT(*) AS pet_count FROM pet GROUP BY gender ORDER BY gender")
+    List<PetGenderStats> computeGenderStats();
+
+    /** Computes the breed statistics from the pet table, reading every pet */
+    @Query("SELECT IFNULL(breed_id, 0) AS breed_id, COUNT(*) AS pet_count, "
+            + "SUM(weight) AS total_weight, MIN(weight) AS min_weight, MAX(weight) AS max_weight "
+            + "FROM pet GROUP BY breed_id ORDER BY breed_id")
+    List<PetBreedStats> computeBreedStats();
+}
@@ -0,0 +1,42 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.ColumnInfo;
+
+/**
+ * Read-only projection of a {@link PetEntry} holding only the columns shown in a catalog row.
+ * The full entry is loaded by id once the pet is opened in the editor.
+ */
+public class PetSummary {
+
+    private final int id;
+    private final String name;
+    private final String breed;
+    @ColumnInfo(name = "photo_path")
+    private final String photoPath;
+
+    public PetSummary(int id, String name, String breed, String photoPath) {
+        this.id = id;
+        this.name = name;
+        this.breed = breed;
+        this.photoPath = photoPath;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getBreed() {
+        return breed;
+    }
+
+    /**
+     * @return the photo file name, see {@link PetPhotoStore}, or null if the pet has no photo
+     */
+    public String getPhotoPath() {
+        return photoPath;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.support.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synchronizes the pets of one database with the sync server in batched deltas instead of full
+ * dumps of the pet table.
+ *
+ * Uploads read the {@link PetChangeLog} past the last sequence number the server acknowledged,
+ * sending each changed pet once with its current values. The acknowledged sequence number is
+ * stored, and the log trimmed, in one transaction after every batch, so an interrupted sync
+ * resumes with the first unacknowledged batch. Downloads apply the changes of other clients in
+ * one transaction per batch together with the server sequence number reached, without
+ * recording them in the change log, so they aren't sent back.
+ *
+ * Pet ids identify pets on the server, so every database syncing with the same server must
+ * draw its ids from one system of record, e.g. one shelter's database. A downloaded change
+ * replaces the local pet, including local changes that weren't uploaded yet, and increments
+ * its version, so editors still holding the previous version get a conflict when saving.
+ */
+public class PetSyncEngine {
+
+    /** Maximum number of changes per upload or download */
+    public static final int BATCH_SIZE = 500;
+
+    /** Latest change of each pet past a sequence number, with the pet's current values */
+    private static final String OUTBOX_QUERY =
+            "SELECT log.seq, log.pet_id, pet.id IS NULL AS deleted, pet.name, "
+                    + "breed.name AS breed, pet.gender, pet.weight "
+                    + "FROM " + PetChangeLog.TABLE_NAME + " AS log "
+                    + "LEFT JOIN pet ON pet.id = log.pet_id "
+                    + "LEFT JOIN breed ON breed.id = pet.breed_id "
+                    + "WHERE log.seq > ? AND log.seq = (SELECT MAX(seq) FROM "
+                    + PetChangeLog.TABLE_NAME + " WHERE pet_id = log.pet_id) "
+                    + "ORDER BY log.seq LIMIT ?";
+
+    /**
+     * Totals of a finished sync.
+     */
+    public static class Result {
+        public final int uploaded;
+        public final int downloaded;
+
+        Result(int uploaded, int downloaded) {
+            this.uploaded = uploaded;
+            this.downloaded = downloaded;
+        }
+    }
+
+    private final PetsDatabase mDb;
+    private final String mClientId;
+    private final SyncTransport mTransport;
+    private final PetCache mCache;
+
+    /**
+     * @param clientId identifies this database to the server, which doesn't send a client's
+     *                 own changes back to it
+     */
+    public PetSyncEngine(PetsDatabase db, String clientId, SyncTransport transport) {
+        mDb = db;
+        mCache = db.getPetCache();
+        mClientId = clientId;
+        mTransport = transport;
+    }
+
+    /**
+     * Uploads the local changes, then downloads the changes of other clients. Changes already
+     * acknowledged or applied by an earlier, interrupted sync are not transferred again.
+     */
+    @WorkerThread
+    public Result sync() throws IOException {
+        int uploaded = upload();
+        int downloaded = download();
+        return new Result(uploaded, downloaded);
+    }
+
+    /**
+     * Records every pet as changed, so the next sync uploads the whole table, e.g. after the
+     * server lost its data.
+     */
+    @WorkerThread
+    public void requeueAll() {
+        mDb.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                PetChangeLog.recordAll(mDb.getOpenHelper().getWritableDatabase());
+            }
+        });
+    }
+
+    private int upload() throws IOException {
+        final SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        long acked = PetChangeLog.getState(db, PetChangeLog.KEY_UPLOADED_SEQ);
+        int uploaded = 0;
+        while (true) {
+            SyncCodec.Batch batch = readOutbox(db, acked);
+            if (batch.changes.isEmpty()) {
+                return uploaded;
+            }
+            SyncCodec.Batch ack = SyncCodec.decode(mTransport.upload(SyncCodec.encode(batch)));
+            if (ack.seq <= acked) {
+                throw new IOException("Server acknowledged no change past " + acked);
+            }
+            final long newAcked = Math.min(ack.seq, batch.seq);
+            mDb.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    db.execSQL("DELETE FROM " + PetChangeLog.TABLE_NAME + " WHERE seq <= ?",
+                            new Object[]{newAcked});
+                    PetChangeLog.setState(db, PetChangeLog.KEY_UPLOADED_SEQ, newAcked);
+                }
+            });
+            uploaded += batch.changes.size();
+            acked = newAcked;
+        }
+    }
+
+    /**
+     * Reads the next batch of changes to upload. The batch's sequence number is the one of its
+     * last change; every change up to it is covered by the batch.
+     */
+    private SyncCodec.Batch readOutbox(SupportSQLiteDatabase db, long afterSeq) {
+        SyncCodec.Batch batch = new SyncCodec.Batch();
+        batch.clientId = mClientId;
+        Cursor cursor = db.query(OUTBOX_QUERY, new Object[]{afterSeq, BATCH_SIZE});
+        try {
+            while (cursor.moveToNext()) {
+                SyncCodec.Change change = new SyncCodec.Change();
+                change.seq = cursor.getLong(0);
+                change.petId = cursor.getInt(1);
+                change.deleted = cursor.getInt(2) != 0;
+                if (!change.deleted) {
+                    change.name = cursor.getString(3);
+                    change.breed = cursor.getString(4);
+                    change.gender = cursor.getInt(5);
+                    change.weight = cursor.getInt(6);
+                }
+                batch.changes.add(change);
+                batch.seq = change.seq;
+            }
+        } finally {
+            cursor.close();
+        }
+        return batch;
+    }
+
+    private int download() throws IOException {
+        final SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        long applied = PetChangeLog.getState(db, PetChangeLog.KEY_DOWNLOADED_SEQ);
+        int downloaded = 0;
+        SyncCodec.Batch batch;
+        do {
+            batch = SyncCodec.decode(mTransport.download(mClientId, applied, BATCH_SIZE));
+            if (batch.seq <= applied) {
+                break;
+            }
+            apply(db, batch);
+            downloaded += batch.changes.size();
+            applied = batch.seq;
+        } while (batch.more);
+        return downloaded;
+    }
+
+    /**
+     * Applies the downloaded changes and stores the sequence number reached, in one transaction.
+     */
+    private void apply(final SupportSQLiteDatabase db, final SyncCodec.Batch batch) {
+        // New breeds are added before the transaction, which mustn't roll back cached ids.
+        final List<PetEntry> pets = new ArrayList<>(batch.changes.size());
+        BreedDictionary breeds = mDb.getBreedDictionary();
+        for (SyncCodec.Change change : batch.changes) {
+            pets.add(change.deleted ? null : new PetEntry(change.petId, change.name,
+                    breeds.getOrCreateId(change.breed), change.gender, change.weight));
+        }
+
+        final PetDao dao = mDb.petDao();
+        mDb.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                PetChangeLog.beginApplyingRemote(db);
+                for (int i = 0; i < pets.size(); i++) {
+                    PetEntry pet = pets.get(i);
+                    if (pet == null) {
+                        dao.deletePet(batch.changes.get(i).petId);
+                    } else if (dao.updatePet(pet.getId(), pet.getName(), pet.getBreedId(),
+                            pet.getGender(), pet.getWeight()) == 0) {
+                        // Updated rather than replaced when it exists, so the search index
+                        // and statistics triggers see an update instead of a silent delete,
+                        // and editors holding the previous version see a conflict.
+                        dao.insertPet(pet);
+                    }
+                }
+                PetChangeLog.endApplyingRemote(db);
+                PetChangeLog.setState(db, PetChangeLog.KEY_DOWNLOADED_SEQ, batch.seq);
+            }
+        });
+        for (SyncCodec.Change change : batch.changes) {
+            mCache.remove(change.petId);
+        }
+    }
+}
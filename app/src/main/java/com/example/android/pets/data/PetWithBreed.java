@@ -0,0 +1,37 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.Embedded;
+
+/**
+ * A row of the pet table joined with the name of its breed.
+ */
+public class PetWithBreed {
+
+    @Embedded
+    private PetEntry pet;
+    private String breed;
+
+    public PetEntry getPet() {
+        return pet;
+    }
+
+    public void setPet(PetEntry pet) {
+        this.pet = pet;
+    }
+
+    public String getBreed() {
+        return breed;
+    }
+
+    public void setBreed(String breed) {
+        this.breed = breed;
+    }
+
+    /**
+     * @return the pet, with its breed name set
+     */
+    public PetEntry toPetEntry() {
+        pet.setBreed(breed);
+        return pet;
+    }
+}
@@ -1,29 +1,346 @@
 package com.example.android.pets.data;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.migration.Migration;
 import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
 
-@Database(entities = {PetEntry.class}, version = 1, exportSchema = false)
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Database(entities = {PetEntry.class, BreedEntry.class, PetGenderStats.class, PetBreedStats.class},
+        version = 11, exportSchema = false)
 public abstract class PetsDatabase extends RoomDatabase {
 
     private static final Object LOCK = new Object();
-    private static final String DATABASE_NAME = "pets_shelter";
-    private static PetsDatabase INSTANCE;
+    public static final String DATABASE_NAME = "pets_shelter";
+
+    /**
+     * Databases opened through {@link #getInstance}, by file name. Reads go straight to the
+     * map; only opening and closing a database take {@link #LOCK}.
+     */
+    private static final Map<String, OpenDatabase> OPEN_DATABASES = new ConcurrentHashMap<>();
+
+    /** Adds the full text search index over pet names and breeds */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            LegacySchema.createSearchIndexV2(database);
+        }
+    };
+
+    /** Adds the indices used to filter and sort the catalog */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_pet_name ON pet (name)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_pet_breed ON pet (breed)");
+            database.execSQL(
+                    "CREATE INDEX IF NOT EXISTS index_pet_gender_weight ON pet (gender, weight)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_pet_weight ON pet (weight)");
+        }
+    };
+
+    /** Adds the statistics summary tables and the triggers maintaining them */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS " + PetGenderStats.TABLE_NAME
+                    + " (gender INTEGER NOT NULL, pet_count INTEGER NOT NULL, PRIMARY KEY(gender))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS " + PetBreedStats.TABLE_NAME
+                    + " (breed TEXT NOT NULL, pet_count INTEGER NOT NULL, "
+                    + "total_weight INTEGER NOT NULL, min_weight INTEGER NOT NULL, "
+                    + "max_weight INTEGER NOT NULL, PRIMARY KEY(breed))");
+            LegacySchema.createStatsTriggersV4(database);
+        }
+    };
+
+    /**
+     * Moves breed names into the breed table, referenced by id from each pet. Dropping the old
+     * pet table drops the triggers of {@link #MIGRATION_1_2} and {@link #MIGRATION_3_4}, so the
+     * search index, now split between pet and breed names, and the breed statistics, now keyed
+     * by breed id, are rebuilt.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            BreedMigration.migrate(database);
+
+            database.execSQL("DROP TABLE IF EXISTS " + PetSearch.FTS_TABLE_NAME);
+            PetSearch.createIndex(database);
+            PetSearch.rebuildIndex(database);
+
+            database.execSQL("DROP TABLE IF EXISTS " + PetBreedStats.TABLE_NAME);
+            database.execSQL("CREATE TABLE " + PetBreedStats.TABLE_NAME
+                    + " (breed_id INTEGER NOT NULL, pet_count INTEGER NOT NULL, "
+                    + "total_weight INTEGER NOT NULL, min_weight INTEGER NOT NULL, "
+                    + "max_weight INTEGER NOT NULL, PRIMARY KEY(breed_id))");
+            PetStats.createTriggers(database);
+            PetStats.recompute(database);
+        }
+    };
+
+    /**
+     * Adds the change log read by {@link PetSyncEngine}. Existing pets are recorded as inserted,
+     * so the first sync uploads them.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            PetChangeLog.create(database);
+            PetChangeLog.recordAll(database);
+        }
+    };
+
+    /** Adds the version used to detect concurrent updates of a pet */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE pet ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /** Adds the photo of each pet, stored as a file referenced by name */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE pet ADD COLUMN photo_path TEXT");
+        }
+    };
+
+    /**
+     * Switches existing databases to incremental auto-vacuum, so purges can reclaim space in
+     * small steps. The setting takes effect with the VACUUM run by
+     * {@link PetPurger#enableIncrementalVacuum}, which can't run in the migration's transaction.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        }
+    };
+
+    /** Adds the index walked by {@link PetFilter} to sort pets by breed */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_pet_breed_id ON pet (breed_id)");
+        }
+    };
+
+    /**
+     * Rebuilds the breed table with a NOCASE name column, so its unique index serves the
+     * case-insensitive lookups of breed names and the breed order of the catalog. Dropping the
+     * old table drops the triggers of the breed search index, which are created again.
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE breed_new (id INTEGER PRIMARY KEY AUTOINCREMENT "
+                    + "NOT NULL, name TEXT NOT NULL COLLATE NOCASE)");
+            // BreedDictionary never stores two names differing only in ASCII case.
+            database.execSQL("INSERT INTO breed_new (id, name) SELECT id, name FROM breed");
+            database.execSQL("DROP TABLE breed");
+            database.execSQL("ALTER TABLE breed_new RENAME TO breed");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_breed_name ON breed (name)");
+            PetSearch.createIndex(database);
+        }
+    };
+
+    /**
+     * Creates the tables and triggers Room doesn't manage when the database is first created.
+     * New databases switch to incremental auto-vacuum with the next run of
+     * {@link PetPurger#enableIncrementalVacuum}, like migrated ones.
+     */
+    private static final Callback CREATE_CALLBACK = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            PetSearch.createIndex(db);
+            PetStats.createTriggers(db);
+            PetChangeLog.create(db);
+        }
+    };
 
     public static PetsDatabase getInstance(Context context) {
-        if(INSTANCE == null) {
-            synchronized (LOCK){
-                INSTANCE = Room.databaseBuilder(
-                        context.getApplicationContext(),
-                        PetsDatabase.class, PetsDatabase.DATABASE_NAME)
-                        .build();
+        return getInstance(context, DATABASE_NAME, TuningProfile.DURABLE);
+    }
+
+    /**
+     * Returns the default database, building it with the given tuning profile if it isn't open
+     * yet. The profile has no effect once the database has been built.
+     */
+    public static PetsDatabase getInstance(Context context, TuningProfile profile) {
+        return getInstance(context, DATABASE_NAME, profile);
+    }
+
+    public static PetsDatabase getInstance(Context context, String name) {
+        return getInstance(context, name, TuningProfile.DURABLE);
+    }
+
+    /**
+     * Returns the database stored in the given file, building it with the given tuning profile
+     * if it isn't open yet. Every caller asking for the same name gets the same instance until
+     * it is closed with {@link #close(String)} or {@link #evictIdle(long)}.
+     */
+    public static PetsDatabase getInstance(Context context, String name, TuningProfile profile) {
+        OpenDatabase open = OPEN_DATABASES.get(name);
+        if (open == null) {
+            synchronized (LOCK) {
+                open = OPEN_DATABASES.get(name);
+                if (open == null) {
+                    open = new OpenDatabase(create(context, name, profile));
+                    OPEN_DATABASES.put(name, open);
+                }
+            }
+        }
+        open.lastAccessUptimeMillis = SystemClock.uptimeMillis();
+        return open.database;
+    }
+
+    /**
+     * Closes the database stored in the given file, if it was opened with {@link #getInstance}.
+     * Instances previously returned for that name must not be used afterwards; the next call to
+     * getInstance opens a new one.
+     *
+     * @return true if the database was open
+     */
+    public static boolean close(String name) {
+        OpenDatabase open;
+        synchronized (LOCK) {
+            open = OPEN_DATABASES.remove(name);
+        }
+        if (open == null) {
+            return false;
+        }
+        open.database.close();
+        return true;
+    }
+
+    /**
+     * Closes every database other than the default one that hasn't been returned by
+     * {@link #getInstance} for at least the given time.
+     *
+     * @return the number of databases closed
+     */
+    public static int evictIdle(long idleMillis) {
+        long now = SystemClock.uptimeMillis();
+        List<OpenDatabase> evicted = new ArrayList<>();
+        synchronized (LOCK) {
+            Iterator<Map.Entry<String, OpenDatabase>> iterator =
+                    OPEN_DATABASES.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, OpenDatabase> entry = iterator.next();
+                if (!DATABASE_NAME.equals(entry.getKey())
+                        && now - entry.getValue().lastAccessUptimeMillis >= idleMillis) {
+                    evicted.add(entry.getValue());
+                    iterator.remove();
+                }
             }
         }
+        for (OpenDatabase open : evicted) {
+            open.database.close();
+        }
+        return evicted.size();
+    }
 
-        return INSTANCE;
+    /**
+     * @return the names of the databases currently open through {@link #getInstance}
+     */
+    public static List<String> getOpenDatabaseNames() {
+        return new ArrayList<>(OPEN_DATABASES.keySet());
+    }
+
+    /**
+     * Builds a new, unshared database in the given file. The caller is responsible for
+     * closing it. Every statement run on the database is recorded in {@link QueryMetrics}.
+     */
+    public static PetsDatabase create(Context context, String name, TuningProfile profile) {
+        return profile.applyTo(Room.databaseBuilder(
+                context.getApplicationContext(), PetsDatabase.class, name))
+                .openHelperFactory(new InstrumentedOpenHelperFactory(
+                        new FrameworkSQLiteOpenHelperFactory(), QueryMetrics.getInstance()))
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                        MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9,
+                        MIGRATION_9_10, MIGRATION_10_11)
+                .addCallback(CREATE_CALLBACK)
+                .build();
     }
 
     public abstract PetDao petDao();
+
+    public abstract PetStatsDao petStatsDao();
+
+    public abstract BreedDao breedDao();
+
+    private volatile BreedDictionary mBreedDictionary;
+
+    /**
+     * @return the in-memory dictionary of the breeds stored in this database
+     */
+    public BreedDictionary getBreedDictionary() {
+        if (mBreedDictionary == null) {
+            synchronized (this) {
+                if (mBreedDictionary == null) {
+                    mBreedDictionary = new BreedDictionary(this);
+                }
+            }
+        }
+        return mBreedDictionary;
+    }
+
+    private volatile PetCache mPetCache;
+
+    /**
+     * @return the cache of the pets of this database by id. Every database has its own, since
+     * pet ids are only unique within a database.
+     */
+    public PetCache getPetCache() {
+        if (mPetCache == null) {
+            synchronized (this) {
+                if (mPetCache == null) {
+                    mPetCache = new PetCache(PetCache.DEFAULT_MAX_SIZE_BYTES);
+                }
+            }
+        }
+        return mPetCache;
+    }
+
+    private volatile PrefetchedPage mPrefetchedPage;
+
+    /**
+     * @return the first catalog page prefetched from this database. Must be called off the main
+     * thread, since the first call starts observing the tables.
+     */
+    PrefetchedPage getPrefetchedPage() {
+        if (mPrefetchedPage == null) {
+            synchronized (this) {
+                if (mPrefetchedPage == null) {
+                    mPrefetchedPage = new PrefetchedPage(this);
+                }
+            }
+        }
+        return mPrefetchedPage;
+    }
+
+    /**
+     * A database in the registry, with the last time it was handed out.
+     */
+    private static class OpenDatabase {
+
+        final PetsDatabase database;
+        volatile long lastAccessUptimeMillis;
+
+        OpenDatabase(PetsDatabase database) {
+            this.database = database;
+        }
+    }
 }
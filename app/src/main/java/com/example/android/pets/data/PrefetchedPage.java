@@ -0,0 +1,70 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.room.InvalidationTracker;
+import android.support.annotation.NonNull;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * First page of the catalog of one database, read ahead of time by
+ * {@link PetKeysetDataSource#prefetchFirstPage}. Every change of the pet or breed table bumps a
+ * generation counter, and a page is only handed out if the generation it was read at is still
+ * the current one. A change committed while the page is being read thus always drops it, even
+ * if its notification only arrives once the page has been stored.
+ *
+ * Instances are held by their {@link PetsDatabase}, see {@link PetsDatabase#getPrefetchedPage}.
+ */
+class PrefetchedPage {
+
+    /** Number of changes of the observed tables seen so far */
+    private int mGeneration;
+
+    private List<PetSummary> mPage;
+    private int mPageGeneration;
+
+    /**
+     * Starts observing the tables of the page. Touches the database, so must be called off
+     * the main thread.
+     */
+    PrefetchedPage(PetsDatabase db) {
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer(
+                PetEntry.TABLE_NAME, BreedEntry.TABLE_NAME) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                synchronized (PrefetchedPage.this) {
+                    mGeneration++;
+                    mPage = null;
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the current generation, to be read before the page is queried and passed to
+     * {@link #set}
+     */
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Stores a page read at the given generation, unless the tables changed since.
+     */
+    synchronized void set(List<PetSummary> page, int generation) {
+        if (generation == mGeneration) {
+            mPage = page;
+            mPageGeneration = generation;
+        }
+    }
+
+    /**
+     * @return the stored page if the tables didn't change since it was read, or null. The page
+     * is handed out only once.
+     */
+    synchronized List<PetSummary> take() {
+        List<PetSummary> page = mPage;
+        mPage = null;
+        return page != null && mPageGeneration == mGeneration ? page : null;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.android.pets.data;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per statement latency and row count statistics, recorded by {@link InstrumentedOpenHelperFactory}
+ * for every SQL statement run on a {@link PetsDatabase}.
+ *
+ * Recording only takes a map lookup and a few atomic increments, with latencies kept in fixed
+ * power of two buckets, so it is cheap enough to stay enabled in release builds.
+ */
+public class QueryMetrics {
+
+    /** Number of latency buckets. Bucket i counts latencies below 2^i microseconds. */
+    private static final int BUCKET_COUNT = 24;
+
+    /** Distinct statements tracked before new ones are folded into {@link #OTHER_SQL} */
+    private static final int MAX_STATEMENTS = 256;
+
+    private static final String OTHER_SQL = "<other statements>";
+
+    private static final QueryMetrics INSTANCE = new QueryMetrics();
+
+    private final ConcurrentMap<String, StatementStats> mStats = new ConcurrentHashMap<>();
+
+    public static QueryMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Statistics of one SQL statement.
+     */
+    public static class StatementStats {
+
+        private final String mSql;
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mMainThreadCount = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+        private final AtomicLong mMaxNanos = new AtomicLong();
+        private final AtomicLong mRows = new AtomicLong();
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+        StatementStats(String sql) {
+            mSql = sql;
+        }
+
+        void record(long nanos, long rows, boolean mainThread) {
+            mCount.incrementAndGet();
+            if (mainThread) {
+                mMainThreadCount.incrementAndGet();
+            }
+            mTotalNanos.addAndGet(nanos);
+            mRows.addAndGet(rows);
+            long max;
+            while (nanos > (max = mMaxNanos.get()) && !mMaxNanos.compareAndSet(max, nanos)) {
+                // Another thread raised the max in the meantime, try again.
+            }
+            mBuckets.incrementAndGet(bucketOf(nanos));
+        }
+
+        private static int bucketOf(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            return Math.min(bucket, BUCKET_COUNT - 1);
+        }
+
+        public String getSql() {
+            return mSql;
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        /** Number of executions that ran on the main thread */
+        public long getMainThreadCount() {
+            return mMainThreadCount.get();
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos.get();
+        }
+
+        /** Rows returned by queries, or rows inserted, updated or deleted by writes */
+        public long getRows() {
+            return mRows.get();
+        }
+
+        /**
+         * @return the number of executions per latency bucket, bucket i counting latencies below
+         * 2^i microseconds
+         */
+        public long[] getHistogram() {
+            long[] histogram = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                histogram[i] = mBuckets.get(i);
+            }
+            return histogram;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the given percentile, in microseconds
+         */
+        public long getPercentileMicros(double percentile) {
+            long[] histogram = getHistogram();
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank && seen > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Records one execution of a statement.
+     *
+     * @param rows rows returned by a query, or affected by a write
+     */
+    void record(String sql, long nanos, long rows, boolean mainThread) {
+        statsFor(sql).record(nanos, rows, mainThread);
+    }
+
+    private StatementStats statsFor(String sql) {
+        StatementStats stats = mStats.get(sql);
+        if (stats == null) {
+            if (mStats.size() >= MAX_STATEMENTS) {
+                sql = OTHER_SQL;
+            }
+            StatementStats newStats = new StatementStats(sql);
+            stats = mStats.putIfAbsent(sql, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @return the statistics of every statement, slowest total time first
+     */
+    public List<StatementStats> getStats() {
+        List<StatementStats> stats = new ArrayList<>(mStats.values());
+        Collections.sort(stats, new Comparator<StatementStats>() {
+            @Override
+            public int compare(StatementStats a, StatementStats b) {
+                long difference = b.getTotalNanos() - a.getTotalNanos();
+                return difference > 0 ? 1 : difference < 0 ? -1 : 0;
+            }
+        });
+        return stats;
+    }
+
+    public void reset() {
+        mStats.clear();
+    }
+
+    /**
+     * Writes a human readable report of all statements, slowest total time first.
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("SQL statements (total ms, count, main thread count, mean/p50/p95/max ms, rows):");
+        for (StatementStats stats : getStats()) {
+            long count = stats.getCount();
+            writer.println(String.format(Locale.US,
+                    "  %9.1f %7d %5d  %7.2f/%7.2f/%7.2f/%7.2f %9d  %s",
+                    stats.getTotalNanos() / 1e6, count, stats.getMainThreadCount(),
+                    count == 0 ? 0 : stats.getTotalNanos() / 1e6 / count,
+                    stats.getPercentileMicros(50) / 1e3, stats.getPercentileMicros(95) / 1e3,
+                    stats.getMaxNanos() / 1e6, stats.getRows(), stats.getSql()));
+        }
+    }
+}
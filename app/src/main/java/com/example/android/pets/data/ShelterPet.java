@@ -0,0 +1,30 @@
+package com.example.android.pets.data;
+
+/**
+ * A pet read by {@link ShelterShards}, with the shelter whose database it is stored in.
+ * Pet ids are only unique within a shelter.
+ */
+public class ShelterPet {
+
+    private final int shelterId;
+    private final PetSummary pet;
+
+    // Sort keys used to merge the results of several shelters
+    final int weight;
+    final boolean nameMatch;
+
+    ShelterPet(int shelterId, PetSummary pet, int weight, boolean nameMatch) {
+        this.shelterId = shelterId;
+        this.pet = pet;
+        this.weight = weight;
+        this.nameMatch = nameMatch;
+    }
+
+    public int getShelterId() {
+        return shelterId;
+    }
+
+    public PetSummary getPet() {
+        return pet;
+    }
+}
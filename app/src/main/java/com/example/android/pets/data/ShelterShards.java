@@ -0,0 +1,403 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Stores the pets of each shelter in a database file of its own, so queries about one shelter
+ * only read that shelter's pets. Queries spanning every shelter run on all shards in parallel,
+ * and their sorted results are merged.
+ *
+ * The methods reading from the shards block, and must be called off the main thread.
+ */
+public class ShelterShards {
+
+    /** Prefix of the database file of each shelter, followed by the shelter id */
+    static final String SHARD_NAME_PREFIX = PetsDatabase.DATABASE_NAME + "_";
+
+    /** Maximum number of shards queried at the same time */
+    private static final int MAX_PARALLEL_QUERIES = 4;
+
+    private static final ExecutorService sQueryExecutor =
+            Executors.newFixedThreadPool(MAX_PARALLEL_QUERIES);
+
+    private final Context mContext;
+
+    public ShelterShards(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static String getDatabaseName(int shelterId) {
+        return SHARD_NAME_PREFIX + shelterId;
+    }
+
+    /**
+     * Returns the database storing the pets of a shelter, creating it if needed.
+     */
+    public PetsDatabase getShard(int shelterId) {
+        return PetsDatabase.getInstance(mContext, getDatabaseName(shelterId));
+    }
+
+    /**
+     * @return the ids of the shelters that have a database, in increasing order
+     */
+    public List<Integer> getShelterIds() {
+        List<Integer> shelterIds = new ArrayList<>();
+        for (String name : mContext.databaseList()) {
+            if (!name.startsWith(SHARD_NAME_PREFIX)) {
+                continue;
+            }
+            try {
+                shelterIds.add(Integer.parseInt(name.substring(SHARD_NAME_PREFIX.length())));
+            } catch (NumberFormatException e) {
+                // Journal and WAL files sharing the prefix of a shard
+            }
+        }
+        Collections.sort(shelterIds);
+        return shelterIds;
+    }
+
+    /**
+     * Returns the first pets of one shelter matching the filter, in the filter's order.
+     */
+    public List<ShelterPet> queryPets(int shelterId, PetFilter filter, int limit) {
+        return queryShard(shelterId, filter, 0, limit);
+    }
+
+    /**
+     * Returns the first pets of every shelter matching the filter, in the filter's order.
+     * Pets ordered the same way are ordered by id, then by shelter id.
+     */
+    public List<ShelterPet> queryAllPets(PetFilter filter, int limit)
+            throws InterruptedException {
+        return queryAllPets(filter, null, limit).getPets();
+    }
+
+    /**
+     * Returns the page of the pets of every shelter matching the filter that follows the
+     * previous page, in the filter's order. Each shelter is queried from the offset the previous
+     * page stopped at in that shelter, so every page reads at most {@code limit} pets per
+     * shelter. Like {@link PetQueryDataSource}, pets added or deleted between two pages can
+     * shift the following pages.
+     *
+     * @param previous the last page read with the same filter, or null for the first page
+     */
+    public Page queryAllPets(final PetFilter filter, @Nullable Page previous, final int limit)
+            throws InterruptedException {
+        final List<Integer> shelterIds = getShelterIds();
+        final int[] offsets = new int[shelterIds.size()];
+        List<Callable<List<ShelterPet>>> queries = new ArrayList<>();
+        for (int i = 0; i < shelterIds.size(); i++) {
+            final int shelterId = shelterIds.get(i);
+            offsets[i] = previous != null ? previous.getOffset(shelterId) : 0;
+            final int offset = offsets[i];
+            queries.add(new Callable<List<ShelterPet>>() {
+                @Override
+                public List<ShelterPet> call() {
+                    return queryShard(shelterId, filter, offset, limit);
+                }
+            });
+        }
+        List<List<ShelterPet>> sortedLists = getAll(sQueryExecutor.invokeAll(queries));
+        int[] taken = new int[sortedLists.size()];
+        List<ShelterPet> pets =
+                merge(sortedLists, new PetComparator(filter.getSortOrder()), limit, taken);
+
+        Map<Integer, Integer> nextOffsets = new HashMap<>();
+        boolean hasMore = false;
+        for (int i = 0; i < shelterIds.size(); i++) {
+            nextOffsets.put(shelterIds.get(i), offsets[i] + taken[i]);
+            // A shelter that returned a full page may have more pets after it.
+            hasMore |= taken[i] < sortedLists.get(i).size() || sortedLists.get(i).size() == limit;
+        }
+        return new Page(pets, nextOffsets, hasMore);
+    }
+
+    /**
+     * One page of the pets of every shelter, with the position the next page starts at in each
+     * shelter.
+     */
+    public static class Page {
+
+        private final List<ShelterPet> mPets;
+        private final Map<Integer, Integer> mNextOffsets;
+        private final boolean mHasMore;
+
+        Page(List<ShelterPet> pets, Map<Integer, Integer> nextOffsets, boolean hasMore) {
+            mPets = pets;
+            mNextOffsets = nextOffsets;
+            mHasMore = hasMore;
+        }
+
+        public List<ShelterPet> getPets() {
+            return mPets;
+        }
+
+        /**
+         * @return false if no shelter has pets after this page
+         */
+        public boolean hasMore() {
+            return mHasMore;
+        }
+
+        /**
+         * @return the number of pets of the shelter returned up to and including this page
+         */
+        int getOffset(int shelterId) {
+            Integer offset = mNextOffsets.get(shelterId);
+            return offset != null ? offset : 0;
+        }
+    }
+
+    /**
+     * Adds up the number of pets of each gender of every shelter, in gender order.
+     */
+    public List<PetGenderStats> getAllGenderStats() throws InterruptedException {
+        List<Callable<List<PetGenderStats>>> queries = new ArrayList<>();
+        for (final int shelterId : getShelterIds()) {
+            queries.add(new Callable<List<PetGenderStats>>() {
+                @Override
+                public List<PetGenderStats> call() {
+                    return getShard(shelterId).petStatsDao().getGenderStats();
+                }
+            });
+        }
+        Map<Integer, Integer> counts = new TreeMap<>();
+        for (List<PetGenderStats> shardStats : getAll(sQueryExecutor.invokeAll(queries))) {
+            for (PetGenderStats stats : shardStats) {
+                Integer count = counts.get(stats.getGender());
+                counts.put(stats.getGender(),
+                        (count != null ? count : 0) + stats.getPetCount());
+            }
+        }
+        List<PetGenderStats> merged = new ArrayList<>(counts.size());
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            merged.add(new PetGenderStats(entry.getKey(), entry.getValue()));
+        }
+        return merged;
+    }
+
+    /**
+     * Combines the breed statistics of every shelter, most pets first, then by breed name.
+     * Breed ids are local to each shelter, so breeds are matched by name ignoring case, and the
+     * combined statistics have a breed id of 0.
+     */
+    public List<NamedBreedStats> getAllBreedStats() throws InterruptedException {
+        List<Callable<List<NamedBreedStats>>> queries = new ArrayList<>();
+        for (final int shelterId : getShelterIds()) {
+            queries.add(new Callable<List<NamedBreedStats>>() {
+                @Override
+                public List<NamedBreedStats> call() {
+                    return getShard(shelterId).petStatsDao().getNamedBreedStats();
+                }
+            });
+        }
+        // Keyed by breed name as matched by BreedDictionary, with "" for pets without a breed.
+        Map<String, NamedBreedStats> byBreed = new LinkedHashMap<>();
+        for (List<NamedBreedStats> shardStats : getAll(sQueryExecutor.invokeAll(queries))) {
+            for (NamedBreedStats stats : shardStats) {
+                String key = stats.getBreed() != null
+                        ? BreedDictionary.toKey(stats.getBreed()) : "";
+                NamedBreedStats merged = byBreed.get(key);
+                if (merged == null) {
+                    merged = new NamedBreedStats();
+                    merged.setBreed(stats.getBreed());
+                    merged.setStats(withBreedId(stats.getStats(), 0));
+                    byBreed.put(key, merged);
+                } else {
+                    merged.setStats(combine(merged.getStats(), stats.getStats()));
+                }
+            }
+        }
+        List<NamedBreedStats> merged = new ArrayList<>(byBreed.values());
+        Collections.sort(merged, new Comparator<NamedBreedStats>() {
+            @Override
+            public int compare(NamedBreedStats a, NamedBreedStats b) {
+                int result = PetComparator.compareInt(b.getStats().getPetCount(),
+                        a.getStats().getPetCount());
+                return result != 0
+                        ? result : PetComparator.compareText(a.getBreed(), b.getBreed());
+            }
+        });
+        return merged;
+    }
+
+    private static PetBreedStats withBreedId(PetBreedStats stats, int breedId) {
+        return new PetBreedStats(breedId, stats.getPetCount(), stats.getTotalWeight(),
+                stats.getMinWeight(), stats.getMaxWeight());
+    }
+
+    private static PetBreedStats combine(PetBreedStats a, PetBreedStats b) {
+        return new PetBreedStats(a.getBreedId(), a.getPetCount() + b.getPetCount(),
+                a.getTotalWeight() + b.getTotalWeight(),
+                Math.min(a.getMinWeight(), b.getMinWeight()),
+                Math.max(a.getMaxWeight(), b.getMaxWeight()));
+    }
+
+    /**
+     * Counts the pets of every shelter matching the filter.
+     */
+    public int countAllPets(final PetFilter filter) throws InterruptedException {
+        List<Callable<Integer>> queries = new ArrayList<>();
+        for (final int shelterId : getShelterIds()) {
+            queries.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    Cursor cursor = getShard(shelterId).query(filter.buildCountQuery());
+                    try {
+                        return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            });
+        }
+        int count = 0;
+        for (int shardCount : getAll(sQueryExecutor.invokeAll(queries))) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    private List<ShelterPet> queryShard(int shelterId, PetFilter filter, int offset, int limit) {
+        List<ShelterPet> pets = new ArrayList<>();
+        Cursor cursor = getShard(shelterId).query(filter.buildShardQuery(offset, limit));
+        try {
+            while (cursor.moveToNext()) {
+                PetSummary pet = new PetSummary(cursor.getInt(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getString(3));
+                pets.add(new ShelterPet(shelterId, pet, cursor.getInt(4), cursor.getInt(5) != 0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return pets;
+    }
+
+    /**
+     * Waits for every query, rethrowing the failure of the first query that failed.
+     */
+    private static <T> List<T> getAll(List<Future<T>> futures) throws InterruptedException {
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Error querying a shelter", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Merges lists already sorted by the comparator, keeping the first {@code limit} pets.
+     *
+     * @param taken receives the number of pets kept from each list
+     */
+    static List<ShelterPet> merge(final List<List<ShelterPet>> sortedLists,
+                                  final Comparator<ShelterPet> comparator, int limit,
+                                  int[] taken) {
+        // Each entry of the queue is the position of the next pet to take from one list.
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+                new Comparator<int[]>() {
+                    @Override
+                    public int compare(int[] a, int[] b) {
+                        return comparator.compare(sortedLists.get(a[0]).get(a[1]),
+                                sortedLists.get(b[0]).get(b[1]));
+                    }
+                });
+        for (int i = 0; i < sortedLists.size(); i++) {
+            if (!sortedLists.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+
+        List<ShelterPet> merged = new ArrayList<>();
+        while (merged.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<ShelterPet> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            taken[head[0]]++;
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Orders pets the way {@link PetFilter#buildShardQuery(int, int)} does within a shard.
+     * Names are compared like SQLite's default BINARY collation and breeds like the NOCASE
+     * collation of the breed name column, with nulls first.
+     */
+    static class PetComparator implements Comparator<ShelterPet> {
+
+        private final int mSortOrder;
+
+        PetComparator(int sortOrder) {
+            mSortOrder = sortOrder;
+        }
+
+        @Override
+        public int compare(ShelterPet a, ShelterPet b) {
+            int result;
+            switch (mSortOrder) {
+                case PetFilter.SORT_NAME:
+                    result = compareText(a.getPet().getName(), b.getPet().getName());
+                    break;
+                case PetFilter.SORT_BREED:
+                    result = compareText(toKey(a.getPet().getBreed()),
+                            toKey(b.getPet().getBreed()));
+                    break;
+                case PetFilter.SORT_WEIGHT:
+                    result = compareInt(a.weight, b.weight);
+                    break;
+                default:
+                    // Name matches first; always equal when not searching.
+                    result = compareInt(b.nameMatch ? 1 : 0, a.nameMatch ? 1 : 0);
+                    break;
+            }
+            if (result == 0) {
+                result = compareInt(a.getPet().getId(), b.getPet().getId());
+            }
+            if (result == 0) {
+                result = compareInt(a.getShelterId(), b.getShelterId());
+            }
+            return result;
+        }
+
+        private static String toKey(String breed) {
+            return breed != null ? BreedDictionary.toKey(breed) : null;
+        }
+
+        static int compareText(String a, String b) {
+            if (a == null || b == null) {
+                return a == null ? (b == null ? 0 : -1) : 1;
+            }
+            return a.compareTo(b);
+        }
+
+        static int compareInt(int a, int b) {
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    }
+}
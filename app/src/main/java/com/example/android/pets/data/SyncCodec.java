@@ -0,0 +1,162 @@
+package com.example.android.pets.data;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes the messages exchanged with the sync server as gzipped JSON. Every message is a
+ * {@link Batch}: uploads name the client and carry its changes, acknowledgements only carry a
+ * sequence number, and downloads carry changes with the sequence number to resume from, e.g.
+ * {@code {"client": "shelter-1", "seq": 42, "more": false, "changes": [{"seq": 42, "id": 7,
+ * "name": "Toto", "breed": "Terrier", "gender": 1, "weight": 7}, {"seq": 40, "id": 3,
+ * "deleted": true}]}}.
+ */
+final class SyncCodec {
+
+    /**
+     * A pet as it was after a change, or its deletion.
+     */
+    static class Change {
+        long seq;
+        int petId;
+        boolean deleted;
+        String name;
+        String breed;
+        int gender;
+        int weight;
+    }
+
+    /**
+     * One message. Fields a message doesn't use are left at their defaults.
+     */
+    static class Batch {
+        String clientId;
+        long seq;
+        boolean more;
+        List<Change> changes = new ArrayList<>();
+    }
+
+    private SyncCodec() {
+    }
+
+    static byte[] encode(Batch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(
+                new OutputStreamWriter(new GZIPOutputStream(bytes), "UTF-8"));
+        try {
+            json.beginObject();
+            if (batch.clientId != null) {
+                json.name("client").value(batch.clientId);
+            }
+            json.name("seq").value(batch.seq);
+            json.name("more").value(batch.more);
+            json.name("changes").beginArray();
+            for (Change change : batch.changes) {
+                json.beginObject();
+                json.name("seq").value(change.seq);
+                json.name("id").value(change.petId);
+                if (change.deleted) {
+                    json.name("deleted").value(true);
+                } else {
+                    json.name("name").value(change.name);
+                    json.name("breed").value(change.breed);
+                    json.name("gender").value(change.gender);
+                    json.name("weight").value(change.weight);
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        } finally {
+            json.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    static Batch decode(byte[] body) throws IOException {
+        Batch batch = new Batch();
+        JsonReader json = new JsonReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(body)), "UTF-8"));
+        try {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "client":
+                        batch.clientId = json.nextString();
+                        break;
+                    case "seq":
+                        batch.seq = json.nextLong();
+                        break;
+                    case "more":
+                        batch.more = json.nextBoolean();
+                        break;
+                    case "changes":
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            batch.changes.add(readChange(json));
+                        }
+                        json.endArray();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+        } finally {
+            json.close();
+        }
+        return batch;
+    }
+
+    private static Change readChange(JsonReader json) throws IOException {
+        Change change = new Change();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "seq":
+                    change.seq = json.nextLong();
+                    break;
+                case "id":
+                    change.petId = json.nextInt();
+                    break;
+                case "deleted":
+                    change.deleted = json.nextBoolean();
+                    break;
+                case "name":
+                    change.name = json.nextString();
+                    break;
+                case "breed":
+                    change.breed = json.nextString();
+                    break;
+                case "gender":
+                    change.gender = json.nextInt();
+                    break;
+                case "weight":
+                    change.weight = json.nextInt();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return change;
+    }
+}
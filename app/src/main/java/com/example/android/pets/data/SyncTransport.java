@@ -0,0 +1,30 @@
+package com.example.android.pets.data;
+
+import java.io.IOException;
+
+/**
+ * Carries the requests of {@link PetSyncEngine} to the sync server. Bodies are gzipped JSON,
+ * encoded and decoded by {@link SyncCodec}; the transport only moves the bytes. Calls are made
+ * on the syncing thread and may block.
+ */
+public interface SyncTransport {
+
+    /**
+     * Sends a batch of local changes.
+     *
+     * @param body the encoded batch, naming the client and the sequence number of each change
+     * @return the encoded acknowledgement, holding the last local sequence number the server
+     * has stored
+     */
+    byte[] upload(byte[] body) throws IOException;
+
+    /**
+     * Fetches the changes made by other clients.
+     *
+     * @param clientId client whose own changes are left out
+     * @param afterSeq last server sequence number the client has applied
+     * @param limit maximum number of changes returned
+     * @return the encoded changes, with the server sequence number to resume from
+     */
+    byte[] download(String clientId, long afterSeq, int limit) throws IOException;
+}
@@ -0,0 +1,97 @@
+package com.example.android.pets.data;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.RoomDatabase;
+import android.support.annotation.NonNull;
+
+/**
+ * SQLite settings applied to a {@link PetsDatabase} when it is built and opened.
+ *
+ * Both presets use write ahead logging, which lets readers run on their own connections while
+ * a write transaction is in progress. They differ in how much they trade durability for speed.
+ *
+ * The framework opens the reader connections itself and, before Android 11, gives no hook to
+ * configure them, so a profile only holds settings that reach every connection they matter to:
+ * the journal mode, which belongs to the database file, and {@link #getSynchronous()}, which
+ * only matters to writes, and every write runs on the primary connection the profile is
+ * applied to. Connection settings such as the page cache size or memory mapping would only
+ * reach the primary connection, not the readers serving LiveData and paging, so profiles leave
+ * them at SQLite's defaults. The number of reader connections is a platform setting that Room
+ * and the framework don't expose either.
+ */
+public class TuningProfile {
+
+    /** Values of PRAGMA synchronous */
+    public static final String SYNCHRONOUS_OFF = "OFF";
+    public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+    public static final String SYNCHRONOUS_FULL = "FULL";
+
+    /**
+     * Syncs the WAL on every commit, so a committed write survives a power loss.
+     */
+    public static final TuningProfile DURABLE =
+            new TuningProfile("durable", true, SYNCHRONOUS_FULL);
+
+    /**
+     * Only syncs at checkpoints. The database can't be corrupted, but the last commits may be
+     * lost on a power loss.
+     */
+    public static final TuningProfile THROUGHPUT =
+            new TuningProfile("throughput", true, SYNCHRONOUS_NORMAL);
+
+    private final String name;
+    private final boolean writeAheadLogging;
+    private final String synchronous;
+
+    /**
+     * @param name              Name used when logging or reporting the profile
+     * @param writeAheadLogging true to use WAL, false for a rollback journal
+     * @param synchronous       One of the SYNCHRONOUS_ constants
+     */
+    public TuningProfile(String name, boolean writeAheadLogging, String synchronous) {
+        this.name = name;
+        this.writeAheadLogging = writeAheadLogging;
+        this.synchronous = synchronous;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     * Sets the journal mode of the database being built and registers the callback applying
+     * the rest of the profile to the primary connection whenever the database is opened.
+     */
+    <T extends RoomDatabase> RoomDatabase.Builder<T> applyTo(RoomDatabase.Builder<T> builder) {
+        return builder
+                .setJournalMode(writeAheadLogging
+                        ? RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING
+                        : RoomDatabase.JournalMode.TRUNCATE)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        applyPragmas(db);
+                    }
+                });
+    }
+
+    /**
+     * Applies the connection settings of the profile to the primary connection.
+     */
+    void applyPragmas(SupportSQLiteDatabase db) {
+        db.execSQL("PRAGMA synchronous = " + synchronous);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
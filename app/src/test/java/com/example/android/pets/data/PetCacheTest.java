@@ -0,0 +1,147 @@
+package com.example.android.pets.data;
+
+import android.app.Application;
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that every database has its own {@link PetCache}, that cached entries can't be
+ * changed through the objects put into or read from the cache, and how entries are evicted and
+ * counted.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = Application.class)
+public class PetCacheTest {
+
+    private static final String FIRST_NAME = "pets_cache_first";
+    private static final String SECOND_NAME = "pets_cache_second";
+
+    private Context mContext;
+    private PetsDatabase mFirst;
+    private PetsDatabase mSecond;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mFirst = PetsDatabase.create(mContext, FIRST_NAME, TuningProfile.DURABLE);
+        mSecond = PetsDatabase.create(mContext, SECOND_NAME, TuningProfile.DURABLE);
+    }
+
+    @After
+    public void tearDown() {
+        mFirst.close();
+        mSecond.close();
+        mContext.deleteDatabase(FIRST_NAME);
+        mContext.deleteDatabase(SECOND_NAME);
+    }
+
+    @Test
+    public void databases_haveSeparateCaches() {
+        assertSame(mFirst.getPetCache(), mFirst.getPetCache());
+        assertNotSame(mFirst.getPetCache(), mSecond.getPetCache());
+
+        // The same id names a different pet in each database.
+        mFirst.getPetCache().put(new PetEntry(1, "Rex", "Boxer", PetEntry.GENDER_MALE, 30));
+        assertNull(mSecond.getPetCache().get(1));
+        mSecond.getPetCache().put(new PetEntry(1, "Bella", "Beagle", PetEntry.GENDER_FEMALE, 12));
+
+        assertEquals("Rex", mFirst.getPetCache().get(1).getName());
+        assertEquals("Bella", mSecond.getPetCache().get(1).getName());
+    }
+
+    @Test
+    public void entries_areCopiedInAndOut() {
+        PetCache cache = new PetCache(PetCache.DEFAULT_MAX_SIZE_BYTES);
+        PetEntry pet = new PetEntry(1, "Rex", "Boxer", PetEntry.GENDER_MALE, 30);
+        pet.setVersion(3);
+        cache.put(pet);
+        pet.setName("Changed after put");
+
+        PetEntry read = cache.get(1);
+        assertNotNull(read);
+        assertEquals("Rex", read.getName());
+        assertEquals(3, read.getVersion());
+        read.setWeight(99);
+
+        assertNotSame(read, cache.get(1));
+        assertEquals(30, cache.get(1).getWeight());
+    }
+
+    @Test
+    public void entries_evictedLeastRecentlyUsedFirstPastByteLimit() {
+        int entryBytes = sizeOf(pet(1));
+        PetCache cache = new PetCache(3 * entryBytes);
+        cache.put(pet(1));
+        cache.put(pet(2));
+        cache.put(pet(3));
+        assertEquals(3 * entryBytes, cache.size());
+
+        // Reading pet 1 makes pet 2 the least recently used.
+        assertNotNull(cache.get(1));
+        cache.put(pet(4));
+
+        assertEquals(3 * entryBytes, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(4));
+    }
+
+    @Test
+    public void counters_countHitsMissesAndEvictions() {
+        PetCache cache = new PetCache(2 * sizeOf(pet(1)));
+        assertNull(cache.get(1));
+        cache.put(pet(1));
+        cache.put(pet(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(2));
+        cache.put(pet(3));
+        cache.put(pet(4));
+        assertNull(cache.get(1));
+
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void size_growsWithTheStrings() {
+        PetCache cache = new PetCache(PetCache.DEFAULT_MAX_SIZE_BYTES);
+        cache.put(pet(1));
+        int shortEntryBytes = cache.size();
+        cache.clear();
+
+        PetEntry longer = pet(1);
+        longer.setPhotoPath("photo_1.jpg");
+        cache.put(longer);
+        assertTrue(cache.size() > shortEntryBytes);
+    }
+
+    /**
+     * @return a pet whose strings have the same length for every id below 10
+     */
+    private static PetEntry pet(int id) {
+        return new PetEntry(id, "Pet " + id, "Boxer", PetEntry.GENDER_MALE, 30);
+    }
+
+    private static int sizeOf(PetEntry pet) {
+        PetCache cache = new PetCache(PetCache.DEFAULT_MAX_SIZE_BYTES);
+        cache.put(pet);
+        return cache.size();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.android.pets.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks how {@link ShelterShards} merges the sorted pets of several shelters, in particular
+ * pets with equal sort keys and pets without a breed.
+ */
+public class ShelterShardsMergeTest {
+
+    @Test
+    public void equalNames_orderedByIdThenShelter() {
+        List<List<ShelterPet>> lists = Arrays.asList(
+                Arrays.asList(pet(2, 1, "Rex", null), pet(2, 3, "Rex", null)),
+                Arrays.asList(pet(1, 1, "Rex", null), pet(1, 2, "Rex", null)));
+
+        int[] taken = new int[2];
+        List<ShelterPet> merged = ShelterShards.merge(lists,
+                new ShelterShards.PetComparator(PetFilter.SORT_NAME), 10, taken);
+
+        assertEquals(Arrays.asList("1/1", "2/1", "1/2", "2/3"), keys(merged));
+        assertArrayEquals(new int[]{2, 2}, taken);
+    }
+
+    @Test
+    public void missingBreeds_comeFirst() {
+        List<List<ShelterPet>> lists = Arrays.asList(
+                Arrays.asList(pet(1, 4, "A", null), pet(1, 2, "B", "Beagle"),
+                        pet(1, 1, "C", "Collie")),
+                Arrays.asList(pet(2, 3, "D", null), pet(2, 5, "E", null),
+                        pet(2, 1, "F", "Beagle")),
+                Collections.<ShelterPet>emptyList());
+
+        int[] taken = new int[3];
+        List<ShelterPet> merged = ShelterShards.merge(lists,
+                new ShelterShards.PetComparator(PetFilter.SORT_BREED), 10, taken);
+
+        assertEquals(Arrays.asList("2/3", "1/4", "2/5", "2/1", "1/2", "1/1"), keys(merged));
+        assertArrayEquals(new int[]{3, 3, 0}, taken);
+    }
+
+    @Test
+    public void breeds_compareIgnoringCase() {
+        List<List<ShelterPet>> lists = Arrays.asList(
+                Arrays.asList(pet(1, 1, "A", "Boxer")),
+                Arrays.asList(pet(2, 1, "B", "beagle"), pet(2, 2, "C", "BEAGLE")));
+
+        List<ShelterPet> merged = ShelterShards.merge(lists,
+                new ShelterShards.PetComparator(PetFilter.SORT_BREED), 10, new int[2]);
+
+        assertEquals(Arrays.asList("2/1", "2/2", "1/1"), keys(merged));
+    }
+
+    @Test
+    public void limit_countsPetsTakenFromEachList() {
+        List<List<ShelterPet>> lists = Arrays.asList(
+                Arrays.asList(pet(1, 1, "A", null), pet(1, 2, "C", null)),
+                Arrays.asList(pet(2, 1, "B", null), pet(2, 2, "D", null)));
+
+        int[] taken = new int[2];
+        List<ShelterPet> merged = ShelterShards.merge(lists,
+                new ShelterShards.PetComparator(PetFilter.SORT_NAME), 3, taken);
+
+        assertEquals(Arrays.asList("1/1", "2/1", "1/2"), keys(merged));
+        assertArrayEquals(new int[]{2, 1}, taken);
+    }
+
+    /**
+     * Merging lists sorted one by one gives the same order as sorting all pets together, with
+     * many equal names, breeds and weights, and many missing breeds and names.
+     */
+    @Test
+    public void randomLists_matchSortingEverything() {
+        Random random = new Random(16);
+        int[] sortOrders = {PetFilter.SORT_DEFAULT, PetFilter.SORT_NAME, PetFilter.SORT_BREED,
+                PetFilter.SORT_WEIGHT};
+        for (int round = 0; round < 50; round++) {
+            Comparator<ShelterPet> comparator =
+                    new ShelterShards.PetComparator(sortOrders[round % sortOrders.length]);
+            List<List<ShelterPet>> lists = new ArrayList<>();
+            List<ShelterPet> all = new ArrayList<>();
+            int shelters = 1 + random.nextInt(5);
+            for (int shelter = 0; shelter < shelters; shelter++) {
+                List<ShelterPet> list = new ArrayList<>();
+                int pets = random.nextInt(30);
+                for (int id = 1; id <= pets; id++) {
+                    list.add(randomPet(random, shelter, id));
+                }
+                Collections.sort(list, comparator);
+                lists.add(list);
+                all.addAll(list);
+            }
+            Collections.sort(all, comparator);
+
+            int limit = random.nextInt(all.size() + 5);
+            List<ShelterPet> merged = ShelterShards.merge(lists, comparator, limit,
+                    new int[lists.size()]);
+            assertEquals(keys(all.subList(0, Math.min(limit, all.size()))), keys(merged));
+        }
+    }
+
+    private static ShelterPet randomPet(Random random, int shelterId, int id) {
+        String name = random.nextInt(4) == 0 ? null : "Pet " + random.nextInt(3);
+        String breed = random.nextInt(3) == 0 ? null : "Breed " + random.nextInt(3);
+        return new ShelterPet(shelterId, new PetSummary(id, name, breed, null),
+                random.nextInt(3), random.nextBoolean());
+    }
+
+    private static ShelterPet pet(int shelterId, int id, String name, String breed) {
+        return new ShelterPet(shelterId, new PetSummary(id, name, breed, null), 0, false);
+    }
+
+    /**
+     * @return "shelter/id" of every pet, in order
+     */
+    private static List<String> keys(List<ShelterPet> pets) {
+        List<String> keys = new ArrayList<>(pets.size());
+        for (ShelterPet pet : pets) {
+            keys.add(pet.getShelterId() + "/" + pet.getPet().getId());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.android.pets;
+
+import android.app.Application;
+
+import com.example.android.pets.data.TuningProfile;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs the {@link DataLayerBenchmark} on the JVM, so CI can catch regressions without a device.
+ * It lives in the debug unit tests, next to the benchmark it runs:
+ *
+ * <pre>
+ * ./gradlew testDebugUnitTest --tests '*DataLayerBenchmarkTest'
+ * ./gradlew testDebugUnitTest --tests '*DataLayerBenchmarkTest' -PbenchmarkSizes=100000,1000000
+ * </pre>
+ *
+ * Tables of 1000 pets are measured by default; -PbenchmarkSizes selects others, such as the
+ * 100k and 1M tables of the nightly run. Every case is compared to the median recorded in the
+ * checked-in benchmark-baseline.json, and fails when it is slower by more than
+ * {@link DataLayerBenchmark#REGRESSION_THRESHOLD}. The results are written to
+ * build/benchmark-results.json.
+ *
+ * Baselines are measured on the CI machine, since JVM timings only compare runs on the same
+ * hardware: -PrecordBenchmarkBaseline stores the medians of the run in the baseline file, to be
+ * committed. Cases without a recorded baseline are reported, and the test is skipped rather
+ * than passed. Device numbers come from {@link BenchmarkService}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = Application.class)
+public class DataLayerBenchmarkTest {
+
+    /** Comma separated table sizes to measure */
+    private static final String SIZES_PROPERTY = "benchmark.sizes";
+    private static final String DEFAULT_SIZES = "1000";
+
+    /** Path of the baseline file to record the measured medians in, if set */
+    private static final String RECORD_PROPERTY = "benchmark.recordBaseline";
+
+    private static final int WARMUP_ITERATIONS = 1;
+    private static final int ITERATIONS = 5;
+
+    private static final String BASELINE_RESOURCE = "benchmark-baseline.json";
+    private static final File RESULTS_FILE = new File("build/benchmark-results.json");
+
+    private static final String BASELINE_DESCRIPTION = "Median milliseconds per iteration of "
+            + "DataLayerBenchmarkTest on the CI machine, recorded with "
+            + "-PrecordBenchmarkBaseline. A case fails when its median is slower by more than "
+            + "20%.";
+
+    @Test
+    public void benchmark_hasNoRegressions() throws Exception {
+        URL baselineUrl = getClass().getClassLoader().getResource(BASELINE_RESOURCE);
+        assertNotNull("Missing " + BASELINE_RESOURCE, baselineUrl);
+        Map<String, Double> baseline =
+                DataLayerBenchmark.readBaseline(new File(baselineUrl.toURI()));
+
+        DataLayerBenchmark benchmark = new DataLayerBenchmark(RuntimeEnvironment.application,
+                WARMUP_ITERATIONS, ITERATIONS);
+        TuningProfile[] profiles = {TuningProfile.DURABLE, TuningProfile.THROUGHPUT};
+        List<DataLayerBenchmark.Result> results = benchmark.run(getSizes(), profiles);
+        List<DataLayerBenchmark.Result> regressions =
+                DataLayerBenchmark.compareToBaseline(results, baseline);
+
+        //noinspection ResultOfMethodCallIgnored
+        RESULTS_FILE.getParentFile().mkdirs();
+        DataLayerBenchmark.writeResults(RESULTS_FILE, results, WARMUP_ITERATIONS);
+
+        String recordPath = System.getProperty(RECORD_PROPERTY);
+        if (recordPath != null) {
+            for (DataLayerBenchmark.Result result : results) {
+                baseline.put(result.key(), result.median());
+            }
+            DataLayerBenchmark.writeBaseline(new File(recordPath), baseline,
+                    BASELINE_DESCRIPTION);
+            return;
+        }
+
+        StringBuilder message = new StringBuilder("Regressions:");
+        for (DataLayerBenchmark.Result result : regressions) {
+            message.append(' ').append(result.key()).append(' ').append(result.median())
+                    .append(" ms (baseline ").append(result.baselineMillis).append(" ms)");
+        }
+        assertEquals(message.toString(), 0, regressions.size());
+
+        List<String> unchecked = new ArrayList<>();
+        for (DataLayerBenchmark.Result result : results) {
+            if (result.baselineMillis == null) {
+                unchecked.add(result.key());
+            }
+        }
+        assumeTrue("No baseline for " + unchecked + ", record it with "
+                + "-PrecordBenchmarkBaseline on the CI machine", unchecked.isEmpty());
+    }
+
+    private static int[] getSizes() {
+        String[] values = System.getProperty(SIZES_PROPERTY, DEFAULT_SIZES).split(",");
+        int[] sizes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            sizes[i] = Integer.parseInt(values[i].trim());
+        }
+        return sizes;
+    }
+}